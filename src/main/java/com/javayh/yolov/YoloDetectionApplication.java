@@ -4,18 +4,15 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+/**
+ * OpenCV native 库由 {@link com.javayh.yolov.service.YoloService#init()} 与模型会话并行加载
+ */
 @Slf4j
 @SpringBootApplication
 public class YoloDetectionApplication {
 
-    static {
-        // 必须在任何 OpenCV 调用之前加载 native 库
-        nu.pattern.OpenCV.loadLocally();
-        log.info("OpenCV loaded: {}", org.opencv.core.Core.VERSION);
-    }
-
     public static void main(String[] args) {
         SpringApplication.run(YoloDetectionApplication.class, args);
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,131 @@
+package com.javayh.yolov.client;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 紧凑二进制检测结果（application/x-yolo-detections）的只读视图
+ * <p>
+ * 格式为小端序，32 字节头部后跟 count 条 24 字节定长记录：
+ * <pre>
+ * 头部:  magic u32 ("YOLD") | version u16 | recordSize u16 | width u32 | height u32
+ *        modelVersion u64 | count u32 | reserved u32
+ * 记录:  x0 f32 | y0 f32 | x1 f32 | y1 f32 | score f32 | classId i32
+ * </pre>
+ * 所有访问方法直接读取底层缓冲区，不复制数据也不为每条记录创建对象
+ * @author haiji
+ */
+public final class BinaryDetections {
+
+    public static final String MEDIA_TYPE = "application/x-yolo-detections";
+    public static final int MAGIC = 0x444C4F59;
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int RECORD_SIZE = 24;
+
+    private final ByteBuffer buffer;
+    private final int base;
+    private final int count;
+
+    private BinaryDetections(ByteBuffer source) {
+        // 在副本上设置字节序，不改变调用方缓冲区的字节序与位置
+        this.buffer = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.base = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(base) != MAGIC) {
+            throw new IllegalArgumentException("Not a binary detection payload");
+        }
+        if (buffer.getShort(base + 4) != VERSION || buffer.getShort(base + 6) != RECORD_SIZE) {
+            throw new IllegalArgumentException("Unsupported binary detection version");
+        }
+        this.count = buffer.getInt(base + 24);
+        if (count < 0 || buffer.remaining() < HEADER_SIZE + (long) count * RECORD_SIZE) {
+            throw new IllegalArgumentException("Truncated binary detection payload");
+        }
+    }
+
+    /**
+     * 包装缓冲区（从当前位置开始），不复制数据
+     * @param buffer 响应体
+     * @return 结果视图
+     */
+    public static BinaryDetections wrap(ByteBuffer buffer) {
+        return new BinaryDetections(buffer);
+    }
+
+    public static BinaryDetections wrap(byte[] bytes) {
+        return new BinaryDetections(ByteBuffer.wrap(bytes));
+    }
+
+    public int width() {
+        return buffer.getInt(base + 8);
+    }
+
+    public int height() {
+        return buffer.getInt(base + 12);
+    }
+
+    public long modelVersion() {
+        return buffer.getLong(base + 16);
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public float x0(int i) {
+        return buffer.getFloat(offset(i));
+    }
+
+    public float y0(int i) {
+        return buffer.getFloat(offset(i) + 4);
+    }
+
+    public float x1(int i) {
+        return buffer.getFloat(offset(i) + 8);
+    }
+
+    public float y1(int i) {
+        return buffer.getFloat(offset(i) + 12);
+    }
+
+    public float score(int i) {
+        return buffer.getFloat(offset(i) + 16);
+    }
+
+    public int classId(int i) {
+        return buffer.getInt(offset(i) + 20);
+    }
+
+    private int offset(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        return base + HEADER_SIZE + i * RECORD_SIZE;
+    }
+
+    /**
+     * 写入头部，调用方随后按顺序写入 count 条记录
+     * @param buffer 小端序缓冲区
+     * @param width 图像宽度
+     * @param height 图像高度
+     * @param modelVersion 模型版本
+     * @param count 记录数
+     */
+    public static void writeHeader(ByteBuffer buffer, int width, int height, long modelVersion, int count) {
+        buffer.putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort((short) RECORD_SIZE)
+                .putInt(width)
+                .putInt(height)
+                .putLong(modelVersion)
+                .putInt(count)
+                .putInt(0);
+    }
+
+    /**
+     * 写入一条记录
+     */
+    public static void writeRecord(ByteBuffer buffer, float x0, float y0, float x1, float y1, float score, int classId) {
+        buffer.putFloat(x0).putFloat(y0).putFloat(x1).putFloat(y1).putFloat(score).putInt(classId);
+    }
+}
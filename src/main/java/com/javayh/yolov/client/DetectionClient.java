@@ -0,0 +1,65 @@
+package com.javayh.yolov.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * 高频调用方使用的检测客户端
+ * 以原始字节上传图像，按二进制格式接收结果，避免 multipart、JSON 和 base64 的编解码开销
+ * <pre>
+ * DetectionClient client = new DetectionClient("http://localhost:8081");
+ * BinaryDetections result = client.detect(jpegBytes, null);
+ * for (int i = 0; i &lt; result.count(); i++) { result.classId(i); result.score(i); }
+ * </pre>
+ * 线程安全，可在多个线程间共享
+ * @author haiji
+ */
+public class DetectionClient {
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final Duration timeout;
+
+    public DetectionClient(String baseUrl) {
+        this(baseUrl, Duration.ofSeconds(10));
+    }
+
+    public DetectionClient(String baseUrl, Duration timeout) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    /**
+     * 检测图像
+     * @param image 已编码的图像（JPEG/PNG 等）
+     * @param model 模型名称，为空时使用服务端默认模型
+     * @return 二进制结果视图
+     * @throws IOException 请求失败或服务端返回错误
+     * @throws InterruptedException 请求被中断
+     */
+    public BinaryDetections detect(byte[] image, String model) throws IOException, InterruptedException {
+        String url = baseUrl + "/api/detect" + (model == null || model.isBlank() ? "" : "?model=" + URLEncoder.encode(model, StandardCharsets.UTF_8));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(timeout)
+                .header("Content-Type", "application/octet-stream")
+                .header("Accept", BinaryDetections.MEDIA_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(image))
+                .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("Detection failed: HTTP " + response.statusCode());
+        }
+        return BinaryDetections.wrap(ByteBuffer.wrap(response.body()));
+    }
+}
@@ -0,0 +1,43 @@
+package com.javayh.yolov.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * 管理接口的访问控制：请求头 X-Admin-Token 与 yolo.admin-token 一致才放行，未配置令牌时管理接口关闭
+ * @author haiji
+ */
+@Component
+public class AdminTokenInterceptor implements HandlerInterceptor {
+
+    public static final String HEADER = "X-Admin-Token";
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        String token = yoloConfig.getAdminToken();
+        if (token == null || token.isBlank()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return false;
+        }
+        String provided = request.getHeader(HEADER);
+        // 定长比较，避免按响应时间逐字节猜测令牌
+        if (provided == null || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                provided.getBytes(StandardCharsets.UTF_8))) {
+            response.sendError(HttpStatus.UNAUTHORIZED.value());
+            return false;
+        }
+        return true;
+    }
+}
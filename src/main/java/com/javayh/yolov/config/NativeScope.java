@@ -0,0 +1,168 @@
+package com.javayh.yolov.config;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.TensorInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.Mat;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 请求级原生资源作用域
+ * 登记在作用域中的 Mat、ONNX 张量及其他 AutoCloseable 在 close 时按登记的逆序释放，不依赖 finalizer；
+ * 同时统计进程内存活的原生字节数。未关闭就被回收的作用域计为泄漏。
+ * <pre>
+ * try (NativeScope scope = NativeScope.open()) {
+ *     Mat img = scope.add(Imgcodecs.imdecode(scope.add(new MatOfByte(bytes)), Imgcodecs.IMREAD_COLOR));
+ *     ...
+ * }
+ * </pre>
+ * 作用域只能在创建它的线程中使用。Mat 按登记时的大小计数，作为输出参数的 Mat 应在填充后再登记。
+ * @author haiji
+ */
+@Slf4j
+public final class NativeScope implements AutoCloseable {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private static final AtomicLong LIVE_BYTES = new AtomicLong();
+    private static final AtomicLong PEAK_BYTES = new AtomicLong();
+    private static final AtomicLong OPEN_SCOPES = new AtomicLong();
+    private static final LongAdder ALLOCATED_BYTES = new LongAdder();
+    private static final LongAdder LEAKED_SCOPES = new LongAdder();
+
+    private final List<Object> resources = new ArrayList<>();
+    private final State state = new State();
+    private final Cleaner.Cleanable cleanable;
+
+    private NativeScope() {
+        OPEN_SCOPES.incrementAndGet();
+        cleanable = CLEANER.register(this, state);
+    }
+
+    public static NativeScope open() {
+        return new NativeScope();
+    }
+
+    /**
+     * 登记 Mat
+     * @param mat Mat（可为子矩阵，子矩阵不计字节数）
+     * @return 原对象
+     */
+    public <T extends Mat> T add(T mat) {
+        resources.add(mat);
+        if (!mat.isSubmatrix()) {
+            account(mat.total() * mat.elemSize());
+        }
+        return mat;
+    }
+
+    /**
+     * 登记 ONNX 张量
+     * @param tensor 张量
+     * @return 原对象
+     */
+    public OnnxTensor add(OnnxTensor tensor) {
+        resources.add(tensor);
+        TensorInfo info = tensor.getInfo();
+        account(info.getNumElements() * Math.max(1, info.type.size));
+        return tensor;
+    }
+
+    /**
+     * 登记其他原生资源（如 OrtSession.Result），不计字节数
+     * @param resource 资源
+     * @return 原对象
+     */
+    public <T extends AutoCloseable> T add(T resource) {
+        resources.add(resource);
+        return resource;
+    }
+
+    /**
+     * 创建并登记一个空 Mat，填充后的大小不计入统计
+     * @return 新的 Mat
+     */
+    public Mat mat() {
+        return add(new Mat());
+    }
+
+    private void account(long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        state.bytes += bytes;
+        ALLOCATED_BYTES.add(bytes);
+        long live = LIVE_BYTES.addAndGet(bytes);
+        PEAK_BYTES.accumulateAndGet(live, Math::max);
+    }
+
+    @Override
+    public void close() {
+        if (state.closed) {
+            return;
+        }
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            Object resource = resources.get(i);
+            try {
+                if (resource instanceof Mat mat) {
+                    mat.release();
+                } else if (resource instanceof AutoCloseable closeable) {
+                    closeable.close();
+                }
+            } catch (Exception e) {
+                log.warn("释放原生资源失败: {}", e.getMessage());
+            }
+        }
+        resources.clear();
+        state.closed = true;
+        LIVE_BYTES.addAndGet(-state.bytes);
+        OPEN_SCOPES.decrementAndGet();
+        cleanable.clean();
+    }
+
+    public static long getLiveBytes() {
+        return LIVE_BYTES.get();
+    }
+
+    public static long getPeakBytes() {
+        return PEAK_BYTES.get();
+    }
+
+    public static long getOpenScopes() {
+        return OPEN_SCOPES.get();
+    }
+
+    public static long getAllocatedBytes() {
+        return ALLOCATED_BYTES.sum();
+    }
+
+    public static long getLeakedScopes() {
+        return LEAKED_SCOPES.sum();
+    }
+
+    /**
+     * 作用域被回收时执行，不能引用作用域本身
+     */
+    private static final class State implements Runnable {
+        private long bytes;
+        private volatile boolean closed;
+
+        @Override
+        public void run() {
+            if (closed) {
+                return;
+            }
+            // 资源随作用域一同不可达，由 finalizer 回收，这里只修正统计
+            closed = true;
+            LEAKED_SCOPES.increment();
+            LIVE_BYTES.addAndGet(-bytes);
+            OPEN_SCOPES.decrementAndGet();
+            log.warn("原生资源作用域未关闭即被回收，{} 字节依赖 finalizer 释放", bytes);
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package com.javayh.yolov.config;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 把输入预处理融合进 ONNX 计算图
+ * 在原输入前插入 [Gather(BGR→RGB)] → Transpose(NHWC→NCHW) → Cast(float) → Div(255) 节点，
+ * 新输入为 uint8 [N, H, W, 3]，Java 侧可以直接把 letterbox 后的 Mat 内存交给 ONNX Runtime。
+ * 直接在 protobuf 线格式上改写 ModelProto/GraphProto，其余字段（权重、属性、opset 等）按原字节保留。
+ * @author haiji
+ */
+public final class OnnxInputFusion {
+
+    /**
+     * 写入模型 metadata_props 的键，值为 {@link #ORDER_BGR} 或 {@link #ORDER_RGB}，表示新输入的通道顺序
+     */
+    public static final String CHANNEL_ORDER_KEY = "yolo.input.channel-order";
+    public static final String ORDER_BGR = "bgr";
+    public static final String ORDER_RGB = "rgb";
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_I64 = 1;
+    private static final int WIRE_LEN = 2;
+    private static final int WIRE_I32 = 5;
+
+    // ModelProto / GraphProto / NodeProto 等消息的字段号，见 onnx.proto
+    private static final int MODEL_GRAPH = 7;
+    private static final int MODEL_METADATA_PROPS = 14;
+    private static final int GRAPH_NODE = 1;
+    private static final int GRAPH_INITIALIZER = 5;
+    private static final int GRAPH_INPUT = 11;
+    private static final int GRAPH_OUTPUT = 12;
+    private static final int VALUE_INFO_NAME = 1;
+    private static final int VALUE_INFO_TYPE = 2;
+    private static final int TYPE_TENSOR = 1;
+    private static final int TENSOR_TYPE_ELEM = 1;
+    private static final int TENSOR_TYPE_SHAPE = 2;
+    private static final int SHAPE_DIM = 1;
+    private static final int DIM_VALUE = 1;
+    private static final int TENSOR_NAME = 8;
+
+    private static final int ELEM_FLOAT = 1;
+    private static final int ELEM_UINT8 = 2;
+    private static final int ELEM_INT64 = 7;
+    private static final int ATTR_INT = 2;
+    private static final int ATTR_INTS = 7;
+
+    private OnnxInputFusion() {
+    }
+
+    /**
+     * 改写模型
+     * @param model 原模型字节
+     * @param swapChannels 是否在图内完成 BGR→RGB，为 true 时新输入为 BGR 顺序
+     * @return 改写后的模型字节
+     * @throws IllegalArgumentException 模型输入不是 float [N, 3, H, W]
+     */
+    public static byte[] fuse(byte[] model, boolean swapChannels) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(model.length + 1024);
+        boolean found = false;
+        for (Field f : fields(model, 0, model.length)) {
+            if (f.number == MODEL_GRAPH && f.wireType == WIRE_LEN) {
+                writeBytes(out, MODEL_GRAPH, fuseGraph(model, f.start, f.end, swapChannels));
+                found = true;
+            } else {
+                out.write(model, f.tagStart, f.end - f.tagStart);
+            }
+        }
+        if (!found) {
+            throw new IllegalArgumentException("ONNX model has no graph");
+        }
+        ByteArrayOutputStream prop = new ByteArrayOutputStream();
+        writeString(prop, 1, CHANNEL_ORDER_KEY);
+        writeString(prop, 2, swapChannels ? ORDER_BGR : ORDER_RGB);
+        writeBytes(out, MODEL_METADATA_PROPS, prop.toByteArray());
+        return out.toByteArray();
+    }
+
+    /**
+     * 读取图像输入与第一个输出的形状，不创建推理会话；动态维度为 -1
+     * @param model 模型字节
+     * @return {输入形状, 输出形状}，缺失时对应元素为 null
+     * @throws IllegalArgumentException 不是有效的 ONNX 模型
+     */
+    public static long[][] ioShapes(byte[] model) {
+        Field graph = find(model, 0, model.length, MODEL_GRAPH);
+        if (graph == null) {
+            throw new IllegalArgumentException("ONNX model has no graph");
+        }
+        Set<String> initializers = new HashSet<>();
+        List<Field> fields = fields(model, graph.start, graph.end);
+        for (Field f : fields) {
+            if (f.number == GRAPH_INITIALIZER) {
+                initializers.add(stringField(model, f.start, f.end, TENSOR_NAME));
+            }
+        }
+        long[] input = null;
+        long[] output = null;
+        for (Field f : fields) {
+            if (input == null && f.number == GRAPH_INPUT
+                    && !initializers.contains(stringField(model, f.start, f.end, VALUE_INFO_NAME))) {
+                input = shape(model, f);
+            } else if (output == null && f.number == GRAPH_OUTPUT) {
+                output = shape(model, f);
+            }
+        }
+        return new long[][]{input, output};
+    }
+
+    private static long[] shape(byte[] buf, Field valueInfo) {
+        Field type = find(buf, valueInfo.start, valueInfo.end, VALUE_INFO_TYPE);
+        Field tensor = type == null ? null : find(buf, type.start, type.end, TYPE_TENSOR);
+        Field shape = tensor == null ? null : find(buf, tensor.start, tensor.end, TENSOR_TYPE_SHAPE);
+        if (shape == null) {
+            return null;
+        }
+        List<Long> dims = new ArrayList<>();
+        for (Field d : fields(buf, shape.start, shape.end)) {
+            if (d.number == SHAPE_DIM) {
+                // dim_param（符号维度）或未设置的维度按动态处理
+                Field value = find(buf, d.start, d.end, DIM_VALUE);
+                dims.add(value == null || value.wireType != WIRE_VARINT ? -1L : value.value);
+            }
+        }
+        return dims.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static byte[] fuseGraph(byte[] buf, int start, int end, boolean swapChannels) {
+        List<Field> graph = fields(buf, start, end);
+        Set<String> initializers = new HashSet<>();
+        for (Field f : graph) {
+            if (f.number == GRAPH_INITIALIZER) {
+                String name = stringField(buf, f.start, f.end, TENSOR_NAME);
+                if (name != null) {
+                    initializers.add(name);
+                }
+            }
+        }
+        // 第一个不是权重的输入即图像输入
+        Field input = null;
+        String inputName = null;
+        for (Field f : graph) {
+            if (f.number == GRAPH_INPUT) {
+                String name = stringField(buf, f.start, f.end, VALUE_INFO_NAME);
+                if (name != null && !initializers.contains(name)) {
+                    input = f;
+                    inputName = name;
+                    break;
+                }
+            }
+        }
+        if (input == null) {
+            throw new IllegalArgumentException("ONNX graph has no image input");
+        }
+        List<byte[]> dims = inputDims(buf, input);
+
+        String prefix = inputName + "_fused";
+        String newInput = inputName + "_uint8";
+        ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+        ByteArrayOutputStream tensors = new ByteArrayOutputStream();
+        String current = newInput;
+        if (swapChannels) {
+            writeBytes(tensors, GRAPH_INITIALIZER, int64Tensor(prefix + "_channels", 2, 1, 0));
+            writeBytes(nodes, GRAPH_NODE, node(prefix + "_gather", "Gather",
+                    List.of(current, prefix + "_channels"), prefix + "_rgb", intAttr("axis", 3)));
+            current = prefix + "_rgb";
+        }
+        writeBytes(nodes, GRAPH_NODE, node(prefix + "_transpose", "Transpose",
+                List.of(current), prefix + "_nchw", intsAttr("perm", 0, 3, 1, 2)));
+        writeBytes(nodes, GRAPH_NODE, node(prefix + "_cast", "Cast",
+                List.of(prefix + "_nchw"), prefix + "_float", intAttr("to", ELEM_FLOAT)));
+        writeBytes(tensors, GRAPH_INITIALIZER, floatScalar(prefix + "_scale", 255f));
+        writeBytes(nodes, GRAPH_NODE, node(prefix + "_div", "Div",
+                List.of(prefix + "_float", prefix + "_scale"), inputName));
+
+        // 新节点写在最前面，保持拓扑顺序；原输入替换为 uint8 NHWC 输入，Div 的输出沿用原输入名
+        ByteArrayOutputStream out = new ByteArrayOutputStream(end - start + 1024);
+        out.writeBytes(nodes.toByteArray());
+        for (Field f : graph) {
+            if (f == input) {
+                writeBytes(out, GRAPH_INPUT, uint8Input(newInput, List.of(dims.get(0), dims.get(2), dims.get(3), dims.get(1))));
+            } else {
+                out.write(buf, f.tagStart, f.end - f.tagStart);
+            }
+        }
+        out.writeBytes(tensors.toByteArray());
+        return out.toByteArray();
+    }
+
+    /**
+     * 读取输入的四个维度（Dimension 消息的原始字节），同时校验元素类型为 float、通道数为 3
+     */
+    private static List<byte[]> inputDims(byte[] buf, Field input) {
+        Field type = find(buf, input.start, input.end, VALUE_INFO_TYPE);
+        Field tensor = type == null ? null : find(buf, type.start, type.end, TYPE_TENSOR);
+        if (tensor == null) {
+            throw new IllegalArgumentException("ONNX input is not a tensor");
+        }
+        Field elem = find(buf, tensor.start, tensor.end, TENSOR_TYPE_ELEM);
+        if (elem == null || elem.value != ELEM_FLOAT) {
+            throw new IllegalArgumentException("ONNX input is not float, already fused?");
+        }
+        Field shape = find(buf, tensor.start, tensor.end, TENSOR_TYPE_SHAPE);
+        List<byte[]> dims = new ArrayList<>();
+        if (shape != null) {
+            for (Field d : fields(buf, shape.start, shape.end)) {
+                if (d.number == SHAPE_DIM) {
+                    byte[] dim = new byte[d.end - d.start];
+                    System.arraycopy(buf, d.start, dim, 0, dim.length);
+                    dims.add(dim);
+                }
+            }
+        }
+        if (dims.size() != 4) {
+            throw new IllegalArgumentException("ONNX input is not [N, C, H, W]");
+        }
+        Field channels = find(dims.get(1), 0, dims.get(1).length, 1);
+        if (channels != null && channels.value != 3) {
+            throw new IllegalArgumentException("ONNX input does not have 3 channels");
+        }
+        return dims;
+    }
+
+    private static byte[] uint8Input(String name, List<byte[]> dims) {
+        ByteArrayOutputStream shape = new ByteArrayOutputStream();
+        for (byte[] dim : dims) {
+            writeBytes(shape, SHAPE_DIM, dim);
+        }
+        ByteArrayOutputStream tensorType = new ByteArrayOutputStream();
+        writeVarint(tensorType, TENSOR_TYPE_ELEM, ELEM_UINT8);
+        writeBytes(tensorType, TENSOR_TYPE_SHAPE, shape.toByteArray());
+        ByteArrayOutputStream type = new ByteArrayOutputStream();
+        writeBytes(type, TYPE_TENSOR, tensorType.toByteArray());
+        ByteArrayOutputStream info = new ByteArrayOutputStream();
+        writeString(info, VALUE_INFO_NAME, name);
+        writeBytes(info, VALUE_INFO_TYPE, type.toByteArray());
+        return info.toByteArray();
+    }
+
+    private static byte[] node(String name, String opType, List<String> inputs, String output, byte[]... attributes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String input : inputs) {
+            writeString(out, 1, input);
+        }
+        writeString(out, 2, output);
+        writeString(out, 3, name);
+        writeString(out, 4, opType);
+        for (byte[] attribute : attributes) {
+            writeBytes(out, 5, attribute);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] intAttr(String name, long value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeString(out, 1, name);
+        writeVarint(out, 3, value);
+        writeVarint(out, 20, ATTR_INT);
+        return out.toByteArray();
+    }
+
+    private static byte[] intsAttr(String name, long... values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeString(out, 1, name);
+        for (long v : values) {
+            writeVarint(out, 8, v);
+        }
+        writeVarint(out, 20, ATTR_INTS);
+        return out.toByteArray();
+    }
+
+    private static byte[] int64Tensor(String name, long... values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, 1, values.length);
+        writeVarint(out, 2, ELEM_INT64);
+        for (long v : values) {
+            writeVarint(out, 7, v);
+        }
+        writeString(out, TENSOR_NAME, name);
+        return out.toByteArray();
+    }
+
+    private static byte[] floatScalar(String name, float value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, 2, ELEM_FLOAT);
+        writeTag(out, 4, WIRE_I32);
+        int bits = Float.floatToIntBits(value);
+        for (int i = 0; i < 4; i++) {
+            out.write(bits >>> (i * 8));
+        }
+        writeString(out, TENSOR_NAME, name);
+        return out.toByteArray();
+    }
+
+    // ===== protobuf 线格式 =====
+
+    /**
+     * 一个字段：tagStart 为标签起始位置，[start, end) 为 LEN 字段的内容；varint 字段的值在 value 中
+     */
+    private record Field(int number, int wireType, int tagStart, int start, int end, long value) {
+    }
+
+    private static List<Field> fields(byte[] buf, int start, int end) {
+        List<Field> fields = new ArrayList<>();
+        int[] pos = {start};
+        while (pos[0] < end) {
+            int tagStart = pos[0];
+            long tag = readVarint(buf, pos);
+            int number = (int) (tag >>> 3);
+            int wireType = (int) (tag & 7);
+            switch (wireType) {
+                case WIRE_VARINT -> {
+                    long value = readVarint(buf, pos);
+                    fields.add(new Field(number, wireType, tagStart, pos[0], pos[0], value));
+                }
+                case WIRE_I64 -> {
+                    pos[0] += 8;
+                    fields.add(new Field(number, wireType, tagStart, pos[0] - 8, pos[0], 0));
+                }
+                case WIRE_LEN -> {
+                    int len = (int) readVarint(buf, pos);
+                    fields.add(new Field(number, wireType, tagStart, pos[0], pos[0] + len, 0));
+                    pos[0] += len;
+                }
+                case WIRE_I32 -> {
+                    pos[0] += 4;
+                    fields.add(new Field(number, wireType, tagStart, pos[0] - 4, pos[0], 0));
+                }
+                default -> throw new IllegalArgumentException("Unsupported protobuf wire type " + wireType);
+            }
+            if (pos[0] > end) {
+                throw new IllegalArgumentException("Truncated ONNX model");
+            }
+        }
+        return fields;
+    }
+
+    private static Field find(byte[] buf, int start, int end, int number) {
+        for (Field f : fields(buf, start, end)) {
+            if (f.number == number) {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    private static String stringField(byte[] buf, int start, int end, int number) {
+        Field f = find(buf, start, end, number);
+        return f == null || f.wireType != WIRE_LEN ? null
+                : new String(buf, f.start, f.end - f.start, StandardCharsets.UTF_8);
+    }
+
+    private static long readVarint(byte[] buf, int[] pos) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buf[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static void writeTag(ByteArrayOutputStream out, int number, int wireType) {
+        writeRawVarint(out, ((long) number << 3) | wireType);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int number, long value) {
+        writeTag(out, number, WIRE_VARINT);
+        writeRawVarint(out, value);
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, int number, byte[] value) {
+        writeTag(out, number, WIRE_LEN);
+        writeRawVarint(out, value.length);
+        out.writeBytes(value);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, int number, String value) {
+        writeBytes(out, number, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeRawVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
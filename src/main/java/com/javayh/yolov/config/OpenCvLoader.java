@@ -0,0 +1,33 @@
+package com.javayh.yolov.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * OpenCV native 库加载器
+ * 保证 native 库只加载一次，可与 ONNX 会话创建并行执行
+ * @author haiji
+ */
+@Slf4j
+public final class OpenCvLoader {
+
+    private static volatile boolean loaded;
+
+    private OpenCvLoader() {
+    }
+
+    /**
+     * 加载 OpenCV native 库，必须在任何 OpenCV 调用之前完成
+     */
+    public static void load() {
+        if (loaded) {
+            return;
+        }
+        synchronized (OpenCvLoader.class) {
+            if (!loaded) {
+                nu.pattern.OpenCV.loadLocally();
+                loaded = true;
+                log.info("OpenCV loaded: {}", org.opencv.core.Core.VERSION);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.javayh.yolov.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * 在响应体写出前把当前请求的阶段耗时写入 Server-Timing 头，浏览器开发者工具的 Timing 面板可以直接查看
+ * @author haiji
+ */
+@ControllerAdvice
+public class ServerTimingAdvice implements ResponseBodyAdvice<Object> {
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return yoloConfig.isServerTimingEnabled();
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        StageTimings timings = StageTimings.current();
+        if (timings != null) {
+            response.getHeaders().set("Server-Timing", timings.toServerTiming());
+        }
+        return body;
+    }
+}
@@ -0,0 +1,35 @@
+package com.javayh.yolov.config;
+
+import com.javayh.yolov.service.RequestProfiler;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * 检测接口的请求级阶段耗时：请求开始时绑定 {@link StageTimings}，结束时交给 {@link RequestProfiler} 并解除绑定
+ * @author haiji
+ */
+@Component
+public class StageTimingInterceptor implements HandlerInterceptor {
+
+    @Autowired
+    private RequestProfiler requestProfiler;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        StageTimings.begin();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        StageTimings timings = StageTimings.current();
+        StageTimings.end();
+        // 未选择模型的请求（参数错误、查询帧格式）没有检测耗时，不记录
+        if (timings != null && timings.getModel() != null) {
+            requestProfiler.record(request.getMethod(), request.getRequestURI(), response.getStatus(), timings);
+        }
+    }
+}
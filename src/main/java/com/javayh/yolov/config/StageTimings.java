@@ -0,0 +1,160 @@
+package com.javayh.yolov.config;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 请求级阶段耗时
+ * 请求开始时绑定到当前线程，检测流程中的各步骤通过 {@link #record(Stage, long)} 累加耗时；
+ * 未绑定时 record 只有一次 ThreadLocal 读取。同一阶段多次执行（级联、批量）时耗时累加。
+ * <pre>
+ * long start = System.nanoTime();
+ * ...
+ * StageTimings.record(Stage.NMS, start);
+ * </pre>
+ * 跨线程执行的阶段（检测流水线）在执行前用 {@link #bind(StageTimings)} 绑定请求的实例，同一时刻只有一个线程写入
+ * @author haiji
+ */
+public final class StageTimings {
+
+    public enum Stage {
+        /**
+         * 推理调度排队
+         */
+        WAIT("wait"),
+        DECODE("decode"),
+        LETTERBOX("letterbox"),
+        /**
+         * 写入模型输入（颜色转换、归一化与转置）
+         */
+        PACK("pack"),
+        RUN("run"),
+        DECODE_OUTPUT("decode-output"),
+        NMS("nms"),
+        RENDER("render"),
+        ENCODE("encode");
+
+        /**
+         * Server-Timing 中的指标名
+         */
+        private final String metric;
+
+        Stage(String metric) {
+            this.metric = metric;
+        }
+
+        public String getMetric() {
+            return metric;
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private static final ThreadLocal<StageTimings> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+    private final long[] nanos = new long[STAGES.length];
+    private volatile String model;
+
+    /**
+     * 创建并绑定到当前线程
+     * @return 新的实例
+     */
+    public static StageTimings begin() {
+        StageTimings timings = new StageTimings();
+        CURRENT.set(timings);
+        return timings;
+    }
+
+    /**
+     * 当前线程绑定的实例
+     * @return 实例，未绑定时为 null
+     */
+    public static StageTimings current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 把实例绑定到当前线程
+     * @param timings 实例，为 null 时解除绑定
+     * @return 之前绑定的实例，用于恢复
+     */
+    public static StageTimings bind(StageTimings timings) {
+        StageTimings previous = CURRENT.get();
+        if (timings == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(timings);
+        }
+        return previous;
+    }
+
+    /**
+     * 解除当前线程的绑定
+     */
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 累加从 startNanos 到现在的耗时
+     * @param stage 阶段
+     * @param startNanos 阶段开始时的 System.nanoTime()
+     */
+    public static void record(Stage stage, long startNanos) {
+        StageTimings timings = CURRENT.get();
+        if (timings != null) {
+            timings.nanos[stage.ordinal()] += System.nanoTime() - startNanos;
+        }
+    }
+
+    /**
+     * 记录本次请求使用的模型
+     * @param model 模型名称
+     */
+    public static void recordModel(String model) {
+        StageTimings timings = CURRENT.get();
+        if (timings != null) {
+            timings.model = model;
+        }
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * 从创建到现在的总耗时（毫秒）
+     */
+    public double getTotalMillis() {
+        return (System.nanoTime() - startNanos) / 1e6;
+    }
+
+    /**
+     * 各阶段耗时（毫秒），未执行的阶段不包含在内
+     * @return 按阶段顺序
+     */
+    public Map<String, Double> getStageMillis() {
+        Map<String, Double> stages = new LinkedHashMap<>();
+        for (Stage stage : STAGES) {
+            long value = nanos[stage.ordinal()];
+            if (value > 0) {
+                stages.put(stage.getMetric(), value / 1e6);
+            }
+        }
+        return stages;
+    }
+
+    /**
+     * Server-Timing 响应头的值，如 decode;dur=3.12, run;dur=41.80, total;dur=52.07
+     * @return 响应头的值
+     */
+    public String toServerTiming() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Double> e : getStageMillis().entrySet()) {
+            sb.append(e.getKey()).append(";dur=").append(String.format(Locale.ROOT, "%.2f", e.getValue())).append(", ");
+        }
+        return sb.append("total;dur=").append(String.format(Locale.ROOT, "%.2f", getTotalMillis())).toString();
+    }
+}
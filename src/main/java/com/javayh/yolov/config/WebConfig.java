@@ -1,6 +1,8 @@
 package com.javayh.yolov.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -9,10 +11,28 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
  */
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private StageTimingInterceptor stageTimingInterceptor;
+
+    @Autowired
+    private AdminTokenInterceptor adminTokenInterceptor;
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         // 配置静态资源处理，确保/static/**路径能正确访问
         registry.addResourceHandler("/static/**")
                 .addResourceLocations("classpath:/static/");
     }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 只记录检测接口的阶段耗时
+        registry.addInterceptor(stageTimingInterceptor)
+                .addPathPatterns("/detect-image", "/detect-and-download", "/process-video-frame",
+                        "/api/detect", "/api/detect/**");
+        // 管理接口需要访问令牌
+        registry.addInterceptor(adminTokenInterceptor)
+                .addPathPatterns("/api/admin/**");
+    }
 }
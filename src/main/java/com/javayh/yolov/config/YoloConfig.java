@@ -4,6 +4,11 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * YOLO配置类
  */
@@ -35,6 +40,14 @@ public class YoloConfig {
      * NMS阈值
      */
     private float nmsThreshold = 0.45f;
+    /**
+     * 进入 NMS 的候选框上限，超出时按置信度部分选择 Top-K
+     */
+    private int maxCandidates = 1000;
+    /**
+     * 每张图像输出的检测框上限
+     */
+    private int maxDetections = 300;
     /**
      * 输入宽度
      */
@@ -43,14 +56,336 @@ public class YoloConfig {
      * 输入高度
      */
     private int inputHeight = 640;
+    /**
+     * 动态输入模型使用最小矩形 letterbox（只填充到 stride 整数倍）
+     */
+    private boolean letterboxAuto = true;
+    /**
+     * 模型最大下采样步长
+     */
+    private int stride = 32;
+    /**
+     * 切片推理的切片边长（像素）
+     */
+    private int tileSize = 640;
+    /**
+     * 相邻切片的重叠比例
+     */
+    private float tileOverlap = 0.2f;
+    /**
+     * 切片推理时每次 OrtSession.run 的最大批量，模型批次维固定为 1 时按 1 处理
+     */
+    private int tileBatchSize = 8;
+    /**
+     * 切片推理并行度
+     */
+    private int tileParallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    /**
+     * 切片推理时额外对整图推理一次，保留大目标
+     */
+    private boolean tileIncludeFullImage = true;
+    /**
+     * 跨切片合并阈值：同类框交集占较小框面积的比例超过该值时视为同一目标
+     */
+    private float tileMergeThreshold = 0.6f;
+    /**
+     * 批量任务线程池并行度
+     */
+    private int bulkParallelism = Runtime.getRuntime().availableProcessors();
+    /**
+     * 批量任务每次推理的图像数，模型批次维固定为 1 时按 1 处理
+     */
+    private int bulkBatchSize = 8;
+    /**
+     * 通过接口提交的批量任务的根目录，输入与输出路径按该目录解析，不能超出该目录；命令行模式不受限制
+     */
+    private String bulkJobsRoot = "bulk_jobs/";
     /**
      * 保存路径
      */
     private String savePath = "detection_results/";
+    /**
+     * 是否异步保存标注图像与检测元数据
+     */
+    private boolean saveEnabled = false;
+    /**
+     * 待保存队列容量，队列满时丢弃
+     */
+    private int saveQueueCapacity = 256;
+    /**
+     * 后台写盘线程数
+     */
+    private int saveWriterThreads = 1;
+    /**
+     * 每批写入的最大结果数，批次写完后统一 fsync
+     */
+    private int saveFsyncBatch = 32;
+    /**
+     * 是否 fsync，关闭后依赖操作系统回写
+     */
+    private boolean saveFsync = true;
+    /**
+     * 结果目录最大容量（MB），0 表示不限制
+     */
+    private long saveRetentionMaxMb = 1024;
+    /**
+     * 结果最长保留时间（小时），0 表示不限制
+     */
+    private long saveRetentionHours = 72;
+
+    /**
+     * 感兴趣区域（外扩后）占整图面积比例不超过该值时，先裁剪再推理
+     */
+    private double roiCropMaxArea = 0.5;
 
     /**
      * 线框粗细比例
      */
     private int lineThicknessRatio = 800;
 
-}
\ No newline at end of file
+    /**
+     * 可按名称加载的模型目录
+     */
+    private String modelsDir = "models";
+
+    /**
+     * 模型目录监听的事件合并窗口（毫秒），窗口内没有新事件后才刷新
+     */
+    private long catalogDebounceMillis = 500;
+
+    /**
+     * 上传模型的暂存目录，验证通过后才复制到 model-path
+     */
+    private String modelStagingDir = "model-staging";
+
+    /**
+     * 上传模型验证时的延迟测量次数
+     */
+    private int qualificationIterations = 20;
+
+    /**
+     * 上传模型的单次检测耗时中位数预算（毫秒），超出时拒绝激活，0 表示不限制
+     */
+    private double qualificationP50BudgetMs = 1000;
+
+    /**
+     * 上传模型的单次检测耗时 P95 预算（毫秒），超出时拒绝激活，0 表示不限制
+     */
+    private double qualificationP95BudgetMs = 2000;
+
+    /**
+     * 模型注册表原生内存预算（MB），超出后淘汰最久未使用的空闲模型
+     */
+    private long modelMemoryBudgetMb = 1024;
+
+    /**
+     * 模型加载后的预热次数，0 表示不预热
+     */
+    private int warmupIterations = 5;
+
+    /**
+     * 启动基准模式：首次检测（通常为预热）完成后输出 time-to-first-detection 并退出
+     */
+    private boolean startupBenchmark = false;
+
+    /**
+     * 加载模型时把归一化与 HWC→CHW 转换融合进计算图，Java 侧直接传入 uint8 图像
+     */
+    private boolean fusePreprocess = true;
+
+    /**
+     * 融合预处理时同时在图内完成 BGR→RGB，Java 侧省去颜色转换
+     */
+    private boolean fuseChannelSwap = true;
+
+    /**
+     * 融合后模型的缓存目录
+     */
+    private String fusedModelDir = "model-cache";
+
+    /**
+     * 推理引擎：onnxruntime、opencv，或 auto（模型加载后自测两种引擎，选择较快的）
+     */
+    private String engine = "auto";
+
+    /**
+     * 按模型覆盖推理引擎，键为模型文件名，如 yolo.model-engines[yolov8n.onnx]=opencv
+     */
+    private Map<String, String> modelEngines = new HashMap<>();
+
+    /**
+     * OpenCV DNN 引擎每个模型的最大网络实例数（Net 不能并发 forward）
+     */
+    private int dnnPoolSize = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    /**
+     * 引擎自测时每种引擎的计时次数
+     */
+    private int engineBenchmarkIterations = 10;
+
+    /**
+     * 基准测试接口单次请求允许的最大测量次数，超过时拒绝请求
+     */
+    private int benchmarkMaxIterations = 100000;
+
+    /**
+     * 加载默认模型后，若本机尚无该模型的会话配置，则在后台调优并保存，之后加载时直接复用
+     */
+    private boolean sessionTuning = false;
+
+    /**
+     * 会话配置保存目录
+     */
+    private String sessionProfileDir = "model-cache/profiles";
+
+    /**
+     * 调优目标：throughput（吞吐量最高）或 latency（单次耗时中位数最低）
+     */
+    private String sessionTuneObjective = "throughput";
+
+    /**
+     * 候选算子内线程数，为空时取 1、核数/4、核数/2、核数
+     */
+    private List<Integer> sessionTuneIntraOpThreads = new ArrayList<>();
+
+    /**
+     * 候选执行模式
+     */
+    private List<String> sessionTuneExecutionModes = new ArrayList<>(List.of("SEQUENTIAL", "PARALLEL"));
+
+    /**
+     * 候选图优化级别
+     */
+    private List<String> sessionTuneOptLevels = new ArrayList<>(List.of("EXTENDED_OPT", "ALL_OPT"));
+
+    /**
+     * 候选并发数，为空时取 1 与刚好占满全部核的并发数；启用推理调度或流水线时忽略，只在线上并发数下测量
+     */
+    private List<Integer> sessionTuneConcurrency = new ArrayList<>();
+
+    /**
+     * 每个组合中每个并发线程的计时次数
+     */
+    private int sessionTuneIterations = 20;
+
+    /**
+     * 级联检测：先运行小模型，最高置信度落在不确定区间内时才运行大模型（请求指定的模型或默认模型）
+     */
+    private boolean cascadeEnabled = false;
+
+    /**
+     * 级联检测的小模型，为空时从可用模型中选择 nano 导出（文件名以 n.onnx 结尾）
+     */
+    private String cascadeSmallModel = "";
+
+    /**
+     * 不确定区间下限：小模型最高置信度低于该值时视为空帧
+     */
+    private float cascadeLowConfidence = 0.25f;
+
+    /**
+     * 不确定区间上限：小模型最高置信度不低于该值时直接采用小模型结果
+     */
+    private float cascadeHighConfidence = 0.8f;
+
+    /**
+     * 升级范围：image（整图运行大模型）或 crops（只在不确定目标周围运行大模型）
+     */
+    private String cascadeScope = "crops";
+
+    /**
+     * crops 模式下不确定目标的外扩比例（相对检测框长边）
+     */
+    private float cascadeCropPadding = 0.5f;
+
+    /**
+     * 每隔多少次请求直接整图运行大模型一次，用于估算吞吐量收益，0 表示不校准
+     */
+    private int cascadeCalibrationInterval = 100;
+
+    /**
+     * 流水线检测：解码与预处理、推理、绘制与编码分别在各自的线程池中执行，相邻请求的不同阶段相互重叠
+     */
+    private boolean pipelineEnabled = false;
+
+    /**
+     * 预处理阶段（解码、letterbox、打包输入）线程数
+     */
+    private int pipelinePreprocessThreads = 2;
+
+    /**
+     * 推理阶段线程数，每个线程同时占用一次 OrtSession.run；同时启用推理调度时不少于调度并发数
+     */
+    private int pipelineInferenceThreads = 1;
+
+    /**
+     * 后处理阶段（解析输出、NMS、绘制、编码）线程数
+     */
+    private int pipelinePostprocessThreads = 2;
+
+    /**
+     * 每个阶段的等待队列容量，队列已满时上一阶段阻塞等待
+     */
+    private int pipelineQueueCapacity = 4;
+
+    /**
+     * 推理调度：实时、交互、批量请求分别排队，按权重轮流获得推理名额
+     */
+    private boolean schedulerEnabled = false;
+
+    /**
+     * 同时执行推理的请求数
+     */
+    private int schedulerConcurrency = 2;
+
+    /**
+     * 实时视频帧通道权重
+     */
+    private int schedulerRealtimeWeight = 6;
+
+    /**
+     * 交互式请求通道权重
+     */
+    private int schedulerInteractiveWeight = 3;
+
+    /**
+     * 批量任务通道权重
+     */
+    private int schedulerBulkWeight = 1;
+
+    /**
+     * 实时与交互通道的排队上限，超出时拒绝；批量通道只阻塞不拒绝
+     */
+    private int schedulerQueueCapacity = 64;
+
+    /**
+     * 实时视频帧的截止时间（毫秒），排队超过该时间的帧已过时，直接丢弃
+     */
+    private long schedulerRealtimeDeadlineMs = 200;
+
+    /**
+     * 检测请求的响应是否附带 Server-Timing 头（各阶段耗时）；耗时会暴露给所有调用方，默认关闭，只在诊断时开启
+     */
+    private boolean serverTimingEnabled = false;
+
+    /**
+     * 请求耗时记录的环形缓冲区容量
+     */
+    private int profileBufferSize = 200;
+
+    /**
+     * 总耗时不低于该值（毫秒）的请求总是记录
+     */
+    private long profileSlowThresholdMs = 500;
+
+    /**
+     * 其余请求的记录比例（0-1），作为与慢请求对比的基线
+     */
+    private double profileSampleRate = 0.01;
+
+    /**
+     * 管理接口（/api/admin/**）的访问令牌，请求头 X-Admin-Token 需与之一致；为空时管理接口关闭
+     */
+    private String adminToken = "";
+
+}
@@ -0,0 +1,267 @@
+package com.javayh.yolov.controller;
+
+import com.javayh.yolov.config.YoloConfig;
+import com.javayh.yolov.service.BenchmarkService;
+import com.javayh.yolov.service.CascadeDetectionService;
+import com.javayh.yolov.service.DetectionPipeline;
+import com.javayh.yolov.service.InferenceEngineSelector;
+import com.javayh.yolov.service.InferenceScheduler;
+import com.javayh.yolov.service.SessionTuningService;
+import com.javayh.yolov.service.YoloService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准测试控制器
+ * 在目标机器上测量检测流程各项配置的性能；测量会占满 CPU 或重新加载模型，位于管理接口下，需要访问令牌
+ */
+@Slf4j
+@Controller
+public class BenchmarkController {
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    @Autowired
+    private BenchmarkService benchmarkService;
+
+    @Autowired
+    private InferenceEngineSelector inferenceEngineSelector;
+
+    @Autowired
+    private SessionTuningService sessionTuningService;
+
+    @Autowired
+    private CascadeDetectionService cascadeDetectionService;
+
+    @Autowired
+    private YoloService yoloService;
+
+    @Autowired
+    private DetectionPipeline detectionPipeline;
+
+    @Autowired
+    private InferenceScheduler inferenceScheduler;
+
+    /**
+     * 不同输入尺寸的速度/精度对比
+     * @param file 测试图像，可选
+     * @param sizes 输入尺寸列表
+     * @param iterations 每个尺寸的测量次数
+     * @param model 模型名称，为空时使用默认模型
+     * @return 测量结果
+     */
+    @PostMapping("/api/admin/benchmark/resolution")
+    @ResponseBody
+    public ResponseEntity<List<Map<String, Object>>> benchmarkResolution(
+            @RequestParam(value = "file", required = false) MultipartFile file,
+            @RequestParam(value = "sizes", defaultValue = "320,480,640,1280") List<Integer> sizes,
+            @RequestParam(value = "iterations", defaultValue = "10") int iterations,
+            @RequestParam(value = "model", required = false) String model) {
+        if (!validIterations(iterations)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            byte[] bytes = file == null || file.isEmpty() ? null : file.getBytes();
+            return ResponseEntity.ok(benchmarkService.benchmarkResolutions(bytes, sizes, iterations, model));
+        } catch (Exception e) {
+            log.error("Resolution benchmark failed: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * JSON 与二进制检测结果格式的编解码开销对比
+     * @param counts 每次响应的检测框数量列表
+     * @param iterations 每种格式的测量次数
+     * @return 测量结果
+     */
+    @PostMapping("/api/admin/benchmark/serialization")
+    @ResponseBody
+    public ResponseEntity<List<Map<String, Object>>> benchmarkSerialization(
+            @RequestParam(value = "counts", defaultValue = "0,10,500") List<Integer> counts,
+            @RequestParam(value = "iterations", defaultValue = "2000") int iterations) {
+        if (!validIterations(iterations)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(benchmarkService.benchmarkSerialization(counts, iterations));
+        } catch (Exception e) {
+            log.error("Serialization benchmark failed: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 标注绘制开销对比
+     * @param counts 每张图像的检测框数量列表
+     * @param iterations 每种实现的测量次数
+     * @return 测量结果
+     */
+    @PostMapping("/api/admin/benchmark/rendering")
+    @ResponseBody
+    public ResponseEntity<List<Map<String, Object>>> benchmarkRendering(
+            @RequestParam(value = "counts", defaultValue = "10,100,500") List<Integer> counts,
+            @RequestParam(value = "iterations", defaultValue = "50") int iterations) {
+        if (!validIterations(iterations)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(benchmarkService.benchmarkRendering(counts, iterations));
+        } catch (Exception e) {
+            log.error("Rendering benchmark failed: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 预处理开销对比：Java 侧 float 预处理与融合进计算图的 uint8 输入
+     * @param sizes 源图像尺寸列表，格式为 宽x高
+     * @param inputSize 模型输入尺寸
+     * @param iterations 每种方式的测量次数
+     * @return 测量结果
+     */
+    @PostMapping("/api/admin/benchmark/preprocessing")
+    @ResponseBody
+    public ResponseEntity<List<Map<String, Object>>> benchmarkPreprocessing(
+            @RequestParam(value = "sizes", defaultValue = "1280x720,1920x1080") List<String> sizes,
+            @RequestParam(value = "inputSize", defaultValue = "640") int inputSize,
+            @RequestParam(value = "iterations", defaultValue = "100") int iterations) {
+        if (!validIterations(iterations)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(benchmarkService.benchmarkPreprocessing(sizes, inputSize, iterations));
+        } catch (Exception e) {
+            log.error("Preprocessing benchmark failed: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 原生内存浸泡测试，验证持续请求下进程 RSS 保持平稳
+     * @param file 测试图像，可选
+     * @param iterations 检测次数
+     * @param model 模型名称，为空时使用默认模型
+     * @param sampleEvery RSS 采样间隔（次）
+     * @return 测量结果
+     */
+    @PostMapping("/api/admin/benchmark/soak")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> soak(
+            @RequestParam(value = "file", required = false) MultipartFile file,
+            @RequestParam(value = "iterations", defaultValue = "100000") int iterations,
+            @RequestParam(value = "model", required = false) String model,
+            @RequestParam(value = "sampleEvery", defaultValue = "1000") int sampleEvery) {
+        if (!validIterations(iterations)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            byte[] bytes = file == null || file.isEmpty() ? null : file.getBytes();
+            return ResponseEntity.ok(benchmarkService.soak(bytes, iterations, model, sampleEvery));
+        } catch (Exception e) {
+            log.error("Soak test failed: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 最近一次浸泡测试的结果
+     * @return 测量结果，尚未运行时为 404
+     */
+    @GetMapping("/api/admin/benchmark/soak")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> soakResult() {
+        Map<String, Object> result = benchmarkService.getLastSoakResult();
+        return result == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(result);
+    }
+
+    /**
+     * 模型加载后推理引擎自测的结果
+     * @return 按模型名称的自测结果
+     */
+    @GetMapping("/api/admin/benchmark/engines")
+    @ResponseBody
+    public Map<String, Map<String, Object>> engineResults() {
+        return inferenceEngineSelector.getResults();
+    }
+
+    /**
+     * 对默认模型做会话配置调优，完成后保存配置并重新加载模型
+     * @return 是否已提交
+     */
+    @PostMapping("/api/admin/benchmark/session-tuning")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> tuneSession() {
+        try {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("submitted", yoloService.tuneSession());
+            body.put("cpuSignature", sessionTuningService.getCpuSignature());
+            return ResponseEntity.accepted().body(body);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 最近一次会话配置调优的结果
+     * @return 调优状态与各组合的测量值
+     */
+    @GetMapping("/api/admin/benchmark/session-tuning")
+    @ResponseBody
+    public Map<String, Object> sessionTuningResult() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("tuning", sessionTuningService.isTuning());
+        body.put("cpuSignature", sessionTuningService.getCpuSignature());
+        body.put("lastResult", sessionTuningService.getLastResult());
+        return body;
+    }
+
+    /**
+     * 级联检测统计：升级比例与吞吐量收益
+     * @return 统计信息
+     */
+    @GetMapping("/api/admin/benchmark/cascade")
+    @ResponseBody
+    public Map<String, Object> cascadeStats() {
+        return cascadeDetectionService.getStats();
+    }
+
+    /**
+     * 检测流水线各阶段的利用率与排队情况，用于调整各阶段线程数
+     * @return 统计信息
+     */
+    @GetMapping("/api/admin/benchmark/pipeline")
+    @ResponseBody
+    public Map<String, Object> pipelineStats() {
+        return detectionPipeline.getStats();
+    }
+
+    /**
+     * 推理调度各通道的排队、等待时间与丢弃的过时帧
+     * @return 统计信息
+     */
+    @GetMapping("/api/admin/benchmark/scheduler")
+    @ResponseBody
+    public Map<String, Object> schedulerStats() {
+        return inferenceScheduler.getStats();
+    }
+
+    /**
+     * 测量次数在 1 到 yolo.benchmark-max-iterations 之间，超出时接口返回 400
+     */
+    private boolean validIterations(int iterations) {
+        return iterations > 0 && iterations <= yoloConfig.getBenchmarkMaxIterations();
+    }
+}
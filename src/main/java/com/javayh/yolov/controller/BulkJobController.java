@@ -0,0 +1,84 @@
+package com.javayh.yolov.controller;
+
+import com.javayh.yolov.model.BulkJob;
+import com.javayh.yolov.service.BulkJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 批量检测任务控制器
+ * 位于管理接口下，需要访问令牌；输入与输出路径相对于 yolo.bulk-jobs-root
+ */
+@Controller
+public class BulkJobController {
+
+    @Autowired
+    private BulkJobService bulkJobService;
+
+    /**
+     * 启动批量任务，输出文件已存在时从断点继续
+     * @param params input（目录或 zip）、output（JSON-lines 文件）、model（可选）
+     * @return 任务状态，路径超出根目录时为 400
+     */
+    @PostMapping("/api/admin/jobs/bulk")
+    @ResponseBody
+    public ResponseEntity<BulkJob> submit(@RequestBody Map<String, String> params) {
+        String input = params.get("input");
+        String output = params.get("output");
+        if (input == null || output == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(bulkJobService.submit(input, output, params.get("model")));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * 查询所有批量任务
+     * @return 任务列表
+     */
+    @GetMapping("/api/admin/jobs/bulk")
+    @ResponseBody
+    public ResponseEntity<Collection<BulkJob>> list() {
+        return ResponseEntity.ok(bulkJobService.getJobs());
+    }
+
+    /**
+     * 查询批量任务进度
+     * @param id 任务id
+     * @return 任务状态
+     */
+    @GetMapping("/api/admin/jobs/bulk/{id}")
+    @ResponseBody
+    public ResponseEntity<BulkJob> status(@PathVariable("id") String id) {
+        BulkJob job = bulkJobService.getJob(id);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
+    }
+
+    /**
+     * 取消批量任务，已写出的结果保留，可再次提交继续
+     * @param id 任务id
+     * @return 任务状态
+     */
+    @PostMapping("/api/admin/jobs/bulk/{id}/cancel")
+    @ResponseBody
+    public ResponseEntity<BulkJob> cancel(@PathVariable("id") String id) {
+        BulkJob job = bulkJobService.getJob(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        job.cancel();
+        return ResponseEntity.ok(job);
+    }
+}
@@ -1,17 +1,30 @@
 package com.javayh.yolov.controller;
 
+import com.javayh.yolov.client.BinaryDetections;
+import com.javayh.yolov.model.DetectionOptions;
+import com.javayh.yolov.model.DetectionResponse;
+import com.javayh.yolov.model.ImageFormat;
+import com.javayh.yolov.model.Priority;
+import com.javayh.yolov.model.RawFrame;
+import com.javayh.yolov.model.RegionOfInterest;
 import com.javayh.yolov.service.DetectionService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 检测控制器
@@ -52,52 +65,236 @@ public class DetectionController {
 
     /**
      * 上传图像并进行检测
+     * 请求头 Accept 包含 image/ 时直接返回图像字节，否则返回 Base64 data URL
      * @param file 上传的图像文件
-     * @return 检测结果（Base64编码的图像）
+     * @param accept 请求的响应格式
+     * @param model 模型名称，为空时使用默认模型
+     * @param size 输入尺寸（长边），仅对动态输入模型生效
+     * @param tiled 是否使用切片推理
+     * @param classes 类别白名单（名称或 id），为空时检测全部类别
+     * @param roi 感兴趣区域 "x0,y0,x1,y1" 或多边形 "x0,y0,x1,y1,x2,y2,..."
+     * @param format 输出格式 jpg/png/webp
+     * @param quality 输出质量 1-100
+     * @param maxSize 输出图像长边上限，用于预览
+     * @return 检测结果图像
      */
     @PostMapping("/detect-image")
     @ResponseBody
-    public String detectImage(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<?> detectImage(@RequestParam("file") MultipartFile file,
+                                         @RequestHeader(value = "Accept", required = false) String accept,
+                                         @RequestParam(value = "model", required = false) String model,
+                                         @RequestParam(value = "size", required = false) Integer size,
+                                         @RequestParam(value = "tiled", defaultValue = "false") boolean tiled,
+                                         @RequestParam(value = "classes", required = false) List<String> classes,
+                                         @RequestParam(value = "roi", required = false) String roi,
+                                         @RequestParam(value = "format", required = false) String format,
+                                         @RequestParam(value = "quality", required = false) Integer quality,
+                                         @RequestParam(value = "maxSize", required = false) Integer maxSize) {
+        boolean raw = accept != null && accept.contains("image/");
         if (file.isEmpty()) {
             log.error("Image file is empty");
-            return "error: Image is empty";
+            return raw ? ResponseEntity.badRequest().body("Image is empty") : ResponseEntity.ok("error: Image is empty");
         }
 
         try {
-            byte[] resultImage = detectionService.detect(file.getBytes());
+            DetectionOptions options = options(file, model, size, tiled, classes, roi);
+            output(options, format, quality, maxSize);
+            byte[] resultImage = detectionService.detect(file.getBytes(), options);
+            String contentType = options.getFormat().getContentType();
+            if (raw) {
+                return ResponseEntity.ok().contentType(MediaType.parseMediaType(contentType)).body(resultImage);
+            }
             String base64Image = Base64.getEncoder().encodeToString(resultImage);
 
-            return "data:image/jpeg;base64," + base64Image;
+            return ResponseEntity.ok("data:" + contentType + ";base64," + base64Image);
         } catch (Exception e) {
             log.error("Detection failed: {}", e.getMessage(), e);
-            return "error: Detection failed: " + e.getMessage();
+            return raw ? ResponseEntity.internalServerError().body("Detection failed: " + e.getMessage())
+                    : ResponseEntity.ok("error: Detection failed: " + e.getMessage());
         }
     }
 
     /**
      * 上传图像并进行检测，然后返回可下载的图像文件
      * @param file 上传的图像文件
+     * @param model 模型名称，为空时使用默认模型
+     * @param size 输入尺寸（长边），仅对动态输入模型生效
+     * @param tiled 是否使用切片推理
+     * @param classes 类别白名单（名称或 id），为空时检测全部类别
+     * @param roi 感兴趣区域 "x0,y0,x1,y1" 或多边形 "x0,y0,x1,y1,x2,y2,..."
+     * @param format 输出格式 jpg/png/webp
+     * @param quality 输出质量 1-100
      * @return 检测结果图像文件
      */
     @PostMapping("/detect-and-download")
-    public ResponseEntity<byte[]> detectAndDownloadImage(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<byte[]> detectAndDownloadImage(@RequestParam("file") MultipartFile file,
+                                                         @RequestParam(value = "model", required = false) String model,
+                                                         @RequestParam(value = "size", required = false) Integer size,
+                                                         @RequestParam(value = "tiled", defaultValue = "false") boolean tiled,
+                                                         @RequestParam(value = "classes", required = false) List<String> classes,
+                                                         @RequestParam(value = "roi", required = false) String roi,
+                                                         @RequestParam(value = "format", required = false) String format,
+                                                         @RequestParam(value = "quality", required = false) Integer quality) {
         if (file.isEmpty()) {
             return ResponseEntity.badRequest().body(null);
         }
 
         try {
-            byte[] resultImage = detectionService.detect(file.getBytes());
+            DetectionOptions options = options(file, model, size, tiled, classes, roi);
+            output(options, format, quality, null);
+            byte[] resultImage = detectionService.detect(file.getBytes(), options);
             
             // 设置响应头，使浏览器能够下载图像
             return ResponseEntity.ok()
-                    .header("Content-Type", "image/jpeg")
-                    .header("Content-Disposition", "attachment; filename=detection_result.jpg")
+                    .header("Content-Type", options.getFormat().getContentType())
+                    .header("Content-Disposition", "attachment; filename=detection_result" + options.getFormat().getExtension())
                     .body(resultImage);
         } catch (Exception e) {
             log.error("Detection failed: {}", e.getMessage(), e);
             return ResponseEntity.status(500).body(null);
         }
     }
+
+    /**
+     * 以原始字节上传图像，只返回检测结果（不含标注图像）
+     * Accept 为 application/x-yolo-detections 时返回紧凑二进制格式（定义见 {@link BinaryDetections}），否则返回 JSON
+     * @param body 图像字节
+     * @param accept 请求的响应格式
+     * @param model 模型名称，为空时使用默认模型
+     * @param size 输入尺寸（长边），仅对动态输入模型生效
+     * @param tiled 是否使用切片推理
+     * @param classes 类别白名单（名称或 id），为空时检测全部类别
+     * @param roi 感兴趣区域 "x0,y0,x1,y1" 或多边形 "x0,y0,x1,y1,x2,y2,..."
+     * @return 检测结果
+     */
+    @PostMapping("/api/detect")
+    @ResponseBody
+    public ResponseEntity<?> detectResult(@RequestBody byte[] body,
+                                          @RequestHeader(value = "Accept", required = false) String accept,
+                                          @RequestParam(value = "model", required = false) String model,
+                                          @RequestParam(value = "size", required = false) Integer size,
+                                          @RequestParam(value = "tiled", defaultValue = "false") boolean tiled,
+                                          @RequestParam(value = "classes", required = false) List<String> classes,
+                                          @RequestParam(value = "roi", required = false) String roi) {
+        if (body.length == 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            DetectionResponse response = detectionService.detectResult(body, options(null, model, size, tiled, classes, roi));
+            if (accept != null && accept.contains(BinaryDetections.MEDIA_TYPE)) {
+                return ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType(BinaryDetections.MEDIA_TYPE))
+                        .body(response.toBinary());
+            }
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(503).build();
+        } catch (Exception e) {
+            log.error("Detection failed: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 检测客户端已 letterbox 到模型输入尺寸的原始 uint8 帧（HWC），跳过图像编解码与预处理
+     * 适用于已在边缘侧缩放帧的网关和实时视频，返回格式与 /api/detect 相同
+     * @param body 像素数据
+     * @param accept Accept 请求头
+     * @param width 帧宽度
+     * @param height 帧高度
+     * @param channelOrder 通道顺序 rgb、bgr、rgba 或 bgra
+     * @param ratio 缩放比例（帧 / 原图）
+     * @param padX 左侧填充像素
+     * @param padY 上方填充像素
+     * @param sourceWidth 原图宽度，可选
+     * @param sourceHeight 原图高度，可选
+     * @param model 模型名称，为空时使用默认模型
+     * @param classes 类别白名单（名称或 id），为空时检测全部类别
+     * @param roi 原图坐标系下的感兴趣区域
+     * @return 检测结果
+     */
+    @PostMapping("/api/detect/raw")
+    @ResponseBody
+    public ResponseEntity<?> detectRaw(@RequestBody byte[] body,
+                                       @RequestHeader(value = "Accept", required = false) String accept,
+                                       @RequestParam("width") int width,
+                                       @RequestParam("height") int height,
+                                       @RequestParam(value = "channelOrder", defaultValue = "rgb") String channelOrder,
+                                       @RequestParam(value = "ratio", defaultValue = "1") double ratio,
+                                       @RequestParam(value = "padX", defaultValue = "0") double padX,
+                                       @RequestParam(value = "padY", defaultValue = "0") double padY,
+                                       @RequestParam(value = "sourceWidth", defaultValue = "0") int sourceWidth,
+                                       @RequestParam(value = "sourceHeight", defaultValue = "0") int sourceHeight,
+                                       @RequestParam(value = "model", required = false) String model,
+                                       @RequestParam(value = "classes", required = false) List<String> classes,
+                                       @RequestParam(value = "roi", required = false) String roi) {
+        RawFrame frame = new RawFrame();
+        frame.setWidth(width);
+        frame.setHeight(height);
+        frame.setChannelOrder(channelOrder);
+        frame.setRatio(ratio);
+        frame.setPadX(padX);
+        frame.setPadY(padY);
+        frame.setSourceWidth(sourceWidth);
+        frame.setSourceHeight(sourceHeight);
+        try {
+            DetectionOptions options = options(null, model, null, false, classes, roi);
+            // 原始帧来自网关和实时视频，使用实时通道，排队过久的帧直接丢弃
+            options.setPriority(Priority.REALTIME);
+            DetectionResponse response = detectionService.detectRaw(body, frame, options);
+            if (accept != null && accept.contains(BinaryDetections.MEDIA_TYPE)) {
+                return ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType(BinaryDetections.MEDIA_TYPE))
+                        .body(response.toBinary());
+            }
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(503).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Raw frame detection failed: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 原始帧接口应使用的帧尺寸与通道顺序
+     * @param model 模型名称，为空时使用默认模型
+     * @return 帧格式
+     */
+    @GetMapping("/api/detect/raw")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> rawFrameSpec(@RequestParam(value = "model", required = false) String model) {
+        try {
+            return ResponseEntity.ok(detectionService.rawFrameSpec(model));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Failed to resolve raw frame spec: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    private static void output(DetectionOptions options, String format, Integer quality, Integer maxSize) {
+        options.setFormat(ImageFormat.parse(format));
+        options.setQuality(quality);
+        options.setMaxDimension(maxSize);
+    }
+
+    private static DetectionOptions options(MultipartFile file, String model, Integer size, boolean tiled,
+                                            List<String> classes, String roi) {
+        DetectionOptions options = DetectionOptions.ofModel(model);
+        options.setSourceName(file == null ? null : file.getOriginalFilename());
+        options.setInputSize(size);
+        options.setTiled(tiled);
+        options.setClasses(classes);
+        options.setRoi(RegionOfInterest.parse(roi));
+        return options;
+    }
+
    /* @PostMapping("/detect-image")
     @ResponseBody
     public String detectImage(@RequestParam("file") MultipartFile file) {
@@ -1,5 +1,10 @@
 package com.javayh.yolov.controller;
 
+import com.javayh.yolov.model.ModelMetadata;
+import com.javayh.yolov.model.ModelQualification;
+import com.javayh.yolov.service.ModelCatalog;
+import com.javayh.yolov.service.ModelQualificationService;
+import com.javayh.yolov.service.ModelRegistry;
 import com.javayh.yolov.service.ModelService;
 import com.javayh.yolov.service.YoloService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,6 +13,7 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +30,15 @@ public class ModelController {
     
     @Autowired
     private YoloService yoloService;
+
+    @Autowired
+    private ModelRegistry modelRegistry;
+
+    @Autowired
+    private ModelCatalog modelCatalog;
+
+    @Autowired
+    private ModelQualificationService modelQualificationService;
     
     /**
      * 模型管理页面
@@ -47,20 +62,55 @@ public class ModelController {
             @RequestParam("classesFile") MultipartFile classesFile) {
         
         try {
-            String result = modelService.uploadModel(modelFile, classesFile);
-            
-            // 上传成功后重新加载模型和类别
-            if (result.startsWith("模型上传成功")) {
-                yoloService.reloadModelAndClasses();
-                return "模型上传成功并已生效";
-            }
-            
-            return result;
+            // 模型在后台验证通过后才会生效，进度见 /api/models/qualifications/{id}
+            return modelService.uploadModel(modelFile, classesFile);
         } catch (Exception e) {
             return "模型上传失败: " + e.getMessage();
         }
     }
     
+    /**
+     * 上传模型并提交后台验证
+     * @param modelFile ONNX模型文件
+     * @param classesFile 类别名称文件
+     * @return 验证任务
+     */
+    @PostMapping("/api/models/qualifications")
+    @ResponseBody
+    public ResponseEntity<?> qualifyModel(
+            @RequestParam("modelFile") MultipartFile modelFile,
+            @RequestParam("classesFile") MultipartFile classesFile) {
+        try {
+            return ResponseEntity.accepted().body(modelService.stageModel(modelFile, classesFile));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", "模型上传失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 查询所有模型验证任务
+     * @return 任务列表
+     */
+    @GetMapping("/api/models/qualifications")
+    @ResponseBody
+    public ResponseEntity<Collection<ModelQualification>> listQualifications() {
+        return ResponseEntity.ok(modelQualificationService.getJobs());
+    }
+
+    /**
+     * 查询模型验证进度
+     * @param id 任务id
+     * @return 任务状态
+     */
+    @GetMapping("/api/models/qualifications/{id}")
+    @ResponseBody
+    public ResponseEntity<ModelQualification> qualificationStatus(@PathVariable("id") String id) {
+        ModelQualification job = modelQualificationService.getJob(id);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
+    }
+
     /**
      * 恢复默认模型
      * @return 操作结果
@@ -113,6 +163,16 @@ public class ModelController {
         }
     }
     
+    /**
+     * 获取模型目录：大小、SHA-256、输入输出形状、类别数与最近一次测得的耗时
+     * @return 模型元数据列表
+     */
+    @GetMapping("/api/models/catalog")
+    @ResponseBody
+    public ResponseEntity<List<ModelMetadata>> getCatalog() {
+        return ResponseEntity.ok(modelCatalog.getModels());
+    }
+
     /**
      * 切换模型
      * @param modelName 模型文件名
@@ -146,4 +206,33 @@ public class ModelController {
             return ResponseEntity.ok(result);
         }
     }
+
+    /**
+     * 获取注册表中已加载的模型
+     * @return 已加载模型状态
+     */
+    @GetMapping("/api/models/loaded")
+    @ResponseBody
+    public ResponseEntity<List<Map<String, Object>>> getLoadedModels() {
+        return ResponseEntity.ok(modelRegistry.getLoadedModels());
+    }
+
+    /**
+     * 从注册表中卸载模型
+     * @param name 模型文件名
+     * @return 操作结果
+     */
+    @DeleteMapping("/api/models/loaded/{name}")
+    @ResponseBody
+    public ResponseEntity<Map<String, String>> unloadModel(@PathVariable("name") String name) {
+        Map<String, String> result = new HashMap<>();
+        if (modelRegistry.unload(name)) {
+            result.put("status", "success");
+            result.put("message", "模型已卸载");
+        } else {
+            result.put("status", "error");
+            result.put("message", "模型未加载: " + name);
+        }
+        return ResponseEntity.ok(result);
+    }
 }
\ No newline at end of file
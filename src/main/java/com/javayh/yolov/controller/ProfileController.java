@@ -0,0 +1,49 @@
+package com.javayh.yolov.controller;
+
+import com.javayh.yolov.model.RequestProfile;
+import com.javayh.yolov.service.RequestProfiler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.List;
+
+/**
+ * 请求耗时诊断控制器
+ * 管理接口，需要在请求头 X-Admin-Token 中携带 yolo.admin-token，见 {@link com.javayh.yolov.config.AdminTokenInterceptor}
+ * @author haiji
+ */
+@Controller
+public class ProfileController {
+
+    @Autowired
+    private RequestProfiler requestProfiler;
+
+    /**
+     * 最近记录的检测请求中总耗时最高的请求及其各阶段耗时
+     * @param limit 返回数量上限
+     * @param minMillis 总耗时下限（毫秒）
+     * @return 按总耗时从高到低排列的请求记录
+     */
+    @GetMapping("/api/admin/profiles")
+    @ResponseBody
+    public ResponseEntity<List<RequestProfile>> slowest(@RequestParam(value = "limit", defaultValue = "20") int limit,
+                                                        @RequestParam(value = "minMillis", defaultValue = "0") double minMillis) {
+        return ResponseEntity.ok(requestProfiler.getSlowest(limit, minMillis));
+    }
+
+    /**
+     * 清空请求记录
+     * @return 无内容
+     */
+    @DeleteMapping("/api/admin/profiles")
+    @ResponseBody
+    public ResponseEntity<Void> clear() {
+        requestProfiler.clear();
+        return ResponseEntity.noContent().build();
+    }
+}
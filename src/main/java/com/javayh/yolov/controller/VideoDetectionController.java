@@ -1,5 +1,8 @@
 package com.javayh.yolov.controller;
 
+import com.javayh.yolov.model.DetectionOptions;
+import com.javayh.yolov.model.Priority;
+import com.javayh.yolov.model.RegionOfInterest;
 import com.javayh.yolov.service.DetectionService;
 import com.javayh.yolov.service.VideoStreamService;
 import com.javayh.yolov.service.YoloService;
@@ -12,6 +15,8 @@ import org.springframework.web.bind.annotation.ResponseBody;
 
 import java.io.IOException;
 import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 @Slf4j
 @Controller
@@ -26,7 +31,11 @@ public class VideoDetectionController {
      */
     @PostMapping("/process-video-frame")
     @ResponseBody
-    public String processVideoFrame(@RequestParam("frame") String base64Image) {
+    public String processVideoFrame(@RequestParam("frame") String base64Image,
+                                    @RequestParam(value = "model", required = false) String model,
+                                    @RequestParam(value = "size", required = false) Integer size,
+                                    @RequestParam(value = "classes", required = false) List<String> classes,
+                                    @RequestParam(value = "roi", required = false) String roi) {
         try {
             // 移除可能的Base64前缀
             if (base64Image.startsWith("data:image/")) {
@@ -35,8 +44,17 @@ public class VideoDetectionController {
             
             byte[] imageBytes = Base64.getDecoder().decode(base64Image);
 
-            byte[] resultImage = detectionService.detect(imageBytes);
+            DetectionOptions options = DetectionOptions.ofModel(model);
+            options.setInputSize(size);
+            options.setClasses(classes);
+            options.setRoi(RegionOfInterest.parse(roi));
+            options.setPriority(Priority.REALTIME);
+            byte[] resultImage = detectionService.detect(imageBytes, options);
             return Base64.getEncoder().encodeToString(resultImage);
+        } catch (RejectedExecutionException e) {
+            // 排队过久的帧已过时，前端按错误处理并显示原始帧
+            log.debug("Video frame dropped: {}", e.getMessage());
+            return "error";
         } catch (Exception e) {
            log.error("Error processing video frame", e);
             return "error";
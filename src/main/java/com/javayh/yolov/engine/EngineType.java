@@ -0,0 +1,44 @@
+package com.javayh.yolov.engine;
+
+import lombok.Getter;
+
+/**
+ * 推理引擎类型
+ * @author haiji
+ */
+@Getter
+public enum EngineType {
+
+    ONNXRUNTIME("onnxruntime"),
+    OPENCV("opencv");
+
+    /**
+     * 配置与接口中使用的名称
+     */
+    private final String value;
+
+    EngineType(String value) {
+        this.value = value;
+    }
+
+    /**
+     * 解析配置值，auto 或空值返回 null，表示启动时自测后选择
+     * @param value 配置值
+     * @return 引擎类型
+     */
+    public static EngineType parse(String value) {
+        if (value == null || value.isBlank() || "auto".equalsIgnoreCase(value.trim())) {
+            return null;
+        }
+        return switch (value.trim().toLowerCase()) {
+            case "onnxruntime", "ort" -> ONNXRUNTIME;
+            case "opencv", "opencv-dnn", "dnn" -> OPENCV;
+            default -> throw new IllegalArgumentException("Unsupported inference engine: " + value);
+        };
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
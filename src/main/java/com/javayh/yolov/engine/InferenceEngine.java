@@ -0,0 +1,62 @@
+package com.javayh.yolov.engine;
+
+import ai.onnxruntime.OrtException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 推理引擎
+ * 同一个 ONNX 模型可以由不同的运行时执行；输入为归一化的 NCHW float，输出为模型第一个输出 [N, dim1, dim2]，
+ * 图内 NMS 模型的 [num_dets, 7] 输出包装为 [1, num_dets, 7]。实现需支持多线程并发调用。
+ * @author haiji
+ */
+public interface InferenceEngine extends AutoCloseable {
+
+    /**
+     * 引擎类型
+     * @return 类型
+     */
+    EngineType getType();
+
+    /**
+     * 执行推理
+     * @param pixels NCHW 输入数据
+     * @param shape 输入形状 [N, C, H, W]
+     * @return 模型第一个输出
+     * @throws OrtException 如果 ONNX Runtime 推理失败
+     */
+    float[][][] run(float[] pixels, long[] shape) throws OrtException;
+
+    /**
+     * 是否接受 uint8 NHWC 输入（预处理已融合进计算图），此时应调用 {@link #runUint8}
+     * @return 是否为 uint8 输入
+     */
+    default boolean isUint8Input() {
+        return false;
+    }
+
+    /**
+     * uint8 输入的通道顺序是否为 BGR
+     * @return 是否为 BGR
+     */
+    default boolean isBgrInput() {
+        return false;
+    }
+
+    /**
+     * 以 uint8 NHWC 输入执行推理
+     * @param pixels 直接缓冲区，内容为 [N, H, W, 3]
+     * @param shape 输入形状 [N, H, W, 3]
+     * @return 模型第一个输出
+     * @throws OrtException 如果 ONNX Runtime 推理失败
+     */
+    default float[][][] runUint8(ByteBuffer pixels, long[] shape) throws OrtException {
+        throw new UnsupportedOperationException(getType() + " does not accept uint8 input");
+    }
+
+    /**
+     * 释放引擎持有的原生资源
+     */
+    @Override
+    void close();
+}
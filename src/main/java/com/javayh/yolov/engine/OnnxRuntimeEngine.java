@@ -0,0 +1,79 @@
+package com.javayh.yolov.engine;
+
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.javayh.yolov.config.NativeScope;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Map;
+
+/**
+ * ONNX Runtime 推理引擎，会话由 {@link com.javayh.yolov.model.LoadedModel} 持有并负责关闭
+ * @author haiji
+ */
+public class OnnxRuntimeEngine implements InferenceEngine {
+
+    private final OrtEnvironment env;
+    private final OrtSession session;
+    private final String inputName;
+    private final boolean uint8Input;
+    private final boolean bgrInput;
+
+    public OnnxRuntimeEngine(OrtSession session, String inputName, boolean uint8Input, boolean bgrInput) {
+        this.env = OrtEnvironment.getEnvironment();
+        this.session = session;
+        this.inputName = inputName;
+        this.uint8Input = uint8Input;
+        this.bgrInput = bgrInput;
+    }
+
+    @Override
+    public EngineType getType() {
+        return EngineType.ONNXRUNTIME;
+    }
+
+    @Override
+    public boolean isUint8Input() {
+        return uint8Input;
+    }
+
+    @Override
+    public boolean isBgrInput() {
+        return bgrInput;
+    }
+
+    @Override
+    public float[][][] run(float[] pixels, long[] shape) throws OrtException {
+        try (NativeScope scope = NativeScope.open()) {
+            return run(scope, scope.add(OnnxTensor.createTensor(env, FloatBuffer.wrap(pixels), shape)));
+        }
+    }
+
+    @Override
+    public float[][][] runUint8(ByteBuffer pixels, long[] shape) throws OrtException {
+        try (NativeScope scope = NativeScope.open()) {
+            return run(scope, scope.add(OnnxTensor.createTensor(env, pixels, shape, OnnxJavaType.UINT8)));
+        }
+    }
+
+    private float[][][] run(NativeScope scope, OnnxTensor tensor) throws OrtException {
+        OrtSession.Result result = scope.add(session.run(Map.of(inputName, tensor)));
+        Object value = result.get(0).getValue();
+        if (value instanceof float[][][] raw) {
+            return raw;
+        }
+        if (value instanceof float[][] rows) {
+            return new float[][][]{rows};
+        }
+        throw new RuntimeException("Unsupported ONNX output type: " + value.getClass());
+    }
+
+    @Override
+    public void close() {
+        // 会话随模型一同关闭
+    }
+}
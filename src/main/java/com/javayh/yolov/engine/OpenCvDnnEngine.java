@@ -0,0 +1,127 @@
+package com.javayh.yolov.engine;
+
+import com.javayh.yolov.config.NativeScope;
+import com.javayh.yolov.config.OpenCvLoader;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.dnn.Dnn;
+import org.opencv.dnn.Net;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OpenCV DNN 推理引擎
+ * cv::dnn::Net 不能被多个线程同时 forward，按需创建最多 poolSize 个网络实例组成的池
+ * 使用原始（float 输入）ONNX 文件，不使用融合了预处理的模型
+ * @author haiji
+ */
+@Slf4j
+public class OpenCvDnnEngine implements InferenceEngine {
+
+    private final String modelPath;
+    private final int poolSize;
+    private final BlockingQueue<Net> idle;
+    private final List<Net> all = new ArrayList<>();
+    private final AtomicInteger created = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * 加载模型并创建第一个网络实例，模型无法被 OpenCV DNN 解析时抛出异常
+     * @param modelFile 原始 ONNX 文件
+     * @param poolSize 最大网络实例数
+     */
+    public OpenCvDnnEngine(File modelFile, int poolSize) {
+        OpenCvLoader.load();
+        this.modelPath = modelFile.getAbsolutePath();
+        this.poolSize = Math.max(1, poolSize);
+        this.idle = new ArrayBlockingQueue<>(this.poolSize);
+        created.incrementAndGet();
+        idle.add(createNet());
+    }
+
+    @Override
+    public EngineType getType() {
+        return EngineType.OPENCV;
+    }
+
+    @Override
+    public float[][][] run(float[] pixels, long[] shape) {
+        Net net = acquire();
+        try (NativeScope scope = NativeScope.open()) {
+            Mat blob = scope.add(new Mat(new int[]{(int) shape[0], (int) shape[1], (int) shape[2], (int) shape[3]},
+                    CvType.CV_32F));
+            blob.put(new int[]{0, 0, 0, 0}, pixels);
+            net.setInput(blob);
+            return toArray(scope.add(net.forward()));
+        } finally {
+            idle.offer(net);
+        }
+    }
+
+    /**
+     * 把 forward 的输出转换为 [N, dim1, dim2]，二维输出包装为 [1, dim0, dim1]
+     */
+    private static float[][][] toArray(Mat out) {
+        int dims = out.dims();
+        int n = dims == 3 ? out.size(0) : 1;
+        int d1 = out.size(dims - 2);
+        int d2 = out.size(dims - 1);
+        float[] data = new float[n * d1 * d2];
+        int[] origin = new int[dims];
+        out.get(origin, data);
+        float[][][] result = new float[n][d1][d2];
+        for (int b = 0, i = 0; b < n; b++) {
+            for (int r = 0; r < d1; r++, i += d2) {
+                System.arraycopy(data, i, result[b][r], 0, d2);
+            }
+        }
+        return result;
+    }
+
+    private Net acquire() {
+        if (closed) {
+            throw new IllegalStateException("OpenCV DNN engine has been closed");
+        }
+        Net net = idle.poll();
+        if (net != null) {
+            return net;
+        }
+        if (created.incrementAndGet() <= poolSize) {
+            return createNet();
+        }
+        created.decrementAndGet();
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for OpenCV DNN net", e);
+        }
+    }
+
+    private Net createNet() {
+        Net net = Dnn.readNetFromONNX(modelPath);
+        net.setPreferableBackend(Dnn.DNN_BACKEND_OPENCV);
+        net.setPreferableTarget(Dnn.DNN_TARGET_CPU);
+        synchronized (all) {
+            all.add(net);
+        }
+        log.debug("OpenCV DNN 网络实例已创建: {} ({}/{})", modelPath, created.get(), poolSize);
+        return net;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        // Net 没有显式释放方法，清空引用后由 finalizer 回收
+        synchronized (all) {
+            all.clear();
+        }
+        idle.clear();
+    }
+}
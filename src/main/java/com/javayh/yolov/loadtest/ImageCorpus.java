@@ -0,0 +1,101 @@
+package com.javayh.yolov.loadtest;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * 压测图像集
+ * 从目录读取真实图像，或生成带渐变背景和随机色块的合成 JPEG（编码后大小与真实照片同量级）
+ * @author haiji
+ */
+public final class ImageCorpus {
+
+    private ImageCorpus() {
+    }
+
+    public static List<byte[]> load(LoadTestOptions options) throws IOException {
+        if (options.getCorpus() != null && !options.getCorpus().isBlank()) {
+            return readDirectory(Paths.get(options.getCorpus()));
+        }
+        List<byte[]> images = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < options.getImages(); i++) {
+            images.add(generate(options.getWidth(), options.getHeight(), options.getJpegQuality(), random));
+        }
+        return images;
+    }
+
+    private static List<byte[]> readDirectory(Path dir) throws IOException {
+        List<byte[]> images = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : files.sorted().toList()) {
+                String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+                if (name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png")) {
+                    images.add(Files.readAllBytes(path));
+                }
+            }
+        }
+        if (images.isEmpty()) {
+            throw new IllegalArgumentException("No images found in " + dir);
+        }
+        return images;
+    }
+
+    static byte[] generate(int width, int height, float quality, Random random) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, randomColor(random), width, height, randomColor(random)));
+        g.fillRect(0, 0, width, height);
+        for (int i = 0; i < 40; i++) {
+            g.setColor(randomColor(random));
+            int w = 20 + random.nextInt(Math.max(1, width / 4));
+            int h = 20 + random.nextInt(Math.max(1, height / 4));
+            int x = random.nextInt(Math.max(1, width - w));
+            int y = random.nextInt(Math.max(1, height - h));
+            if (random.nextBoolean()) {
+                g.fillOval(x, y, w, h);
+            } else {
+                g.fillRect(x, y, w, h);
+            }
+        }
+        g.dispose();
+        // 叠加噪声，避免 JPEG 对纯色块压缩得过小
+        for (int i = 0; i < width * height / 32; i++) {
+            image.setRGB(random.nextInt(width), random.nextInt(height), random.nextInt(0xFFFFFF));
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static Color randomColor(Random random) {
+        return new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+    }
+}
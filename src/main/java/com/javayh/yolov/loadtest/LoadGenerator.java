@@ -0,0 +1,241 @@
+package com.javayh.yolov.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 压测工具
+ * 对 /detect-image、/process-video-frame、/api/detect 或任意 GET 接口施加闭环或开环负载，
+ * 使用 HdrHistogram 统计吞吐与 p50/p90/p99/p99.9 延迟，并给出修正协同遗漏（coordinated omission）后的结果。
+ * <p>
+ * 闭环模式（默认）：每个连接收到响应后立即发送下一个请求。没有发送节奏可以参照，修正结果以平均延迟作为期望间隔
+ * 补齐服务停顿期间未能发出的请求，延迟波动越大尾部越被放大，只是估算值，报告中单独标注；需要可信的修正结果时使用开环模式。
+ * <br>
+ * 开环模式（--rate）：按固定速率安排请求发送时间，修正延迟从计划发送时间算起，服务变慢时排队等待的时间同样计入。
+ * <pre>
+ * mvn -Ploadtest compile exec:java -Dexec.args="--target=api-json --concurrency=16 --rate=50 --duration=60s"
+ * </pre>
+ * @author haiji
+ */
+public class LoadGenerator {
+
+    /**
+     * 延迟记录上限 10 分钟（微秒），3 位有效数字
+     */
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final LoadTestOptions options;
+    private final HttpClient httpClient;
+    private final List<byte[]> bodies = new ArrayList<>();
+
+    private final LongAdder errors = new LongAdder();
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    public LoadGenerator(LoadTestOptions options, List<byte[]> images) {
+        this.options = options;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(options.getTimeout())
+                .executor(Executors.newFixedThreadPool(Math.max(2, options.getConcurrency())))
+                .build();
+        for (byte[] image : images) {
+            bodies.add(options.getTarget().encodeBody(image));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        List<byte[]> images = ImageCorpus.load(options);
+        long totalBytes = images.stream().mapToLong(b -> b.length).sum();
+        System.out.printf("目标: %s %s，并发 %d，%s，图像 %d 张（平均 %d KB）%n",
+                options.getUrl(), options.getTarget(), options.getConcurrency(),
+                options.isOpenLoop() ? "开环 " + options.getRate() + " req/s" : "闭环",
+                images.size(), totalBytes / images.size() / 1024);
+        Result result = new LoadGenerator(options, images).run();
+        result.print(System.out);
+        if (options.getHgrm() != null) {
+            try (PrintStream out = new PrintStream(new FileOutputStream(options.getHgrm()))) {
+                result.corrected().outputPercentileDistribution(out, 1000.0);
+            }
+            System.out.println((result.estimated() ? "延迟分布（闭环修正估算值）已写入 " : "延迟分布已写入 ")
+                    + options.getHgrm());
+        }
+        System.exit(0);
+    }
+
+    /**
+     * 执行预热与统计阶段
+     * @return 统计结果
+     * @throws Exception 压测线程异常
+     */
+    public Result run() throws Exception {
+        int workers = options.getConcurrency();
+        long start = System.nanoTime();
+        long measureStart = start + options.getWarmup().toNanos();
+        long end = measureStart + options.getDuration().toNanos();
+        long interval = options.isOpenLoop() ? (long) (TimeUnit.SECONDS.toNanos(1) / options.getRate()) : 0;
+        AtomicLong ticket = new AtomicLong();
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<Histogram[]>> futures = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            int offset = w;
+            futures.add(pool.submit(() -> options.isOpenLoop()
+                    ? openLoop(ticket, start, interval, measureStart, end)
+                    : closedLoop(offset, measureStart, end)));
+        }
+
+        Histogram uncorrected = newHistogram();
+        Histogram corrected = newHistogram();
+        for (Future<Histogram[]> future : futures) {
+            Histogram[] h = future.get();
+            uncorrected.add(h[0]);
+            corrected.add(h[1]);
+        }
+        pool.shutdown();
+
+        if (!options.isOpenLoop() && uncorrected.getTotalCount() > 0) {
+            // 闭环模式下没有计划发送时间，以平均延迟估算期望请求间隔，超出部分按该间隔补齐被遗漏的样本
+            corrected = uncorrected.copyCorrectedForCoordinatedOmission((long) uncorrected.getMean());
+        }
+        double seconds = options.getDuration().toNanos() / 1e9;
+        return new Result(uncorrected, corrected, !options.isOpenLoop(), seconds, errors.sum(),
+                new TreeMap<>(snapshotStatuses()));
+    }
+
+    /**
+     * 闭环：收到响应后立即发送下一个请求
+     */
+    private Histogram[] closedLoop(int offset, long measureStart, long end) {
+        Histogram histogram = newHistogram();
+        int i = offset;
+        while (true) {
+            long sendTime = System.nanoTime();
+            if (sendTime >= end) {
+                break;
+            }
+            boolean measured = sendTime >= measureStart;
+            boolean ok = send(bodies.get(i++ % bodies.size()), measured);
+            long latency = System.nanoTime() - sendTime;
+            if (measured && ok) {
+                histogram.recordValue(Math.min(HIGHEST_TRACKABLE_MICROS, latency / 1000));
+            }
+        }
+        return new Histogram[]{histogram, histogram};
+    }
+
+    /**
+     * 开环：第 k 个请求的计划发送时间为 start + k * interval，与服务响应速度无关
+     */
+    private Histogram[] openLoop(AtomicLong ticket, long start, long interval, long measureStart, long end) {
+        Histogram uncorrected = newHistogram();
+        Histogram corrected = newHistogram();
+        while (true) {
+            long k = ticket.getAndIncrement();
+            long intended = start + k * interval;
+            if (intended >= end) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+            boolean measured = intended >= measureStart;
+            boolean ok = send(bodies.get((int) (k % bodies.size())), measured);
+            long done = System.nanoTime();
+            if (measured && ok) {
+                uncorrected.recordValue(Math.min(HIGHEST_TRACKABLE_MICROS, (done - now) / 1000));
+                corrected.recordValue(Math.min(HIGHEST_TRACKABLE_MICROS, (done - intended) / 1000));
+            }
+        }
+        return new Histogram[]{uncorrected, corrected};
+    }
+
+    /**
+     * 发送一个请求
+     * @param body 请求体
+     * @param measured 是否处于统计阶段，预热阶段的状态码与错误不计入结果
+     * @return 是否成功
+     */
+    private boolean send(byte[] body, boolean measured) {
+        HttpRequest request = options.getTarget().request(options, body);
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            // /detect-image 与 /process-video-frame 出错时仍返回 200，按响应体判断
+            byte[] data = response.body();
+            boolean bodyError = data.length >= 5 && data[0] == 'e' && data[1] == 'r' && data[2] == 'r'
+                    && data[3] == 'o' && data[4] == 'r';
+            boolean failed = response.statusCode() >= 400 || bodyError;
+            if (measured) {
+                statuses.computeIfAbsent(response.statusCode(), k -> new LongAdder()).increment();
+                if (failed) {
+                    errors.increment();
+                }
+            }
+            return !failed;
+        } catch (IOException e) {
+            if (measured) {
+                errors.increment();
+                statuses.computeIfAbsent(-1, k -> new LongAdder()).increment();
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Map<Integer, Long> snapshotStatuses() {
+        Map<Integer, Long> snapshot = new TreeMap<>();
+        statuses.forEach((code, count) -> snapshot.put(code, count.sum()));
+        return snapshot;
+    }
+
+    private static Histogram newHistogram() {
+        return new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+    }
+
+    /**
+     * 统计结果，延迟单位为微秒；estimated 为 true 时修正结果是闭环模式下按平均延迟估算的
+     */
+    public record Result(Histogram uncorrected, Histogram corrected, boolean estimated, double seconds, long errors,
+                         Map<Integer, Long> statuses) {
+
+        public void print(PrintStream out) {
+            out.printf("%n请求 %d 个，错误 %d 个，吞吐 %.1f req/s，状态码 %s（-1 为连接错误）%n",
+                    uncorrected.getTotalCount() + errors, errors, uncorrected.getTotalCount() / seconds, statuses);
+            out.printf("%-14s %10s %10s %10s %10s %10s %10s%n", "延迟 (ms)", "p50", "p90", "p99", "p99.9", "max", "mean");
+            row(out, "原始", uncorrected);
+            row(out, estimated ? "修正 CO（估算）" : "修正 CO", corrected);
+            if (estimated) {
+                out.println("闭环模式没有计划发送时间，修正结果以平均延迟为期望间隔估算，延迟波动大时会高估尾部；使用 --rate 获得开环修正结果");
+            }
+        }
+
+        private static void row(PrintStream out, String name, Histogram h) {
+            out.printf("%-14s %10.2f %10.2f %10.2f %10.2f %10.2f %10.2f%n", name,
+                    h.getValueAtPercentile(50) / 1000.0, h.getValueAtPercentile(90) / 1000.0,
+                    h.getValueAtPercentile(99) / 1000.0, h.getValueAtPercentile(99.9) / 1000.0,
+                    h.getMaxValue() / 1000.0, h.getMean() / 1000.0);
+        }
+    }
+}
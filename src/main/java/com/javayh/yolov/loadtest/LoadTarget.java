@@ -0,0 +1,115 @@
+package com.javayh.yolov.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * 压测目标接口，负责按接口约定构造请求
+ * @author haiji
+ */
+public enum LoadTarget {
+
+    /**
+     * /detect-image，multipart 上传，返回 Base64 图像
+     */
+    DETECT_IMAGE,
+    /**
+     * /process-video-frame，表单提交 Base64 帧
+     */
+    VIDEO_FRAME,
+    /**
+     * /api/detect，原始字节上传，返回 JSON
+     */
+    API_JSON,
+    /**
+     * /api/detect，原始字节上传，返回二进制检测结果
+     */
+    API_BINARY,
+    /**
+     * 任意 GET 接口（--path）
+     */
+    GET;
+
+    private static final String BOUNDARY = "----yolo-loadtest-boundary";
+
+    public static LoadTarget parse(String value) {
+        return switch (value.trim().toLowerCase()) {
+            case "detect-image" -> DETECT_IMAGE;
+            case "video-frame", "process-video-frame" -> VIDEO_FRAME;
+            case "api-json", "api" -> API_JSON;
+            case "api-binary" -> API_BINARY;
+            case "get" -> GET;
+            default -> throw new IllegalArgumentException("Unknown target: " + value
+                    + " (detect-image, video-frame, api-json, api-binary, get)");
+        };
+    }
+
+    /**
+     * 预先编码的请求体，避免压测线程在发送前做 Base64 或 multipart 拼接
+     * @param image JPEG 图像
+     * @return 请求体
+     */
+    public byte[] encodeBody(byte[] image) {
+        return switch (this) {
+            case DETECT_IMAGE -> {
+                String head = "--" + BOUNDARY + "\r\n"
+                        + "Content-Disposition: form-data; name=\"file\"; filename=\"loadtest.jpg\"\r\n"
+                        + "Content-Type: image/jpeg\r\n\r\n";
+                String tail = "\r\n--" + BOUNDARY + "--\r\n";
+                byte[] h = head.getBytes(StandardCharsets.UTF_8);
+                byte[] t = tail.getBytes(StandardCharsets.UTF_8);
+                byte[] body = new byte[h.length + image.length + t.length];
+                System.arraycopy(h, 0, body, 0, h.length);
+                System.arraycopy(image, 0, body, h.length, image.length);
+                System.arraycopy(t, 0, body, h.length + image.length, t.length);
+                yield body;
+            }
+            case VIDEO_FRAME -> ("frame=" + URLEncoder.encode("data:image/jpeg;base64,"
+                    + Base64.getEncoder().encodeToString(image), StandardCharsets.UTF_8))
+                    .getBytes(StandardCharsets.UTF_8);
+            case API_JSON, API_BINARY -> image;
+            case GET -> new byte[0];
+        };
+    }
+
+    /**
+     * 构造请求
+     * @param options 压测参数
+     * @param body {@link #encodeBody(byte[])} 的结果
+     * @return 请求
+     */
+    public HttpRequest request(LoadTestOptions options, byte[] body) {
+        String model = options.getModel() == null ? "" : "model=" + URLEncoder.encode(options.getModel(), StandardCharsets.UTF_8);
+        Duration timeout = options.getTimeout();
+        return switch (this) {
+            case DETECT_IMAGE -> HttpRequest.newBuilder(uri(options, "/detect-image", model))
+                    .timeout(timeout)
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build();
+            case VIDEO_FRAME -> HttpRequest.newBuilder(uri(options, "/process-video-frame", model))
+                    .timeout(timeout)
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build();
+            case API_JSON, API_BINARY -> HttpRequest.newBuilder(uri(options, "/api/detect", model))
+                    .timeout(timeout)
+                    .header("Content-Type", "application/octet-stream")
+                    .header("Accept", this == API_JSON ? "application/json" : "application/x-yolo-detections")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build();
+            case GET -> HttpRequest.newBuilder(uri(options, options.getPath(), ""))
+                    .timeout(timeout)
+                    .GET()
+                    .build();
+        };
+    }
+
+    private static URI uri(LoadTestOptions options, String path, String query) {
+        return URI.create(options.getUrl() + path + (query.isEmpty() ? "" : "?" + query));
+    }
+}
@@ -0,0 +1,119 @@
+package com.javayh.yolov.loadtest;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * 压测参数，命令行格式为 --name=value
+ * @author haiji
+ */
+@Data
+public class LoadTestOptions {
+
+    /**
+     * 服务地址
+     */
+    private String url = "http://localhost:8081";
+    /**
+     * 压测目标
+     */
+    private LoadTarget target = LoadTarget.DETECT_IMAGE;
+    /**
+     * GET 目标的请求路径，例如 /api/models/loaded
+     */
+    private String path = "/api/models/loaded";
+    /**
+     * 模型名称，为空时使用服务端默认模型
+     */
+    private String model;
+    /**
+     * 并发数（闭环模式为连接数，开环模式为最大在途请求数）
+     */
+    private int concurrency = 8;
+    /**
+     * 目标到达速率（请求/秒），0 表示闭环模式：每个连接收到响应后立即发送下一个请求
+     */
+    private double rate = 0;
+    /**
+     * 预热时长，预热期间的结果不计入统计
+     */
+    private Duration warmup = Duration.ofSeconds(10);
+    /**
+     * 统计时长
+     */
+    private Duration duration = Duration.ofSeconds(60);
+    /**
+     * 单个请求超时
+     */
+    private Duration timeout = Duration.ofSeconds(30);
+    /**
+     * 图像目录，为空时生成合成图像
+     */
+    private String corpus;
+    /**
+     * 合成图像数量
+     */
+    private int images = 32;
+    private int width = 1280;
+    private int height = 720;
+    /**
+     * 合成图像 JPEG 质量（0-1）
+     */
+    private float jpegQuality = 0.85f;
+    /**
+     * 延迟分布输出文件（HdrHistogram .hgrm 格式，可用 HdrHistogram 绘图工具查看）
+     */
+    private String hgrm;
+
+    public static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Invalid argument: " + arg + " (expected --name=value)");
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (name) {
+                case "url" -> options.setUrl(value.endsWith("/") ? value.substring(0, value.length() - 1) : value);
+                case "target" -> options.setTarget(LoadTarget.parse(value));
+                case "path" -> options.setPath(value);
+                case "model" -> options.setModel(value);
+                case "concurrency" -> options.setConcurrency(Integer.parseInt(value));
+                case "rate" -> options.setRate(Double.parseDouble(value));
+                case "warmup" -> options.setWarmup(parseDuration(value));
+                case "duration" -> options.setDuration(parseDuration(value));
+                case "timeout" -> options.setTimeout(parseDuration(value));
+                case "corpus" -> options.setCorpus(value);
+                case "images" -> options.setImages(Integer.parseInt(value));
+                case "width" -> options.setWidth(Integer.parseInt(value));
+                case "height" -> options.setHeight(Integer.parseInt(value));
+                case "jpeg-quality" -> options.setJpegQuality(Float.parseFloat(value));
+                case "hgrm" -> options.setHgrm(value);
+                default -> throw new IllegalArgumentException("Unknown argument: --" + name);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * 解析 500ms、30s、2m 或纯数字（秒）
+     */
+    static Duration parseDuration(String value) {
+        String v = value.trim().toLowerCase();
+        if (v.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(v.substring(0, v.length() - 2)));
+        }
+        if (v.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(v.substring(0, v.length() - 1)));
+        }
+        if (v.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(v.substring(0, v.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(v));
+    }
+
+    public boolean isOpenLoop() {
+        return rate > 0;
+    }
+}
@@ -0,0 +1,36 @@
+package com.javayh.yolov.model;
+
+/**
+ * 锚点输出的维度顺序，由输出形状中哪一维等于 4 + nc 决定
+ * @author haiji
+ */
+public enum AnchorLayout {
+
+    /**
+     * YOLOv8/v11 格式 [N, 4 + nc, anchors]，每个通道是连续内存
+     */
+    CHANNELS_FIRST,
+    /**
+     * YOLOv7 格式 [N, anchors, 4 + nc]，每个锚点是连续内存
+     */
+    ANCHORS_FIRST;
+
+    /**
+     * 根据输出形状与类别数确定维度顺序，动态维度为 -1
+     * 不按两维的相对大小猜测：小输入尺寸下锚点数可能少于类别维度
+     * @param dim1 第二维大小
+     * @param dim2 第三维大小
+     * @param numClasses 类别数
+     * @return 维度顺序，两维都不等于 4 + nc 时为 null
+     */
+    public static AnchorLayout detect(long dim1, long dim2, int numClasses) {
+        long channels = 4L + numClasses;
+        if (dim1 == channels && dim2 != channels) {
+            return CHANNELS_FIRST;
+        }
+        if (dim2 == channels && dim1 != channels) {
+            return ANCHORS_FIRST;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,84 @@
+package com.javayh.yolov.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量检测任务状态
+ * @author haiji
+ */
+@Getter
+public class BulkJob {
+
+    public enum State { RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    private final String id;
+    /**
+     * 输入目录或 zip 压缩包
+     */
+    private final String input;
+    /**
+     * JSON-lines 结果文件，同时作为断点续跑的检查点
+     */
+    private final String output;
+    private final String model;
+    private final long startTime = System.currentTimeMillis();
+
+    @Setter
+    private volatile State state = State.RUNNING;
+    @Setter
+    private volatile String error;
+    @Setter
+    private volatile long total;
+    @Setter
+    private volatile long skipped;
+    private volatile long endTime;
+    private volatile boolean cancelRequested;
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public BulkJob(String id, String input, String output, String model) {
+        this.id = id;
+        this.input = input;
+        this.output = output;
+        this.model = model;
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public void addProcessed(long n) {
+        processed.addAndGet(n);
+    }
+
+    public void addFailed(long n) {
+        failed.addAndGet(n);
+    }
+
+    public void cancel() {
+        cancelRequested = true;
+    }
+
+    public void finish(State state) {
+        this.state = state;
+        this.endTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 本次运行的吞吐量（不含断点续跑跳过的图像）
+     * @return 每秒处理图像数
+     */
+    public double getImagesPerSecond() {
+        long end = endTime > 0 ? endTime : System.currentTimeMillis();
+        long elapsed = Math.max(1, end - startTime);
+        return (processed.get() + failed.get()) * 1000.0 / elapsed;
+    }
+}
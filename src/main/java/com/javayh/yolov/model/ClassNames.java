@@ -0,0 +1,32 @@
+package com.javayh.yolov.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 类别文件（.names）的解析规则，默认模型、注册表模型与上传校验共用，保证同一文件得到相同的类别数与下标
+ * 每行一个类别，行号即类别 id；去掉首尾空白，中间的空行保留为空名称以免后续类别下标错位，只忽略末尾的空行
+ * @author haiji
+ */
+public final class ClassNames {
+
+    private ClassNames() {
+    }
+
+    /**
+     * 解析类别文件
+     * @param lines 文件内容
+     * @return 类别名称列表，下标即类别 id
+     */
+    public static List<String> parse(List<String> lines) {
+        List<String> names = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            names.add(line.strip());
+        }
+        int size = names.size();
+        while (size > 0 && names.get(size - 1).isEmpty()) {
+            size--;
+        }
+        return List.copyOf(names.subList(0, size));
+    }
+}
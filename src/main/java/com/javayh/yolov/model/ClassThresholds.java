@@ -0,0 +1,68 @@
+package com.javayh.yolov.model;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按类别覆盖的置信度阈值
+ * 与类别文件同目录、同名的 .thresholds 文件，每行 "类别名=阈值"（也可用类别 id），# 开头为注释，
+ * 例如 mask_dete.names 对应 mask_dete.thresholds：
+ * <pre>
+ * no_mask=0.35
+ * mask=0.7
+ * </pre>
+ * @author haiji
+ */
+@Slf4j
+public final class ClassThresholds {
+
+    private ClassThresholds() {
+    }
+
+    /**
+     * 类别文件对应的阈值文件名
+     * @param classesFileName 类别文件名或路径
+     * @return 阈值文件名或路径
+     */
+    public static String fileNameFor(String classesFileName) {
+        int dot = classesFileName.lastIndexOf('.');
+        int slash = Math.max(classesFileName.lastIndexOf('/'), classesFileName.lastIndexOf('\\'));
+        String base = dot > slash ? classesFileName.substring(0, dot) : classesFileName;
+        return base + ".thresholds";
+    }
+
+    /**
+     * 解析阈值文件
+     * @param lines 文件内容
+     * @param classNames 类别名称列表
+     * @return 与类别下标一致的阈值数组，未覆盖的类别为 NaN
+     */
+    public static float[] parse(List<String> lines, List<String> classNames) {
+        float[] thresholds = new float[classNames.size()];
+        Arrays.fill(thresholds, Float.NaN);
+        for (String raw : lines) {
+            String line = raw.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int eq = line.lastIndexOf('=');
+            if (eq <= 0) {
+                log.warn("忽略无效的阈值配置: {}", line);
+                continue;
+            }
+            String name = line.substring(0, eq).trim();
+            int clsId = classNames.indexOf(name);
+            if (clsId < 0 && name.chars().allMatch(Character::isDigit)) {
+                clsId = Integer.parseInt(name);
+            }
+            if (clsId < 0 || clsId >= classNames.size()) {
+                log.warn("阈值配置中的类别不存在: {}", name);
+                continue;
+            }
+            thresholds[clsId] = Float.parseFloat(line.substring(eq + 1).trim());
+        }
+        return thresholds;
+    }
+}
@@ -0,0 +1,160 @@
+package com.javayh.yolov.model;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 解析阶段的过滤条件
+ * 类别白名单与感兴趣区域在解析循环中生效，未请求的类别通道与区域外的锚点不会被打分或创建检测对象
+ * @author haiji
+ */
+@Getter
+public class DetectionFilter {
+
+    /**
+     * 不过滤
+     */
+    public static final DetectionFilter NONE = new DetectionFilter(null, null);
+
+    /**
+     * 允许的类别 id，为空表示全部类别
+     */
+    private final int[] classIds;
+    /**
+     * 感兴趣区域，为空表示整张图像
+     */
+    private final RegionOfInterest roi;
+    /**
+     * 覆盖全局置信度阈值，为空时使用配置的阈值（按类别覆盖的阈值仍然生效）
+     */
+    private final Float minConfidence;
+
+    public DetectionFilter(int[] classIds, RegionOfInterest roi) {
+        this(classIds, roi, null);
+    }
+
+    public DetectionFilter(int[] classIds, RegionOfInterest roi, Float minConfidence) {
+        this.classIds = classIds;
+        this.roi = roi;
+        this.minConfidence = minConfidence;
+    }
+
+    /**
+     * 以指定的全局置信度阈值复制过滤条件
+     * @param confidence 全局置信度阈值
+     * @return 新的过滤条件
+     */
+    public DetectionFilter withMinConfidence(float confidence) {
+        return new DetectionFilter(classIds, roi, confidence);
+    }
+
+    /**
+     * 以指定的感兴趣区域复制过滤条件
+     * @param region 感兴趣区域
+     * @return 新的过滤条件
+     */
+    public DetectionFilter withRoi(RegionOfInterest region) {
+        return new DetectionFilter(classIds, region, minConfidence);
+    }
+
+    /**
+     * 解析时使用的全局置信度阈值
+     * @param configured 配置的阈值
+     * @return 阈值
+     */
+    public float confidenceThreshold(float configured) {
+        return minConfidence == null ? configured : minConfidence;
+    }
+
+    /**
+     * 某个类别解析时使用的阈值：有按类别覆盖时使用覆盖值；显式指定了全局阈值时取两者中较低的一个，
+     * 级联的小模型以低阈值解析时，覆盖阈值以下的候选同样返回
+     * @param model 模型
+     * @param clsId 类别 id
+     * @param threshold {@link #confidenceThreshold(float)} 的结果
+     * @return 阈值
+     */
+    public float classThreshold(LoadedModel model, int clsId, float threshold) {
+        float perClass = model.getConfidenceThreshold(clsId, threshold);
+        return minConfidence == null ? perClass : Math.min(perClass, minConfidence);
+    }
+
+    /**
+     * 按模型类别列表解析请求中的类别（名称或 id）
+     * @param model 模型
+     * @param classes 类别名称或 id，为空表示全部类别
+     * @param roi 感兴趣区域
+     * @return 过滤条件
+     */
+    public static DetectionFilter of(LoadedModel model, List<String> classes, RegionOfInterest roi) {
+        if ((classes == null || classes.isEmpty()) && roi == null) {
+            return NONE;
+        }
+        int[] ids = null;
+        if (classes != null && !classes.isEmpty()) {
+            ids = classes.stream().mapToInt(c -> resolveClass(model, c.trim())).distinct().sorted().toArray();
+        }
+        return new DetectionFilter(ids, roi);
+    }
+
+    private static int resolveClass(LoadedModel model, String value) {
+        int idx = model.getClassesName().indexOf(value);
+        if (idx >= 0) {
+            return idx;
+        }
+        try {
+            int id = Integer.parseInt(value);
+            if (id >= 0 && id < model.getNumClasses()) {
+                return id;
+            }
+        } catch (NumberFormatException ignored) {
+            // 不是数字，按未知类别处理
+        }
+        throw new IllegalArgumentException("Unknown class for model " + model.getName() + ": " + value);
+    }
+
+    /**
+     * 实际需要打分的类别 id
+     * @param numClasses 模型类别数
+     * @return 类别 id 数组
+     */
+    public int[] resolveClassIds(int numClasses) {
+        if (classIds != null) {
+            return classIds;
+        }
+        int[] all = new int[numClasses];
+        for (int i = 0; i < numClasses; i++) {
+            all[i] = i;
+        }
+        return all;
+    }
+
+    /**
+     * 类别是否在白名单中，用于已在图内完成类别选择的端到端输出
+     * @param clsId 类别 id
+     * @return 是否保留
+     */
+    public boolean acceptsClass(int clsId) {
+        return classIds == null || Arrays.binarySearch(classIds, clsId) >= 0;
+    }
+
+    /**
+     * 是否限定了感兴趣区域
+     * @return 是否需要按中心点过滤
+     */
+    public boolean hasRegion() {
+        return roi != null;
+    }
+
+    /**
+     * 检测框中心点是否在感兴趣区域内
+     * @param cx 原图中心点 x
+     * @param cy 原图中心点 y
+     * @return 是否保留
+     */
+    public boolean accepts(float cx, float cy) {
+        return roi == null || roi.contains(cx, cy);
+    }
+}
@@ -0,0 +1,79 @@
+package com.javayh.yolov.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 单次检测请求的参数
+ * @author haiji
+ */
+@Data
+public class DetectionOptions {
+
+    /**
+     * 模型名称，为空时使用默认模型
+     */
+    private String model;
+
+    /**
+     * 输入尺寸（长边），为空时使用配置的 inputWidth/inputHeight；仅对动态输入模型生效
+     */
+    private Integer inputSize;
+
+    /**
+     * 是否使用切片推理（适用于高分辨率图像中的小目标）
+     */
+    private boolean tiled;
+
+    /**
+     * 是否使用级联检测（小模型先行，不确定时升级到大模型），为空时按配置
+     */
+    private Boolean cascade;
+
+    /**
+     * 类别白名单（名称或 id），为空时检测全部类别
+     */
+    private List<String> classes;
+
+    /**
+     * 感兴趣区域（原图坐标），为空时检测整张图像
+     */
+    private RegionOfInterest roi;
+
+    /**
+     * 标注图像输出格式
+     */
+    private ImageFormat format = ImageFormat.JPEG;
+
+    /**
+     * 输出质量（1-100），为空时使用编码器默认值
+     */
+    private Integer quality;
+
+    /**
+     * 输出图像长边上限（预览用），为空时输出原始分辨率
+     */
+    private Integer maxDimension;
+
+    /**
+     * 原始文件名，用于保存结果时命名
+     */
+    private String sourceName;
+
+    /**
+     * 推理调度优先级
+     */
+    private Priority priority = Priority.INTERACTIVE;
+
+    /**
+     * 是否交给结果保存服务（启用保存时）；预热等内部检测为 false
+     */
+    private boolean persist = true;
+
+    public static DetectionOptions ofModel(String model) {
+        DetectionOptions options = new DetectionOptions();
+        options.setModel(model);
+        return options;
+    }
+}
@@ -0,0 +1,57 @@
+package com.javayh.yolov.model;
+
+import com.javayh.yolov.client.BinaryDetections;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * 检测结果（不含图像）
+ * @author haiji
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DetectionResponse {
+    /**
+     * 模型名称
+     */
+    private String model;
+    /**
+     * 模型版本
+     */
+    private long modelVersion;
+    /**
+     * 原图宽度
+     */
+    private int width;
+    /**
+     * 原图高度
+     */
+    private int height;
+    /**
+     * 检测结果
+     */
+    private List<Detection> detections;
+
+    /**
+     * 编码为紧凑二进制格式，格式定义见 {@link BinaryDetections}
+     * @return 二进制结果
+     */
+    public byte[] toBinary() {
+        int count = detections == null ? 0 : detections.size();
+        byte[] bytes = new byte[BinaryDetections.HEADER_SIZE + count * BinaryDetections.RECORD_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        BinaryDetections.writeHeader(buffer, width, height, modelVersion, count);
+        for (int i = 0; i < count; i++) {
+            Detection d = detections.get(i);
+            BinaryDetections.writeRecord(buffer, d.getX0(), d.getY0(), d.getX1(), d.getY1(),
+                    d.getConfidence(), d.getClassId());
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,60 @@
+package com.javayh.yolov.model;
+
+import lombok.Getter;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * 标注结果图像的输出格式
+ * @author haiji
+ */
+@Getter
+public enum ImageFormat {
+
+    JPEG(".jpg", "image/jpeg", Imgcodecs.IMWRITE_JPEG_QUALITY),
+    PNG(".png", "image/png", Imgcodecs.IMWRITE_PNG_COMPRESSION),
+    WEBP(".webp", "image/webp", Imgcodecs.IMWRITE_WEBP_QUALITY);
+
+    /**
+     * 文件扩展名，同时作为 imencode 的格式参数
+     */
+    private final String extension;
+    private final String contentType;
+    /**
+     * 质量参数对应的 imencode 标志；PNG 为压缩级别
+     */
+    private final int qualityFlag;
+
+    ImageFormat(String extension, String contentType, int qualityFlag) {
+        this.extension = extension;
+        this.contentType = contentType;
+        this.qualityFlag = qualityFlag;
+    }
+
+    /**
+     * 解析请求参数，支持 jpg/jpeg/png/webp，为空时返回 JPEG
+     * @param value 请求参数
+     * @return 输出格式
+     */
+    public static ImageFormat parse(String value) {
+        if (value == null || value.isBlank()) {
+            return JPEG;
+        }
+        return switch (value.trim().toLowerCase()) {
+            case "jpg", "jpeg", "image/jpeg" -> JPEG;
+            case "png", "image/png" -> PNG;
+            case "webp", "image/webp" -> WEBP;
+            default -> throw new IllegalArgumentException("Unsupported output format: " + value);
+        };
+    }
+
+    /**
+     * 将 1-100 的质量换算为该格式的 imencode 参数
+     * @param quality 质量
+     * @return imencode 参数值
+     */
+    public int toCodecValue(int quality) {
+        int q = Math.max(1, Math.min(100, quality));
+        // PNG 为无损格式，质量越高压缩级别越低（编码越快）
+        return this == PNG ? Math.round((100 - q) * 9 / 99f) : q;
+    }
+}
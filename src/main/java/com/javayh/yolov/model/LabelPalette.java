@@ -0,0 +1,148 @@
+package com.javayh.yolov.model;
+
+import com.javayh.yolov.service.YoloService;
+import lombok.Getter;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.List;
+
+/**
+ * 某个模型在某一线宽下的标注资源
+ * 预先生成每个类别的颜色和标签文字，以及 0.00-1.00 共 101 个置信度文字，绘制时只做像素填充
+ * @author haiji
+ */
+@Getter
+public class LabelPalette {
+
+    private static final int FONT_FACE = Imgproc.FONT_HERSHEY_SIMPLEX;
+
+    private final double fontScale;
+    private final int thickness;
+    /**
+     * 文字高度
+     */
+    private final int height;
+    /**
+     * 文字基线到顶部的距离
+     */
+    private final int ascent;
+
+    private final Scalar[] colors;
+    /**
+     * 颜色的 BGR 字节，与 colors 下标一致
+     */
+    private final byte[][] colorBytes;
+    /**
+     * 类别标签（"类别名 "）
+     */
+    private final Sprite[] classSprites;
+    private final Sprite unknownSprite;
+    /**
+     * 置信度文字，下标为百分数
+     */
+    private final Sprite[] scoreSprites = new Sprite[101];
+
+    public LabelPalette(List<String> classNames, double fontScale, int thickness) {
+        this.fontScale = fontScale;
+        this.thickness = thickness;
+        int[] baseline = new int[1];
+        Size ref = Imgproc.getTextSize("Ag0.", FONT_FACE, fontScale, thickness, baseline);
+        this.ascent = (int) ref.height + thickness / 2 + 1;
+        this.height = ascent + baseline[0] + thickness;
+
+        this.colors = new Scalar[classNames.size()];
+        this.colorBytes = new byte[classNames.size()][];
+        this.classSprites = new Sprite[classNames.size()];
+        for (int i = 0; i < classNames.size(); i++) {
+            double[] bgr = YoloService.paletteBgr(i);
+            colors[i] = new Scalar(bgr);
+            colorBytes[i] = new byte[]{(byte) bgr[0], (byte) bgr[1], (byte) bgr[2]};
+            classSprites[i] = rasterize(classNames.get(i) + " ");
+        }
+        this.unknownSprite = rasterize("unknown ");
+        for (int i = 0; i < scoreSprites.length; i++) {
+            scoreSprites[i] = rasterize(formatScore(i));
+        }
+    }
+
+    private Sprite rasterize(String text) {
+        Size size = Imgproc.getTextSize(text, FONT_FACE, fontScale, thickness, new int[1]);
+        int width = (int) Math.ceil(size.width) + thickness;
+        Mat mask = Mat.zeros(height, width, CvType.CV_8UC1);
+        Imgproc.putText(mask, text, new Point(0, ascent), FONT_FACE, fontScale, new Scalar(255), thickness);
+
+        byte[] data = new byte[height * width];
+        mask.get(0, 0, data);
+        int count = 0;
+        for (byte b : data) {
+            if (b != 0) {
+                count++;
+            }
+        }
+        int[] pixels = new int[count];
+        for (int i = 0, k = 0; i < data.length; i++) {
+            if (data[i] != 0) {
+                pixels[k++] = (i / width) << 16 | (i % width);
+            }
+        }
+        return new Sprite(mask, width, pixels);
+    }
+
+    /**
+     * 类别颜色（BGR）
+     * @param clsId 类别id
+     * @return 颜色
+     */
+    public Scalar color(int clsId) {
+        return clsId >= 0 && clsId < colors.length ? colors[clsId] : new Scalar(YoloService.paletteBgr(clsId));
+    }
+
+    /**
+     * 类别颜色的 BGR 字节
+     * @param clsId 类别id
+     * @return BGR 字节
+     */
+    public byte[] colorBytes(int clsId) {
+        if (clsId >= 0 && clsId < colorBytes.length) {
+            return colorBytes[clsId];
+        }
+        double[] bgr = YoloService.paletteBgr(clsId);
+        return new byte[]{(byte) bgr[0], (byte) bgr[1], (byte) bgr[2]};
+    }
+
+    /**
+     * 类别标签
+     * @param clsId 类别id
+     * @return 标签文字
+     */
+    public Sprite classSprite(int clsId) {
+        return clsId >= 0 && clsId < classSprites.length ? classSprites[clsId] : unknownSprite;
+    }
+
+    /**
+     * 置信度文字
+     * @param confidence 置信度
+     * @return 文字，内容与 String.format("%.2f") 一致
+     */
+    public Sprite scoreSprite(float confidence) {
+        return scoreSprites[Math.min(100, Math.max(0, Math.round(confidence * 100)))];
+    }
+
+    private static String formatScore(int percent) {
+        return percent / 100 + "." + percent / 10 % 10 + percent % 10;
+    }
+
+    /**
+     * 预先光栅化的文字
+     * @param mask 单通道掩码，文字像素为 255
+     * @param width 宽度
+     * @param pixels 文字像素坐标，按 (y &lt;&lt; 16 | x) 打包
+     */
+    public record Sprite(Mat mask, int width, int[] pixels) {
+    }
+}
@@ -11,7 +11,10 @@ public class Letterbox {
 
     private Size newShape ;
     private final double[] color = new double[]{114,114,114};
-    private final Boolean auto = false;
+    /**
+     * 最小矩形模式：只填充到步长的整数倍，需要模型支持动态输入尺寸
+     */
+    private boolean auto = false;
     private final Boolean scaleUp = true;
     private Integer stride = 32;
 
@@ -23,6 +26,12 @@ public class Letterbox {
         this.newShape = new Size(w, h);
     }
 
+    public Letterbox(int w, int h, boolean auto, int stride) {
+        this.newShape = new Size(w, h);
+        this.auto = auto;
+        this.stride = stride;
+    }
+
     public Letterbox() {
         this.newShape = new Size(640, 640);
     }
@@ -44,8 +53,51 @@ public class Letterbox {
      * @return 调整后的图像
      */
     public Mat letterbox(Mat im) {
+        Size newUnpad = compute(im.rows(), im.cols());
+        if (im.cols() != newUnpad.width || im.rows() != newUnpad.height) { // resize
+            Imgproc.resize(im, im, newUnpad, 0, 0, Imgproc.INTER_LINEAR);
+        }
+        // 将图像填充为正方形
+        Core.copyMakeBorder(im, im, top(), bottom(), left(), right(), Core.BORDER_CONSTANT, new org.opencv.core.Scalar(this.color));
+        return im;
+    }
+
+    /**
+     * 调整图像大小并填充到 dst，src 不会被修改
+     * dst 已按 {@link #outputSize(int, int)} 分配时结果直接写入其内存（可以是包装了直接缓冲区的 Mat）
+     * @param src 输入图像
+     * @param dst 输出图像
+     */
+    public void letterbox(Mat src, Mat dst) {
+        Size newUnpad = compute(src.rows(), src.cols());
+        Mat resized = src;
+        if (src.cols() != newUnpad.width || src.rows() != newUnpad.height) {
+            resized = new Mat();
+            Imgproc.resize(src, resized, newUnpad, 0, 0, Imgproc.INTER_LINEAR);
+        }
+        Core.copyMakeBorder(resized, dst, top(), bottom(), left(), right(), Core.BORDER_CONSTANT, new org.opencv.core.Scalar(this.color));
+        if (resized != src) {
+            resized.release();
+        }
+    }
+
+    /**
+     * 计算 letterbox 输出尺寸，同时记录缩放与填充参数
+     * @param rows 输入高度
+     * @param cols 输入宽度
+     * @return 输出尺寸
+     */
+    public Size outputSize(int rows, int cols) {
+        Size newUnpad = compute(rows, cols);
+        return new Size(newUnpad.width + left() + right(), newUnpad.height + top() + bottom());
+    }
+
+    /**
+     * 计算缩放比例与填充，返回缩放后（未填充）的尺寸
+     */
+    private Size compute(int rows, int cols) {
         // 当前形状 [height, width]
-        int[] shape = {im.rows(), im.cols()};
+        int[] shape = {rows, cols};
         // Scale ratio (new / old)
         double r = Math.min(this.newShape.height / shape[0], this.newShape.width / shape[1]);
         if (!this.scaleUp) {
@@ -61,16 +113,25 @@ public class Letterbox {
         }
         dw /= 2; // 填充的时候两边都填充一半，使图像居于中心
         dh /= 2;
-        if (shape[1] != newUnpad.width || shape[0] != newUnpad.height) { // resize
-            Imgproc.resize(im, im, newUnpad, 0, 0, Imgproc.INTER_LINEAR);
-        }
-        int top = (int) Math.round(dh - 0.1), bottom = (int) Math.round(dh + 0.1);
-        int left = (int) Math.round(dw - 0.1), right = (int) Math.round(dw + 0.1);
-        // 将图像填充为正方形
-        Core.copyMakeBorder(im, im, top, bottom, left, right, Core.BORDER_CONSTANT, new org.opencv.core.Scalar(this.color));
         this.ratio = r;
         this.dh = dh;
         this.dw = dw;
-        return im;
+        return newUnpad;
+    }
+
+    private int top() {
+        return (int) Math.round(dh - 0.1);
+    }
+
+    private int bottom() {
+        return (int) Math.round(dh + 0.1);
+    }
+
+    private int left() {
+        return (int) Math.round(dw - 0.1);
+    }
+
+    private int right() {
+        return (int) Math.round(dw + 0.1);
     }
 }
\ No newline at end of file
@@ -0,0 +1,295 @@
+package com.javayh.yolov.model;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+import com.javayh.yolov.config.OnnxInputFusion;
+import com.javayh.yolov.engine.InferenceEngine;
+import com.javayh.yolov.engine.OnnxRuntimeEngine;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 已加载到内存中的模型
+ * 持有 ONNX 会话与对应的类别列表，并通过引用计数保证会话在使用中不会被关闭
+ * @author haiji
+ */
+@Slf4j
+@Getter
+public class LoadedModel {
+
+    /**
+     * 模型名称（模型文件名）
+     */
+    private final String name;
+    /**
+     * ONNX 推理会话
+     */
+    private final OrtSession session;
+    /**
+     * 类别名称列表
+     */
+    private final List<String> classesName;
+    /**
+     * 按类别覆盖的置信度阈值，未覆盖的类别为 NaN；为空表示全部使用全局阈值
+     */
+    private final float[] classThresholds;
+    /**
+     * 估算的原生内存占用（字节）
+     */
+    private final long nativeBytes;
+    /**
+     * 输入节点名称
+     */
+    private final String inputName;
+    /**
+     * 输入形状，float 输入为 [N, C, H, W]，uint8 输入为 [N, H, W, C]，动态维度为 -1
+     */
+    private final long[] inputShape;
+    /**
+     * 预处理已融合进计算图，输入为 uint8 HWC，见 {@link OnnxInputFusion}
+     */
+    private final boolean uint8Input;
+    /**
+     * uint8 输入的通道顺序为 BGR（颜色转换也在图内完成）
+     */
+    private final boolean bgrInput;
+    /**
+     * 输出格式，端到端模型跳过 Java 侧的类别扫描与 NMS
+     */
+    private final OutputFormat outputFormat;
+    /**
+     * 锚点输出的维度顺序，由声明的输出形状确定；形状为动态维度无法确定时为 null，推理时按实际形状确定
+     */
+    private final AnchorLayout anchorLayout;
+    /**
+     * 模型版本，由名称、大小与加载时间计算，同名模型重新加载后版本会变化
+     */
+    private final long version;
+    /**
+     * 当前使用的推理引擎，默认为 ONNX Runtime，可在加载后切换
+     */
+    private volatile InferenceEngine engine;
+    /**
+     * 最近一次使用时间
+     */
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    /**
+     * 引用计数，-1 表示会话已关闭
+     */
+    private final AtomicInteger refs = new AtomicInteger();
+    private volatile boolean retired;
+
+    public LoadedModel(String name, OrtSession session, List<String> classesName, long nativeBytes) throws OrtException {
+        this(name, session, classesName, null, nativeBytes);
+    }
+
+    public LoadedModel(String name, OrtSession session, List<String> classesName, float[] classThresholds,
+                       long nativeBytes) throws OrtException {
+        this.name = name;
+        this.session = session;
+        this.classesName = classesName;
+        this.classThresholds = classThresholds;
+        this.nativeBytes = nativeBytes;
+        NodeInfo input = session.getInputInfo().values().iterator().next();
+        this.inputName = input.getName();
+        this.inputShape = input.getInfo() instanceof TensorInfo info ? info.getShape() : new long[]{1, 3, -1, -1};
+        this.uint8Input = input.getInfo() instanceof TensorInfo info && info.type == OnnxJavaType.UINT8;
+        this.bgrInput = uint8Input && OnnxInputFusion.ORDER_BGR.equals(
+                session.getMetadata().getCustomMetadata().get(OnnxInputFusion.CHANNEL_ORDER_KEY));
+        NodeInfo output = session.getOutputInfo().values().iterator().next();
+        long[] outputShape = output.getInfo() instanceof TensorInfo info ? info.getShape() : null;
+        this.outputFormat = outputShape != null
+                ? OutputFormat.detect(outputShape, classesName.size()) : OutputFormat.ANCHORS;
+        this.anchorLayout = outputShape != null && outputShape.length == 3
+                ? AnchorLayout.detect(outputShape[1], outputShape[2], classesName.size()) : null;
+        if (outputFormat.isEndToEnd()) {
+            log.info("模型 {} 为端到端输出 {}，NMS 在图内完成", name, outputFormat);
+        }
+        this.version = fnv1a64(name, nativeBytes, lastUsed);
+        this.engine = new OnnxRuntimeEngine(session, inputName, uint8Input, bgrInput);
+    }
+
+    /**
+     * 估算模型加载后的原生内存占用：权重常驻一份，ONNX Runtime 的内存池（中间张量）通常与权重同量级，按文件大小的两倍估算
+     * @param modelFile 模型文件
+     * @return 估算的字节数
+     */
+    public static long estimateNativeBytes(File modelFile) {
+        return modelFile.length() * 2;
+    }
+
+    private static long fnv1a64(String name, long... values) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash = (hash ^ name.charAt(i)) * 0x100000001b3L;
+        }
+        for (long v : values) {
+            for (int i = 0; i < 8; i++) {
+                hash = (hash ^ ((v >>> (i * 8)) & 0xFF)) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 模型是否以动态宽高导出（dynamic axes）
+     * @return 是否支持任意输入尺寸
+     */
+    public boolean isDynamicInput() {
+        return inputShape.length < 4 || inputShape[heightAxis()] <= 0 || inputShape[heightAxis() + 1] <= 0;
+    }
+
+    /**
+     * 模型批次维是否为动态，可一次推理多张图像
+     * @return 是否支持批量输入
+     */
+    public boolean isDynamicBatch() {
+        return inputShape.length > 0 && inputShape[0] <= 0;
+    }
+
+    /**
+     * 固定输入宽度，动态模型返回 -1
+     * @return 输入宽度
+     */
+    public int getFixedInputWidth() {
+        return isDynamicInput() ? -1 : (int) inputShape[heightAxis() + 1];
+    }
+
+    /**
+     * 固定输入高度，动态模型返回 -1
+     * @return 输入高度
+     */
+    public int getFixedInputHeight() {
+        return isDynamicInput() ? -1 : (int) inputShape[heightAxis()];
+    }
+
+    private int heightAxis() {
+        return uint8Input ? 1 : 2;
+    }
+
+    /**
+     * 切换推理引擎，原引擎随之关闭
+     * @param engine 新引擎
+     */
+    public void setEngine(InferenceEngine engine) {
+        InferenceEngine previous = this.engine;
+        this.engine = engine;
+        if (previous != engine) {
+            previous.close();
+        }
+    }
+
+    /**
+     * 获取类别名称
+     * @param clsId 类别id
+     * @return 类别名称
+     */
+    public String getClassName(int clsId) {
+        if (clsId >= 0 && clsId < classesName.size()) {
+            return classesName.get(clsId);
+        }
+        return "unknown";
+    }
+
+    /**
+     * 类别的置信度阈值
+     * @param clsId 类别id
+     * @param defaultThreshold 全局阈值
+     * @return 覆盖的阈值，未覆盖时返回全局阈值
+     */
+    public float getConfidenceThreshold(int clsId, float defaultThreshold) {
+        if (classThresholds != null && clsId >= 0 && clsId < classThresholds.length
+                && !Float.isNaN(classThresholds[clsId])) {
+            return classThresholds[clsId];
+        }
+        return defaultThreshold;
+    }
+
+    /**
+     * 获取类别数量
+     * @return 类别数量
+     */
+    public int getNumClasses() {
+        return classesName.size();
+    }
+
+    /**
+     * 锚点输出的维度顺序，声明的形状无法确定时按实际输出形状确定
+     * @param dim1 实际输出的第二维大小
+     * @param dim2 实际输出的第三维大小
+     * @return 维度顺序，输出与类别数不匹配时为 null
+     */
+    public AnchorLayout resolveAnchorLayout(int dim1, int dim2) {
+        return anchorLayout != null ? anchorLayout : AnchorLayout.detect(dim1, dim2, getNumClasses());
+    }
+
+    /**
+     * 当前正在使用该模型的请求数
+     * @return 引用数
+     */
+    public int getInUse() {
+        return Math.max(0, refs.get());
+    }
+
+    /**
+     * 尝试占用模型，会话已关闭时返回 false
+     * @return 是否占用成功
+     */
+    public boolean tryAcquire() {
+        for (;;) {
+            int n = refs.get();
+            if (n < 0) {
+                return false;
+            }
+            if (refs.compareAndSet(n, n + 1)) {
+                lastUsed = System.currentTimeMillis();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放占用，模型已退役且无人使用时关闭会话
+     */
+    public void release() {
+        if (refs.decrementAndGet() == 0 && retired) {
+            closeIfIdle();
+        }
+    }
+
+    /**
+     * 标记模型退役，当前请求结束后关闭会话
+     */
+    public void retire() {
+        retired = true;
+        closeIfIdle();
+    }
+
+    /**
+     * 是否已关闭
+     * @return 会话是否已关闭
+     */
+    public boolean isClosed() {
+        return refs.get() < 0;
+    }
+
+    private void closeIfIdle() {
+        if (refs.compareAndSet(0, -1)) {
+            try {
+                engine.close();
+                session.close();
+                log.info("模型已卸载: {}", name);
+            } catch (OrtException e) {
+                log.error("关闭模型会话失败: {}", name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.javayh.yolov.model;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 模型加载完成事件
+ * @author haiji
+ */
+@Getter
+@SuppressWarnings("serial")
+public class ModelLoadedEvent extends ApplicationEvent {
+
+    /**
+     * 模型名称
+     */
+    private final String modelName;
+
+    /**
+     * 是否为默认模型
+     */
+    private final boolean defaultModel;
+
+    public ModelLoadedEvent(Object source, String modelName, boolean defaultModel) {
+        super(source);
+        this.modelName = modelName;
+        this.defaultModel = defaultModel;
+    }
+}
@@ -0,0 +1,57 @@
+package com.javayh.yolov.model;
+
+import lombok.Data;
+
+/**
+ * 模型目录中一个模型文件的元数据
+ * 大小与修改时间在扫描时获得，哈希与输入输出形状由后台线程读取模型后补齐
+ * @author haiji
+ */
+@Data
+public class ModelMetadata {
+
+    /**
+     * 模型文件名
+     */
+    private String name;
+    /**
+     * 文件位置：文件系统路径或 classpath:models/xxx.onnx
+     */
+    private String location;
+    /**
+     * 文件大小（字节）
+     */
+    private long sizeBytes;
+    /**
+     * 最后修改时间，classpath 资源为 0
+     */
+    private long lastModified;
+    /**
+     * SHA-256（十六进制），尚未读取时为空
+     */
+    private String sha256;
+    /**
+     * 图像输入形状，动态维度为 -1
+     */
+    private long[] inputShape;
+    /**
+     * 第一个输出的形状，动态维度为 -1
+     */
+    private long[] outputShape;
+    /**
+     * 按命名约定匹配的类别文件
+     */
+    private String classesFile;
+    /**
+     * 类别数，未找到类别文件时为 0
+     */
+    private int numClasses;
+    /**
+     * 最近一次预热或引擎自测测得的单次检测耗时（毫秒），尚未测量时为空
+     */
+    private Double lastLatencyMillis;
+    /**
+     * 读取模型失败的原因
+     */
+    private String error;
+}
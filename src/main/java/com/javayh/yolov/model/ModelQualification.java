@@ -0,0 +1,82 @@
+package com.javayh.yolov.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 上传模型的验证任务状态
+ * 模型先暂存，依次经过加载与输出校验、预处理融合、延迟测量，全部通过后才替换当前模型
+ * @author haiji
+ */
+@Getter
+public class ModelQualification {
+
+    public enum Stage { STAGED, VALIDATING, OPTIMIZING, PROFILING, ACTIVATING, ACTIVE, REJECTED, FAILED }
+
+    private final String id;
+    /**
+     * 上传的模型文件名
+     */
+    private final String modelName;
+    /**
+     * 上传的类别文件名
+     */
+    private final String classesName;
+    private final long startTime = System.currentTimeMillis();
+
+    @Setter
+    private volatile Stage stage = Stage.STAGED;
+    /**
+     * 拒绝或失败的原因
+     */
+    @Setter
+    private volatile String error;
+    @Setter
+    private volatile int numClasses;
+    @Setter
+    private volatile OutputFormat outputFormat;
+    /**
+     * 会话创建耗时（毫秒）
+     */
+    @Setter
+    private volatile long loadMillis;
+    /**
+     * 单次检测耗时中位数（毫秒）
+     */
+    @Setter
+    private volatile double p50Millis;
+    /**
+     * 单次检测耗时 P95（毫秒）
+     */
+    @Setter
+    private volatile double p95Millis;
+    private volatile long endTime;
+
+    /**
+     * 已完成的检查项
+     */
+    private final List<String> checks = new CopyOnWriteArrayList<>();
+
+    public ModelQualification(String id, String modelName, String classesName) {
+        this.id = id;
+        this.modelName = modelName;
+        this.classesName = classesName;
+    }
+
+    public void addCheck(String check) {
+        checks.add(check);
+    }
+
+    public void finish(Stage stage, String error) {
+        this.error = error;
+        this.stage = stage;
+        this.endTime = System.currentTimeMillis();
+    }
+
+    public boolean isDone() {
+        return endTime > 0;
+    }
+}
@@ -64,6 +64,10 @@ public class ODResult {
 
 
 
+    public float getConfidence() {
+        return score;
+    }
+
     public String getScore() {
         DecimalFormat df = new DecimalFormat("0.00");
         return df.format(this.score);
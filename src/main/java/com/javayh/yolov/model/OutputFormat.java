@@ -0,0 +1,46 @@
+package com.javayh.yolov.model;
+
+/**
+ * 模型输出格式，加载模型时根据第一个输出的形状自动识别
+ * @author haiji
+ */
+public enum OutputFormat {
+
+    /**
+     * 原始锚点输出：YOLOv8/v11 [N, 4 + nc, anchors] 或 YOLOv7 [N, anchors, 4 + nc]，需在 Java 侧阈值过滤与 NMS
+     */
+    ANCHORS,
+    /**
+     * 端到端导出（图内 NMS），每行为 [batchId, x0, y0, x1, y1, clsId, score]，形状 [num_dets, 7]，见 {@link ODResult}
+     */
+    NMS_ROWS,
+    /**
+     * 端到端导出（YOLOv10 等无 NMS 模型），形状 [N, max_dets, 6]，每行为 [x0, y0, x1, y1, score, clsId]
+     */
+    END_TO_END;
+
+    /**
+     * 根据输出形状识别格式，动态维度为 -1
+     * @param shape 第一个输出的形状
+     * @param numClasses 类别数
+     * @return 输出格式
+     */
+    public static OutputFormat detect(long[] shape, int numClasses) {
+        if (shape.length == 2 && shape[1] == 7) {
+            return NMS_ROWS;
+        }
+        // 两个类别的 YOLOv7 格式同样是最后一维为 6，此时按锚点输出处理
+        if (shape.length == 3 && shape[2] == 6 && numClasses != 2) {
+            return END_TO_END;
+        }
+        return ANCHORS;
+    }
+
+    /**
+     * 是否已在图内完成 NMS
+     * @return 是否为端到端输出
+     */
+    public boolean isEndToEnd() {
+        return this != ANCHORS;
+    }
+}
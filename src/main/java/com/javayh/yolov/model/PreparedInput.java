@@ -0,0 +1,56 @@
+package com.javayh.yolov.model;
+
+import com.javayh.yolov.engine.InferenceEngine;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 已打包好的单张图像模型输入
+ * 预处理与推理分别在不同线程中执行时，由预处理阶段创建并交给推理阶段；
+ * 输入数据归请求独占，不使用按线程复用的缓冲区
+ * @author haiji
+ */
+@Getter
+public class PreparedInput {
+
+    /**
+     * 预处理时模型使用的推理引擎，输入按它的格式打包；推理阶段使用同一个引擎，不受期间引擎切换的影响
+     */
+    private final InferenceEngine engine;
+    private final Letterbox letterbox;
+    private final DetectionFilter filter;
+    /**
+     * 感兴趣区域裁剪在原图中的偏移
+     */
+    private final float offsetX;
+    private final float offsetY;
+    /**
+     * 输入形状：uint8 为 [1, H, W, 3]，float 为 [1, 3, H, W]
+     */
+    private final long[] shape;
+    /**
+     * 融合了预处理的模型的 uint8 输入，其他模型为 null
+     */
+    private final ByteBuffer buffer;
+    /**
+     * 归一化的 CHW float 输入，uint8 输入模型为 null
+     */
+    private final float[] pixels;
+
+    public PreparedInput(InferenceEngine engine, Letterbox letterbox, DetectionFilter filter, float offsetX,
+                         float offsetY, long[] shape, ByteBuffer buffer, float[] pixels) {
+        this.engine = engine;
+        this.letterbox = letterbox;
+        this.filter = filter;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.shape = shape;
+        this.buffer = buffer;
+        this.pixels = pixels;
+    }
+
+    public boolean isUint8() {
+        return buffer != null;
+    }
+}
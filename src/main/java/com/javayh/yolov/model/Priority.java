@@ -0,0 +1,21 @@
+package com.javayh.yolov.model;
+
+/**
+ * 推理调度优先级通道
+ * @author haiji
+ */
+public enum Priority {
+
+    /**
+     * 实时视频帧：权重最高，超过截止时间仍未开始推理的帧直接丢弃
+     */
+    REALTIME,
+    /**
+     * 交互式单张图像检测
+     */
+    INTERACTIVE,
+    /**
+     * 批量任务
+     */
+    BULK
+}
@@ -0,0 +1,93 @@
+package com.javayh.yolov.model;
+
+import lombok.Data;
+
+import java.util.Set;
+
+/**
+ * 客户端已按模型输入尺寸 letterbox 好的原始 uint8 帧的描述
+ * 像素按行连续存放（HWC），缩放与填充参数用于把检测框映射回原图
+ * @author haiji
+ */
+@Data
+public class RawFrame {
+
+    private static final Set<String> CHANNEL_ORDERS = Set.of("rgb", "bgr", "rgba", "bgra");
+
+    /**
+     * 帧宽度（模型输入宽度）
+     */
+    private int width;
+    /**
+     * 帧高度（模型输入高度）
+     */
+    private int height;
+    /**
+     * 通道顺序：rgb、bgr、rgba、bgra（canvas 的 getImageData 为 rgba）
+     */
+    private String channelOrder = "rgb";
+    /**
+     * 缩放比例（帧 / 原图）
+     */
+    private double ratio = 1;
+    /**
+     * 左侧填充像素
+     */
+    private double padX;
+    /**
+     * 上方填充像素
+     */
+    private double padY;
+    /**
+     * 原图宽度，为 0 时按 (width - 2 * padX) / ratio 计算
+     */
+    private int sourceWidth;
+    /**
+     * 原图高度，为 0 时按 (height - 2 * padY) / ratio 计算
+     */
+    private int sourceHeight;
+
+    public int getChannels() {
+        return channelOrder.length();
+    }
+
+    public boolean isBgr() {
+        return channelOrder.startsWith("bgr");
+    }
+
+    /**
+     * 校验参数与像素数据长度
+     * @param length 像素数据字节数
+     */
+    public void validate(int length) {
+        channelOrder = channelOrder == null ? "rgb" : channelOrder.trim().toLowerCase();
+        if (!CHANNEL_ORDERS.contains(channelOrder)) {
+            throw new IllegalArgumentException("Unsupported channel order: " + channelOrder);
+        }
+        if (width <= 0 || height <= 0 || ratio <= 0) {
+            throw new IllegalArgumentException("Invalid frame size or ratio");
+        }
+        if ((long) width * height * getChannels() != length) {
+            throw new IllegalArgumentException("Frame data length " + length + " does not match "
+                    + width + "x" + height + "x" + getChannels());
+        }
+        if (sourceWidth <= 0) {
+            sourceWidth = (int) Math.round((width - 2 * padX) / ratio);
+        }
+        if (sourceHeight <= 0) {
+            sourceHeight = (int) Math.round((height - 2 * padY) / ratio);
+        }
+    }
+
+    /**
+     * 按客户端的缩放与填充参数构造 Letterbox，用于把检测框映射回原图
+     * @return Letterbox
+     */
+    public Letterbox toLetterbox() {
+        Letterbox letterbox = new Letterbox(width, height);
+        letterbox.setRatio(ratio);
+        letterbox.setDw(padX);
+        letterbox.setDh(padY);
+        return letterbox;
+    }
+}
@@ -0,0 +1,111 @@
+package com.javayh.yolov.model;
+
+import lombok.Getter;
+
+/**
+ * 感兴趣区域（原图坐标系下的多边形）
+ * 检测框中心点落在多边形内时保留
+ * @author haiji
+ */
+@Getter
+public class RegionOfInterest {
+
+    private final float[] xs;
+    private final float[] ys;
+    private final float minX;
+    private final float minY;
+    private final float maxX;
+    private final float maxY;
+    private final boolean rectangle;
+
+    private RegionOfInterest(float[] xs, float[] ys, boolean rectangle) {
+        this.xs = xs;
+        this.ys = ys;
+        this.rectangle = rectangle;
+        float x0 = Float.MAX_VALUE, y0 = Float.MAX_VALUE, x1 = -Float.MAX_VALUE, y1 = -Float.MAX_VALUE;
+        for (int i = 0; i < xs.length; i++) {
+            x0 = Math.min(x0, xs[i]);
+            y0 = Math.min(y0, ys[i]);
+            x1 = Math.max(x1, xs[i]);
+            y1 = Math.max(y1, ys[i]);
+        }
+        this.minX = x0;
+        this.minY = y0;
+        this.maxX = x1;
+        this.maxY = y1;
+    }
+
+    /**
+     * 解析 "x0,y0,x1,y1"（矩形）或 "x0,y0,x1,y1,x2,y2,..."（至少三个顶点的多边形）
+     * @param value 请求参数，为空时返回 null
+     * @return 感兴趣区域
+     */
+    public static RegionOfInterest parse(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String[] parts = value.split(",");
+        float[] v = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            v[i] = Float.parseFloat(parts[i].trim());
+        }
+        if (v.length == 4) {
+            float x0 = Math.min(v[0], v[2]), x1 = Math.max(v[0], v[2]);
+            float y0 = Math.min(v[1], v[3]), y1 = Math.max(v[1], v[3]);
+            return new RegionOfInterest(new float[]{x0, x1, x1, x0}, new float[]{y0, y0, y1, y1}, true);
+        }
+        if (v.length < 6 || v.length % 2 != 0) {
+            throw new IllegalArgumentException("Invalid roi: " + value);
+        }
+        float[] xs = new float[v.length / 2];
+        float[] ys = new float[v.length / 2];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = v[2 * i];
+            ys[i] = v[2 * i + 1];
+        }
+        return new RegionOfInterest(xs, ys, false);
+    }
+
+    /**
+     * 矩形区域
+     * @param x0 左
+     * @param y0 上
+     * @param x1 右
+     * @param y1 下
+     * @return 感兴趣区域
+     */
+    public static RegionOfInterest rectangle(float x0, float y0, float x1, float y1) {
+        return new RegionOfInterest(new float[]{x0, x1, x1, x0}, new float[]{y0, y0, y1, y1}, true);
+    }
+
+    /**
+     * 点是否在区域内（射线法）
+     * @param x 原图 x 坐标
+     * @param y 原图 y 坐标
+     * @return 是否在区域内
+     */
+    public boolean contains(float x, float y) {
+        if (x < minX || x > maxX || y < minY || y > maxY) {
+            return false;
+        }
+        if (rectangle) {
+            return true;
+        }
+        boolean inside = false;
+        for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+            if ((ys[i] > y) != (ys[j] > y)
+                    && x < (xs[j] - xs[i]) * (y - ys[i]) / (ys[j] - ys[i]) + xs[i]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * 外接矩形面积
+     * @return 面积
+     */
+    public float getBoundsArea() {
+        return Math.max(0, maxX - minX) * Math.max(0, maxY - minY);
+    }
+}
@@ -0,0 +1,40 @@
+package com.javayh.yolov.model;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 一次检测请求的阶段耗时记录
+ * @author haiji
+ */
+@Data
+public class RequestProfile {
+
+    /**
+     * 请求结束时间（毫秒时间戳）
+     */
+    private long timestamp;
+    private String method;
+    private String path;
+    /**
+     * 响应状态码
+     */
+    private int status;
+    /**
+     * 使用的模型，请求在选择模型前失败时为空
+     */
+    private String model;
+    /**
+     * 总耗时（毫秒）
+     */
+    private double totalMillis;
+    /**
+     * 各阶段耗时（毫秒），按阶段顺序
+     */
+    private Map<String, Double> stages;
+    /**
+     * 是否因超过慢请求阈值而记录（否则为抽样记录）
+     */
+    private boolean slow;
+}
@@ -0,0 +1,50 @@
+package com.javayh.yolov.model;
+
+import lombok.Data;
+
+/**
+ * ONNX Runtime 会话配置档案
+ * 由会话调优在目标机器上测得，按模型哈希与 CPU 特征持久化，之后加载同一模型时直接复用
+ * @author haiji
+ */
+@Data
+public class SessionProfile {
+
+    /**
+     * 模型文件内容哈希（SHA-256 前 16 位）
+     */
+    private String modelHash;
+    /**
+     * CPU 特征：架构、逻辑核数与型号
+     */
+    private String cpuSignature;
+    /**
+     * 算子内线程数
+     */
+    private int intraOpThreads;
+    /**
+     * 执行模式：SEQUENTIAL 或 PARALLEL
+     */
+    private String executionMode;
+    /**
+     * 图优化级别：BASIC_OPT、EXTENDED_OPT 或 ALL_OPT
+     */
+    private String optLevel;
+    /**
+     * 测量时的并发推理数
+     * 启用推理调度或流水线时为线上的固定并发数，组合按该并发数排名；否则为遍历得到的最优并发数，仅作为调度并发数的建议
+     */
+    private int concurrency;
+    /**
+     * 吞吐量（次/秒）
+     */
+    private double throughput;
+    /**
+     * 单次推理耗时中位数（毫秒）
+     */
+    private double p50Millis;
+    /**
+     * 生成时间
+     */
+    private long createdAt;
+}
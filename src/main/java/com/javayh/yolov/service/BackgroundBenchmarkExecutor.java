@@ -0,0 +1,36 @@
+package com.javayh.yolov.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 后台测量任务的执行线程
+ * 模型预热、推理引擎自测与会话调优都会占满 CPU 并以测得的耗时做决定，同时运行时互相干扰，
+ * 结果不可信（例如引擎自测因此永久切换到较慢的引擎）。这些任务在同一个线程中按提交顺序依次执行
+ * @author haiji
+ */
+@Service
+public class BackgroundBenchmarkExecutor {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "yolo-background-benchmark");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * 排在已提交的测量任务之后执行
+     * @param task 任务
+     */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
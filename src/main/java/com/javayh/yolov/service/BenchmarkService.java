@@ -0,0 +1,445 @@
+package com.javayh.yolov.service;
+
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javayh.yolov.client.BinaryDetections;
+import com.javayh.yolov.config.NativeScope;
+import com.javayh.yolov.model.Detection;
+import com.javayh.yolov.model.DetectionOptions;
+import com.javayh.yolov.model.DetectionResponse;
+import com.javayh.yolov.model.Letterbox;
+import com.javayh.yolov.model.ODConfig;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 基准测试服务
+ * 在当前机器与模型上测量不同配置下的速度和精度
+ * @author haiji
+ */
+@Slf4j
+@Service
+public class BenchmarkService {
+
+    /**
+     * 判定两个检测框为同一目标的 IoU 阈值
+     */
+    private static final float MATCH_IOU = 0.5f;
+
+    @Autowired
+    private DetectionService detectionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AnnotationRenderer annotationRenderer;
+
+    @Autowired
+    private ODConfig odConfig;
+
+    /**
+     * 最近一次浸泡测试的结果；浸泡测试通常运行很久，调用方的连接可能先超时，结果保留在这里供之后查询
+     */
+    @Getter
+    private volatile Map<String, Object> lastSoakResult;
+
+    /**
+     * 不同输入尺寸下的推理速度与精度对比
+     * 以最大尺寸的检测结果为参考，agreement 为参考框在当前尺寸下被找回的比例
+     * @param imageBytes 测试图像，为空时使用 1280x720 随机噪声图像（仅测速度）
+     * @param sizes 输入尺寸列表
+     * @param iterations 每个尺寸的测量次数
+     * @param model 模型名称，为空时使用默认模型
+     * @return 每个尺寸的测量结果
+     * @throws Exception 推理失败
+     */
+    public List<Map<String, Object>> benchmarkResolutions(byte[] imageBytes, List<Integer> sizes,
+                                                          int iterations, String model) throws Exception {
+        Mat img = decodeOrSynthetic(imageBytes, 1280, 720);
+        try {
+            List<Integer> ordered = new ArrayList<>(sizes);
+            ordered.sort(Comparator.reverseOrder());
+
+            List<Map<String, Object>> results = new ArrayList<>();
+            List<Detection> reference = null;
+            for (Integer size : ordered) {
+                DetectionOptions options = DetectionOptions.ofModel(model);
+                options.setInputSize(size);
+
+                // 首次运行不计时，排除形状变化带来的内存分配
+                List<Detection> detections = detectionService.detect(img, options);
+                long total = 0;
+                long best = Long.MAX_VALUE;
+                for (int i = 0; i < iterations; i++) {
+                    long start = System.nanoTime();
+                    detections = detectionService.detect(img, options);
+                    long elapsed = System.nanoTime() - start;
+                    total += elapsed;
+                    best = Math.min(best, elapsed);
+                }
+                if (reference == null) {
+                    reference = detections;
+                }
+
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("inputSize", size);
+                row.put("avgMillis", total / 1e6 / Math.max(1, iterations));
+                row.put("minMillis", best / 1e6);
+                row.put("detections", detections.size());
+                row.put("agreement", agreement(reference, detections));
+                results.add(row);
+                log.info("Resolution benchmark: {}", row);
+            }
+            return results;
+        } finally {
+            img.release();
+        }
+    }
+
+    /**
+     * JSON 与二进制检测结果格式的编解码开销与体积对比
+     * 使用随机生成的检测结果，不依赖模型
+     * @param counts 每次响应的检测框数量列表
+     * @param iterations 每种格式的测量次数
+     * @return 每个检测框数量下两种格式的测量结果
+     * @throws Exception 序列化失败
+     */
+    public List<Map<String, Object>> benchmarkSerialization(List<Integer> counts, int iterations) throws Exception {
+        List<Map<String, Object>> results = new ArrayList<>();
+        Random random = new Random(42);
+        for (Integer count : counts) {
+            List<Detection> detections = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                float x = random.nextFloat() * 1200;
+                float y = random.nextFloat() * 680;
+                detections.add(new Detection(x, y, x + 80, y + 40, random.nextFloat(), random.nextInt(80), "class" + i % 80));
+            }
+            DetectionResponse response = new DetectionResponse("benchmark.onnx", 1L, 1280, 720, detections);
+
+            // 预热
+            for (int i = 0; i < Math.min(iterations, 200); i++) {
+                objectMapper.readTree(objectMapper.writeValueAsBytes(response));
+                BinaryDetections.wrap(response.toBinary()).count();
+            }
+
+            long jsonEncode = 0, jsonDecode = 0, binEncode = 0, binDecode = 0;
+            int jsonBytes = 0, binBytes = 0;
+            double sink = 0;
+            for (int i = 0; i < iterations; i++) {
+                long t0 = System.nanoTime();
+                byte[] json = objectMapper.writeValueAsBytes(response);
+                long t1 = System.nanoTime();
+                for (JsonNode d : objectMapper.readTree(json).get("detections")) {
+                    sink += d.get("confidence").floatValue();
+                }
+                long t2 = System.nanoTime();
+                byte[] bin = response.toBinary();
+                long t3 = System.nanoTime();
+                BinaryDetections view = BinaryDetections.wrap(bin);
+                for (int k = 0; k < view.count(); k++) {
+                    sink += view.score(k);
+                }
+                long t4 = System.nanoTime();
+                jsonEncode += t1 - t0;
+                jsonDecode += t2 - t1;
+                binEncode += t3 - t2;
+                binDecode += t4 - t3;
+                jsonBytes = json.length;
+                binBytes = bin.length;
+            }
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("detections", count);
+            row.put("jsonBytes", jsonBytes);
+            row.put("binaryBytes", binBytes);
+            row.put("jsonEncodeMicros", jsonEncode / 1e3 / Math.max(1, iterations));
+            row.put("jsonDecodeMicros", jsonDecode / 1e3 / Math.max(1, iterations));
+            row.put("binaryEncodeMicros", binEncode / 1e3 / Math.max(1, iterations));
+            row.put("binaryDecodeMicros", binDecode / 1e3 / Math.max(1, iterations));
+            row.put("checksum", sink);
+            results.add(row);
+            log.info("Serialization benchmark: {}", row);
+        }
+        return results;
+    }
+
+    /**
+     * 标注绘制开销对比：逐框格式化字符串并调用 putText 的原实现与缓存标注资源的实现
+     * 使用 1920x1080 随机图像与随机检测框，不依赖模型
+     * @param counts 每张图像的检测框数量列表
+     * @param iterations 每种实现的测量次数
+     * @return 每个检测框数量下两种实现的测量结果
+     */
+    public List<Map<String, Object>> benchmarkRendering(List<Integer> counts, int iterations) {
+        List<String> classNames = new ArrayList<>();
+        for (int i = 0; i < 80; i++) {
+            classNames.add("class_" + i);
+        }
+        Mat source = decodeOrSynthetic(null, 1920, 1080);
+        Mat canvas = new Mat();
+        Random random = new Random(42);
+        List<Map<String, Object>> results = new ArrayList<>();
+        try {
+            for (Integer count : counts) {
+                List<Detection> detections = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    float x = random.nextFloat() * 1800;
+                    float y = random.nextFloat() * 1000;
+                    int cls = random.nextInt(classNames.size());
+                    detections.add(new Detection(x, y, x + 60 + random.nextFloat() * 60, y + 40 + random.nextFloat() * 40,
+                            random.nextFloat(), cls, classNames.get(cls)));
+                }
+
+                // 预热，同时生成缓存
+                source.copyTo(canvas);
+                drawLegacy(canvas, detections);
+                source.copyTo(canvas);
+                annotationRenderer.draw(canvas, detections, "benchmark", classNames);
+
+                long legacy = 0;
+                long cached = 0;
+                for (int i = 0; i < iterations; i++) {
+                    source.copyTo(canvas);
+                    long t0 = System.nanoTime();
+                    drawLegacy(canvas, detections);
+                    long t1 = System.nanoTime();
+                    source.copyTo(canvas);
+                    long t2 = System.nanoTime();
+                    annotationRenderer.draw(canvas, detections, "benchmark", classNames);
+                    long t3 = System.nanoTime();
+                    legacy += t1 - t0;
+                    cached += t3 - t2;
+                }
+
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("boxes", count);
+                row.put("legacyMillis", legacy / 1e6 / Math.max(1, iterations));
+                row.put("cachedMillis", cached / 1e6 / Math.max(1, iterations));
+                results.add(row);
+                log.info("Rendering benchmark: {}", row);
+            }
+            return results;
+        } finally {
+            source.release();
+            canvas.release();
+        }
+    }
+
+    /**
+     * 原绘制实现，仅用于基准对比
+     */
+    private void drawLegacy(Mat img, List<Detection> detections) {
+        int thickness = Math.max(1, Math.min(img.width(), img.height()) / 800);
+        for (Detection det : detections) {
+            double[] colorArr = odConfig.getOtherColor(det.getClassId());
+            Scalar color = new Scalar(colorArr[0], colorArr[1], colorArr[2]);
+            Imgproc.rectangle(img, new Point(det.getX0(), det.getY0()), new Point(det.getX1(), det.getY1()), color, thickness);
+            String label = det.getClassName() + " " + String.format("%.2f", det.getConfidence());
+            Point textLoc = new Point(det.getX0(), Math.max(10, det.getY0() - 5));
+            Imgproc.putText(img, label, textLoc, Imgproc.FONT_HERSHEY_SIMPLEX, 0.5, color, thickness);
+        }
+    }
+
+    /**
+     * 参考结果中被候选结果以同类别、IoU ≥ 0.5 匹配到的比例
+     */
+    static double agreement(List<Detection> reference, List<Detection> candidate) {
+        if (reference.isEmpty()) {
+            return candidate.isEmpty() ? 1.0 : 0.0;
+        }
+        boolean[] used = new boolean[candidate.size()];
+        int matched = 0;
+        for (Detection ref : reference) {
+            for (int i = 0; i < candidate.size(); i++) {
+                Detection c = candidate.get(i);
+                if (!used[i] && c.getClassId() == ref.getClassId() && ref.iou(c) >= MATCH_IOU) {
+                    used[i] = true;
+                    matched++;
+                    break;
+                }
+            }
+        }
+        return (double) matched / reference.size();
+    }
+
+    /**
+     * 预处理开销对比：Java 侧 float 预处理与融合进计算图后的 uint8 直接传入
+     * 计时包含 letterbox、像素转换与创建输入张量，不依赖模型
+     * @param sizes 源图像尺寸列表，格式为 宽x高
+     * @param inputSize 模型输入尺寸
+     * @param iterations 每种方式的测量次数
+     * @return 每个源尺寸下三种方式的测量结果
+     * @throws Exception 创建张量失败
+     */
+    public List<Map<String, Object>> benchmarkPreprocessing(List<String> sizes, int inputSize, int iterations)
+            throws Exception {
+        OrtEnvironment env = OrtEnvironment.getEnvironment();
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (String spec : sizes) {
+            String[] wh = spec.toLowerCase().split("x");
+            Mat source = decodeOrSynthetic(null, Integer.parseInt(wh[0].trim()), Integer.parseInt(wh[1].trim()));
+            try {
+                long floatNanos = 0;
+                long rgbNanos = 0;
+                long bgrNanos = 0;
+                for (int i = -Math.min(iterations, 10); i < iterations; i++) {
+                    long t0 = System.nanoTime();
+                    preprocessFloat(env, source, inputSize);
+                    long t1 = System.nanoTime();
+                    preprocessUint8(env, source, inputSize, true);
+                    long t2 = System.nanoTime();
+                    preprocessUint8(env, source, inputSize, false);
+                    long t3 = System.nanoTime();
+                    // 负数下标为预热
+                    if (i >= 0) {
+                        floatNanos += t1 - t0;
+                        rgbNanos += t2 - t1;
+                        bgrNanos += t3 - t2;
+                    }
+                }
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("source", spec);
+                row.put("inputSize", inputSize);
+                row.put("floatChwMillis", floatNanos / 1e6 / Math.max(1, iterations));
+                row.put("uint8RgbMillis", rgbNanos / 1e6 / Math.max(1, iterations));
+                row.put("uint8BgrMillis", bgrNanos / 1e6 / Math.max(1, iterations));
+                results.add(row);
+                log.info("Preprocessing benchmark: {}", row);
+            } finally {
+                source.release();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 原有流程：BGR→RGB、letterbox、归一化并转为 CHW float，再由 ONNX Runtime 复制到原生内存
+     */
+    private static void preprocessFloat(OrtEnvironment env, Mat source, int inputSize) throws OrtException {
+        Mat image = new Mat();
+        Imgproc.cvtColor(source, image, Imgproc.COLOR_BGR2RGB);
+        new Letterbox(inputSize, inputSize).letterbox(image);
+        float[] pixels = new float[3 * image.rows() * image.cols()];
+        InferenceService.toChw(image, pixels, 0);
+        // 只计量张量创建（复制到原生内存）的耗时，创建后立即关闭
+        OnnxTensor.createTensor(env, FloatBuffer.wrap(pixels), new long[]{1, 3, image.rows(), image.cols()}).close();
+        image.release();
+    }
+
+    /**
+     * 融合后流程：letterbox 直接写入直接缓冲区，作为 uint8 张量传入；rgb 为 true 时在 Java 侧原地转换颜色
+     */
+    private static void preprocessUint8(OrtEnvironment env, Mat source, int inputSize, boolean rgb) throws OrtException {
+        Letterbox letterbox = new Letterbox(inputSize, inputSize);
+        Size size = letterbox.outputSize(source.rows(), source.cols());
+        int w = (int) size.width;
+        int h = (int) size.height;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(w * h * 3);
+        Mat dst = new Mat(h, w, CvType.CV_8UC3, buffer);
+        letterbox.letterbox(source, dst);
+        if (rgb) {
+            Imgproc.cvtColor(dst, dst, Imgproc.COLOR_BGR2RGB);
+        }
+        OnnxTensor.createTensor(env, buffer, new long[]{1, h, w, 3}, OnnxJavaType.UINT8).close();
+        dst.release();
+    }
+
+    /**
+     * 原生内存浸泡测试：重复执行完整的检测流程（解码、推理、绘制、编码），采样进程 RSS 与作用域统计
+     * 预热阶段结束后的 RSS 作为基线，rssGrowthBytes 持续增长说明存在原生内存泄漏
+     * @param imageBytes 测试图像，为空时使用 1280x720 随机噪声图像
+     * @param iterations 检测次数
+     * @param model 模型名称，为空时使用默认模型
+     * @param sampleEvery 每隔多少次采样一次
+     * @return 测量结果与 RSS 采样序列
+     * @throws Exception 检测失败
+     */
+    public Map<String, Object> soak(byte[] imageBytes, int iterations, String model, int sampleEvery) throws Exception {
+        byte[] bytes = imageBytes;
+        if (bytes == null) {
+            Mat img = decodeOrSynthetic(null, 1280, 720);
+            MatOfByte buf = new MatOfByte();
+            Imgcodecs.imencode(".jpg", img, buf);
+            bytes = buf.toArray();
+            buf.release();
+            img.release();
+        }
+        DetectionOptions options = DetectionOptions.ofModel(model);
+        int warmup = Math.min(iterations, Math.max(100, iterations / 20));
+        int step = Math.max(1, sampleEvery);
+        long leakedBefore = NativeScope.getLeakedScopes();
+
+        long baseline = -1;
+        long maxRss = 0;
+        List<long[]> samples = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 1; i <= iterations; i++) {
+            detectionService.detect(bytes, options);
+            if (i == warmup) {
+                baseline = NativeMemoryMetrics.readRssBytes();
+            }
+            if (i % step == 0 || i == iterations) {
+                long rss = NativeMemoryMetrics.readRssBytes();
+                maxRss = Math.max(maxRss, rss);
+                samples.add(new long[]{i, rss, NativeScope.getLiveBytes()});
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long end = NativeMemoryMetrics.readRssBytes();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("iterations", iterations);
+        result.put("warmup", warmup);
+        result.put("avgMillis", elapsed / 1e6 / Math.max(1, iterations));
+        result.put("rssAfterWarmupBytes", baseline);
+        result.put("rssEndBytes", end);
+        result.put("rssMaxBytes", maxRss);
+        result.put("rssGrowthBytes", baseline < 0 || end < 0 ? null : end - baseline);
+        result.put("nativeLiveBytes", NativeScope.getLiveBytes());
+        result.put("nativePeakBytes", NativeScope.getPeakBytes());
+        result.put("leakedScopes", NativeScope.getLeakedScopes() - leakedBefore);
+        result.put("samples", samples);
+        result.put("finishedAt", System.currentTimeMillis());
+        lastSoakResult = result;
+        log.info("Soak test: {} iterations, RSS {} -> {} bytes", iterations, baseline, end);
+        return result;
+    }
+
+    static Mat decodeOrSynthetic(byte[] imageBytes, int width, int height) {
+        if (imageBytes != null && imageBytes.length > 0) {
+            Mat img = Imgcodecs.imdecode(new MatOfByte(imageBytes), Imgcodecs.IMREAD_COLOR);
+            if (img.empty()) {
+                throw new IllegalArgumentException("Invalid or unsupported image format");
+            }
+            return img;
+        }
+        Mat img = new Mat(height, width, CvType.CV_8UC3);
+        Core.randu(img, 0, 255);
+        return img;
+    }
+}
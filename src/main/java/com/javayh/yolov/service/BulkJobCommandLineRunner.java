@@ -0,0 +1,52 @@
+package com.javayh.yolov.service;
+
+import com.javayh.yolov.model.BulkJob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 命令行批量检测
+ * 用法：java -jar app.jar --bulk-input=/data/images --bulk-output=/data/results.jsonl [--bulk-model=xxx.onnx]
+ * 任务完成后退出进程
+ * @author haiji
+ */
+@Slf4j
+@Component
+public class BulkJobCommandLineRunner implements ApplicationRunner {
+
+    @Autowired
+    private BulkJobService bulkJobService;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        String input = option(args, "bulk-input");
+        if (input == null) {
+            return;
+        }
+        String output = option(args, "bulk-output");
+        if (output == null) {
+            output = input + ".results.jsonl";
+        }
+        BulkJob job = bulkJobService.runNow(input, output, option(args, "bulk-model"));
+        log.info("批量任务结束: {}，处理 {} 张，失败 {} 张，跳过 {} 张，{} 张/秒，结果: {}", job.getState(),
+                job.getProcessed(), job.getFailed(), job.getSkipped(),
+                String.format("%.1f", job.getImagesPerSecond()), output);
+        int code = job.getState() == BulkJob.State.COMPLETED ? 0 : 1;
+        System.exit(SpringApplication.exit(applicationContext, () -> code));
+    }
+
+    private static String option(ApplicationArguments args, String name) {
+        List<String> values = args.getOptionValues(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+}
@@ -0,0 +1,441 @@
+package com.javayh.yolov.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.javayh.yolov.config.NativeScope;
+import com.javayh.yolov.config.YoloConfig;
+import com.javayh.yolov.model.BulkJob;
+import com.javayh.yolov.model.Detection;
+import com.javayh.yolov.model.LoadedModel;
+import com.javayh.yolov.model.Priority;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 离线批量检测任务引擎
+ * 遍历本地目录或 zip 压缩包，在 work-stealing 线程池中按批完成 解码 → 预处理 → 批量推理 → 写结果，
+ * 结果以 JSON-lines 追加写入输出文件，输出文件同时作为检查点，重启后跳过已成功处理的图像
+ * @author haiji
+ */
+@Slf4j
+@Service
+public class BulkJobService {
+
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "bmp", "webp", "tif", "tiff");
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    @Autowired
+    private InferenceScheduler inferenceScheduler;
+
+    @Autowired
+    private ModelRegistry modelRegistry;
+
+    @Autowired
+    private InferenceService inferenceService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, BulkJob> jobs = new ConcurrentHashMap<>();
+
+    private final ExecutorService launcher = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "yolo-bulk-job");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * 异步启动批量任务，输入与输出路径按批量任务根目录解析
+     * @param input 输入目录或 zip 文件，相对于根目录
+     * @param output JSON-lines 输出文件，相对于根目录
+     * @param model 模型名称，为空时使用默认模型
+     * @return 任务
+     * @throws IllegalArgumentException 路径超出根目录
+     */
+    public BulkJob submit(String input, String output, String model) {
+        Path root = Paths.get(yoloConfig.getBulkJobsRoot()).toAbsolutePath().normalize();
+        BulkJob job = new BulkJob(UUID.randomUUID().toString(), resolveUnder(root, input).toString(),
+                resolveUnder(root, output).toString(), model);
+        jobs.put(job.getId(), job);
+        launcher.execute(() -> run(job));
+        return job;
+    }
+
+    /**
+     * 把路径解析到根目录下，绝对路径或 ".." 规范化后超出根目录时拒绝
+     * @param root 规范化的绝对路径
+     * @param path 请求中的路径
+     * @return 根目录下的路径
+     */
+    static Path resolveUnder(Path root, String path) {
+        Path resolved = root.resolve(path).normalize();
+        if (!resolved.startsWith(root)) {
+            throw new IllegalArgumentException("Path is outside the bulk jobs root: " + path);
+        }
+        return resolved;
+    }
+
+    public BulkJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    public Collection<BulkJob> getJobs() {
+        return jobs.values();
+    }
+
+    /**
+     * 同步执行批量任务（命令行模式）
+     * @param input 输入目录或 zip 文件
+     * @param output JSON-lines 输出文件
+     * @param model 模型名称，为空时使用默认模型
+     * @return 执行结束的任务
+     */
+    public BulkJob runNow(String input, String output, String model) {
+        BulkJob job = new BulkJob(UUID.randomUUID().toString(), input, output, model);
+        jobs.put(job.getId(), job);
+        run(job);
+        return job;
+    }
+
+    private void run(BulkJob job) {
+        LoadedModel model = null;
+        Path outputPath = Paths.get(job.getOutput());
+        try (ImageSource source = ImageSource.open(Paths.get(job.getInput()))) {
+            Set<String> done = readCheckpoint(outputPath, objectMapper);
+            List<String> pending = new ArrayList<>();
+            for (String name : source.names()) {
+                if (!done.contains(name)) {
+                    pending.add(name);
+                }
+            }
+            job.setTotal(pending.size() + done.size());
+            job.setSkipped(done.size());
+            log.info("批量任务 {} 开始: 共 {} 张，已完成 {} 张", job.getId(), job.getTotal(), done.size());
+
+            model = modelRegistry.acquire(job.getModel());
+            if (outputPath.getParent() != null) {
+                Files.createDirectories(outputPath.getParent());
+            }
+            int batchSize = model.isDynamicBatch() ? Math.max(1, yoloConfig.getBulkBatchSize()) : 1;
+            ForkJoinPool pool = new ForkJoinPool(Math.max(1, yoloConfig.getBulkParallelism()));
+            try (BufferedWriter writer = Files.newBufferedWriter(outputPath, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                pool.invoke(new BatchTask(job, source, model, writer, pending, 0, pending.size(), batchSize));
+            } finally {
+                pool.shutdown();
+            }
+            job.finish(job.isCancelRequested() ? BulkJob.State.CANCELLED : BulkJob.State.COMPLETED);
+            log.info("批量任务 {} 结束: 处理 {} 张，失败 {} 张，{} 张/秒", job.getId(),
+                    job.getProcessed(), job.getFailed(), String.format("%.1f", job.getImagesPerSecond()));
+        } catch (Exception e) {
+            log.error("批量任务 {} 失败: {}", job.getId(), e.getMessage(), e);
+            job.setError(e.getMessage());
+            job.finish(BulkJob.State.FAILED);
+        } finally {
+            if (model != null) {
+                model.release();
+            }
+        }
+    }
+
+    /**
+     * 按批递归拆分的任务，空闲线程可窃取其他线程尚未开始的批次；只在本进程内执行，不会被序列化
+     */
+    @SuppressWarnings("serial")
+    private class BatchTask extends RecursiveAction {
+        private final BulkJob job;
+        private final ImageSource source;
+        private final LoadedModel model;
+        private final BufferedWriter writer;
+        private final List<String> names;
+        private final int from;
+        private final int to;
+        private final int batchSize;
+
+        BatchTask(BulkJob job, ImageSource source, LoadedModel model, BufferedWriter writer,
+                  List<String> names, int from, int to, int batchSize) {
+            this.job = job;
+            this.source = source;
+            this.model = model;
+            this.writer = writer;
+            this.names = names;
+            this.from = from;
+            this.to = to;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (job.isCancelRequested()) {
+                return;
+            }
+            if (to - from <= batchSize) {
+                processBatch(job, source, model, writer, names.subList(from, to));
+                return;
+            }
+            int mid = from + Math.max(batchSize, (to - from) / 2 / batchSize * batchSize);
+            invokeAll(new BatchTask(job, source, model, writer, names, from, mid, batchSize),
+                    new BatchTask(job, source, model, writer, names, mid, to, batchSize));
+        }
+    }
+
+    private void processBatch(BulkJob job, ImageSource source, LoadedModel model, BufferedWriter writer,
+                              List<String> batch) {
+        List<String> lines = new ArrayList<>(batch.size());
+        List<String> decodedNames = new ArrayList<>(batch.size());
+        List<Mat> images = new ArrayList<>(batch.size());
+        long failed = 0;
+        try (NativeScope scope = NativeScope.open()) {
+            // 1. 解码
+            for (String name : batch) {
+                try {
+                    MatOfByte encoded = scope.add(new MatOfByte(source.read(name)));
+                    Mat img = scope.add(Imgcodecs.imdecode(encoded, Imgcodecs.IMREAD_COLOR));
+                    if (img.empty()) {
+                        throw new IllegalArgumentException("Invalid or unsupported image format");
+                    }
+                    decodedNames.add(name);
+                    images.add(img);
+                } catch (Exception e) {
+                    failed++;
+                    lines.add(errorLine(name, e));
+                }
+            }
+
+            // 2. 预处理 + 批量推理
+            List<List<Detection>> results;
+            try {
+                results = images.isEmpty() ? List.of()
+                        : inferenceScheduler.run(Priority.BULK, () -> inferenceService.detectBatch(images, model));
+            } catch (Exception e) {
+                for (String name : decodedNames) {
+                    lines.add(errorLine(name, e));
+                }
+                failed += decodedNames.size();
+                results = List.of();
+            }
+
+            // 3. 写结果
+            for (int i = 0; i < results.size(); i++) {
+                lines.add(resultLine(decodedNames.get(i), images.get(i), results.get(i)));
+            }
+            job.addProcessed(results.size());
+            job.addFailed(failed);
+            synchronized (writer) {
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+                writer.flush();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write results: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 紧凑的结果行：detections 为 [x0, y0, x1, y1, score, classId] 数组
+     */
+    private String resultLine(String name, Mat img, List<Detection> detections) throws IOException {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("path", name);
+        node.put("width", img.cols());
+        node.put("height", img.rows());
+        ArrayNode array = node.putArray("detections");
+        for (Detection d : detections) {
+            array.addArray()
+                    .add(Math.round(d.getX0() * 10) / 10f)
+                    .add(Math.round(d.getY0() * 10) / 10f)
+                    .add(Math.round(d.getX1() * 10) / 10f)
+                    .add(Math.round(d.getY1() * 10) / 10f)
+                    .add(Math.round(d.getConfidence() * 1000) / 1000f)
+                    .add(d.getClassId());
+        }
+        return objectMapper.writeValueAsString(node);
+    }
+
+    private String errorLine(String name, Exception e) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("path", name);
+        node.put("error", String.valueOf(e.getMessage()));
+        return node.toString();
+    }
+
+    /**
+     * 读取已有输出中的 path 字段作为已完成集合，带 error 字段的失败行不算完成，恢复时重新处理
+     * 中断时写了一半的最后一行（没有换行符结尾）先从文件中截掉，之后追加的结果从新的一行开始
+     */
+    static Set<String> readCheckpoint(Path output, ObjectMapper objectMapper) throws IOException {
+        Set<String> done = new HashSet<>();
+        if (!Files.exists(output)) {
+            return done;
+        }
+        truncateToLastLine(output);
+        try (BufferedReader reader = Files.newBufferedReader(output, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    JsonNode node = objectMapper.readTree(line);
+                    JsonNode path = node.get("path");
+                    if (path != null && !node.has("error")) {
+                        done.add(path.asText());
+                    }
+                } catch (IOException e) {
+                    log.warn("忽略无法解析的检查点行: {}", line.length() > 80 ? line.substring(0, 80) : line);
+                }
+            }
+        }
+        return done;
+    }
+
+    /**
+     * 把文件截断到最后一个换行符之后
+     */
+    private static void truncateToLastLine(Path output) throws IOException {
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long end = size;
+            while (end > 0) {
+                long start = Math.max(0, end - buffer.capacity());
+                buffer.clear().limit((int) (end - start));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, start + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                for (int i = buffer.position() - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        truncate(channel, output, start + i + 1, size);
+                        return;
+                    }
+                }
+                end = start;
+            }
+            truncate(channel, output, 0, size);
+        }
+    }
+
+    private static void truncate(FileChannel channel, Path output, long length, long size) throws IOException {
+        if (length < size) {
+            log.warn("检查点 {} 末尾有 {} 字节不完整的行，已截断", output, size - length);
+            channel.truncate(length);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        jobs.values().forEach(BulkJob::cancel);
+        launcher.shutdownNow();
+    }
+
+    /**
+     * 图像来源：目录或 zip 压缩包
+     */
+    private interface ImageSource extends Closeable {
+
+        List<String> names() throws IOException;
+
+        byte[] read(String name) throws IOException;
+
+        static ImageSource open(Path input) throws IOException {
+            if (Files.isDirectory(input)) {
+                return new DirectorySource(input);
+            }
+            String fileName = input.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (Files.isRegularFile(input) && (fileName.endsWith(".zip") || fileName.endsWith(".jar"))) {
+                return new ZipSource(new ZipFile(input.toFile()));
+            }
+            throw new IllegalArgumentException("Input must be a directory or a zip archive: " + input);
+        }
+    }
+
+    private record DirectorySource(Path root) implements ImageSource {
+
+        @Override
+        public List<String> names() throws IOException {
+            try (Stream<Path> paths = Files.walk(root)) {
+                return paths.filter(p -> Files.isRegularFile(p) && isImage(p.getFileName().toString()))
+                        .map(p -> root.relativize(p).toString().replace('\\', '/'))
+                        .sorted()
+                        .toList();
+            }
+        }
+
+        @Override
+        public byte[] read(String name) throws IOException {
+            return Files.readAllBytes(root.resolve(name));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private record ZipSource(ZipFile zip) implements ImageSource {
+
+        @Override
+        public List<String> names() {
+            return zip.stream()
+                    .filter(e -> !e.isDirectory() && isImage(e.getName()))
+                    .map(ZipEntry::getName)
+                    .sorted()
+                    .toList();
+        }
+
+        @Override
+        public byte[] read(String name) throws IOException {
+            try (InputStream in = zip.getInputStream(zip.getEntry(name))) {
+                return in.readAllBytes();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+
+    private static boolean isImage(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && IMAGE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,337 @@
+package com.javayh.yolov.service;
+
+import ai.onnxruntime.OrtException;
+import com.javayh.yolov.config.YoloConfig;
+import com.javayh.yolov.model.Detection;
+import com.javayh.yolov.model.DetectionFilter;
+import com.javayh.yolov.model.LoadedModel;
+import com.javayh.yolov.model.ModelLoadedEvent;
+import com.javayh.yolov.model.RegionOfInterest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.Mat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 级联检测服务
+ * 先用小模型（如 nano 导出）检测，小模型的最高置信度落在不确定区间内时，才在整图或不确定目标周围的裁剪区域上运行大模型。
+ * 大部分空帧或明确的帧只经过小模型，按升级比例与两级耗时估算吞吐量收益并导出为指标
+ * @author haiji
+ */
+@Slf4j
+@Service
+public class CascadeDetectionService {
+
+    /**
+     * 耗时滑动平均的平滑系数
+     */
+    private static final double EWMA_ALPHA = 0.05;
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    @Autowired
+    private InferenceService inferenceService;
+
+    @Autowired
+    private ModelRegistry modelRegistry;
+
+    @Autowired
+    private ModelService modelService;
+
+    @Autowired
+    private ModelCatalog modelCatalog;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter acceptedCounter;
+    private Counter escalatedCounter;
+    private Counter calibrationCounter;
+    private Timer cascadeTimer;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * 类别不一致、不能级联的 小模型|大模型 组合
+     */
+    private final Set<String> mismatched = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 自动选择的小模型及解析时的模型目录版本，null 表示尚未解析
+     */
+    private volatile ResolvedModel resolvedSmallModel;
+
+    private record ResolvedModel(String name, long generation) {
+    }
+
+    /**
+     * 大模型整图推理耗时的滑动平均（毫秒），由整图升级与定期校准更新
+     */
+    private double largeMillis = Double.NaN;
+
+    /**
+     * 级联检测耗时的滑动平均（毫秒），不含校准请求
+     */
+    private double cascadeMillis = Double.NaN;
+
+    @PostConstruct
+    public void init() {
+        acceptedCounter = meterRegistry.counter("yolo.cascade.requests", "path", "small");
+        escalatedCounter = meterRegistry.counter("yolo.cascade.requests", "path", "escalated");
+        calibrationCounter = meterRegistry.counter("yolo.cascade.requests", "path", "calibration");
+        cascadeTimer = Timer.builder("yolo.cascade.latency")
+                .description("级联检测耗时（不含校准请求）")
+                .register(meterRegistry);
+        Gauge.builder("yolo.cascade.escalation.ratio", this, CascadeDetectionService::getEscalationRatio)
+                .description("升级到大模型的请求比例")
+                .register(meterRegistry);
+        Gauge.builder("yolo.cascade.throughput.gain", this, CascadeDetectionService::getThroughputGain)
+                .description("相对每次都运行大模型的吞吐量倍数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 是否对本次请求使用级联检测
+     * @param cascade 请求参数，为空时按配置
+     * @param tiled 是否为切片推理（切片推理不使用级联）
+     * @return 是否使用级联检测
+     */
+    public boolean isEnabled(Boolean cascade, boolean tiled) {
+        return !tiled && (cascade != null ? cascade : yoloConfig.isCascadeEnabled());
+    }
+
+    /**
+     * 级联检测
+     * @param img BGR 图像，不会被修改
+     * @param large 已占用的大模型
+     * @param inputSize 请求的输入尺寸，可为空
+     * @param filter 类别与区域过滤条件
+     * @return 原图坐标系下的检测结果
+     * @throws OrtException 如果 ONNX 推理失败
+     */
+    public List<Detection> detect(Mat img, LoadedModel large, Integer inputSize, DetectionFilter filter)
+            throws OrtException {
+        String smallName = smallModel(large);
+        long n = requests.getAndIncrement();
+        int interval = yoloConfig.getCascadeCalibrationInterval();
+        if (smallName == null || (interval > 0 && n % interval == 0)) {
+            // 定期在整图上运行大模型，保持吞吐量收益估算与当前负载一致，结果直接作为本次响应
+            long start = System.nanoTime();
+            List<Detection> detections = inferenceService.detect(img, large, inputSize, filter);
+            if (smallName != null) {
+                recordLarge(System.nanoTime() - start);
+                calibrationCounter.increment();
+            }
+            return detections;
+        }
+
+        long start = System.nanoTime();
+        float low = yoloConfig.getCascadeLowConfidence();
+        float high = yoloConfig.getCascadeHighConfidence();
+        LoadedModel small = modelRegistry.acquire(smallName);
+        List<Detection> candidates;
+        List<Detection> confident = new ArrayList<>();
+        try {
+            if (!small.getClassesName().equals(large.getClassesName())) {
+                log.warn("级联小模型 {} 与大模型 {} 的类别不一致，不使用级联", small.getName(), large.getName());
+                mismatched.add(smallName + "|" + large.getName());
+                return inferenceService.detect(img, large, inputSize, filter);
+            }
+            candidates = inferenceService.detect(img, small, inputSize, filter.withMinConfidence(low));
+            // 按小模型的类别阈值筛出达到正常阈值的结果，阈值在释放模型前读取
+            float threshold = filter.confidenceThreshold(yoloConfig.getConfidenceThreshold());
+            for (Detection d : candidates) {
+                if (d.getConfidence() >= filter.classThreshold(small, d.getClassId(), threshold)) {
+                    confident.add(d);
+                }
+            }
+        } finally {
+            small.release();
+        }
+
+        float maxConfidence = 0;
+        for (Detection d : candidates) {
+            maxConfidence = Math.max(maxConfidence, d.getConfidence());
+        }
+        List<Detection> result;
+        if (maxConfidence < low || maxConfidence >= high) {
+            // 空帧或小模型已有把握：只保留达到正常阈值的结果
+            result = confident;
+            acceptedCounter.increment();
+        } else {
+            result = escalate(img, large, inputSize, filter, candidates, high);
+            escalatedCounter.increment();
+        }
+        long elapsed = System.nanoTime() - start;
+        cascadeTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        recordCascade(elapsed);
+        return result;
+    }
+
+    /**
+     * 在不确定目标周围的裁剪区域上运行大模型；区域过大、请求已带感兴趣区域或配置为整图升级时直接整图推理
+     */
+    private List<Detection> escalate(Mat img, LoadedModel large, Integer inputSize, DetectionFilter filter,
+                                     List<Detection> candidates, float high) throws OrtException {
+        List<float[]> regions = filter.getRoi() != null || !"crops".equalsIgnoreCase(yoloConfig.getCascadeScope())
+                ? null : uncertainRegions(img, candidates, high);
+        if (regions == null) {
+            long start = System.nanoTime();
+            List<Detection> detections = inferenceService.detect(img, large, inputSize, filter);
+            recordLarge(System.nanoTime() - start);
+            return detections;
+        }
+        List<Detection> merged = new ArrayList<>();
+        for (Detection d : candidates) {
+            if (d.getConfidence() >= high) {
+                merged.add(d);
+            }
+        }
+        for (float[] r : regions) {
+            RegionOfInterest roi = RegionOfInterest.rectangle(r[0], r[1], r[2], r[3]);
+            merged.addAll(inferenceService.detect(img, large, null, filter.withRoi(roi)));
+        }
+        return inferenceService.nms(merged, yoloConfig.getNmsThreshold());
+    }
+
+    /**
+     * 不确定目标外扩后的区域，相交的区域合并；总面积超过整图的 roiCropMaxArea 时返回 null，改为整图推理
+     */
+    private List<float[]> uncertainRegions(Mat img, List<Detection> candidates, float high) {
+        List<float[]> regions = new ArrayList<>();
+        float padding = yoloConfig.getCascadeCropPadding();
+        for (Detection d : candidates) {
+            if (d.getConfidence() >= high) {
+                continue;
+            }
+            float pad = padding * Math.max(d.getX1() - d.getX0(), d.getY1() - d.getY0());
+            float[] r = {Math.max(0, d.getX0() - pad), Math.max(0, d.getY0() - pad),
+                    Math.min(img.cols(), d.getX1() + pad), Math.min(img.rows(), d.getY1() + pad)};
+            for (int i = 0; i < regions.size(); i++) {
+                float[] o = regions.get(i);
+                if (r[0] < o[2] && o[0] < r[2] && r[1] < o[3] && o[1] < r[3]) {
+                    r = new float[]{Math.min(r[0], o[0]), Math.min(r[1], o[1]), Math.max(r[2], o[2]), Math.max(r[3], o[3])};
+                    regions.remove(i);
+                    // 合并后的区域可能与之前的区域相交，重新检查
+                    i = -1;
+                }
+            }
+            regions.add(r);
+        }
+        double area = 0;
+        for (float[] r : regions) {
+            area += (double) (r[2] - r[0]) * (r[3] - r[1]);
+        }
+        return area > yoloConfig.getRoiCropMaxArea() * img.cols() * img.rows() ? null : regions;
+    }
+
+    /**
+     * 解析小模型：优先使用配置，否则从可用模型中选择名称以 n 结尾的 nano 导出；
+     * 自动选择的结果在模型目录变化后重新解析
+     * @return 小模型名称，无可用小模型时返回 null
+     */
+    private String smallModel(LoadedModel large) {
+        String configured = yoloConfig.getCascadeSmallModel();
+        if (configured != null && !configured.isBlank()) {
+            return configured.equals(large.getName()) || mismatched.contains(configured + "|" + large.getName())
+                    ? null : configured;
+        }
+        long generation = modelCatalog.getGeneration();
+        ResolvedModel resolved = resolvedSmallModel;
+        if (resolved == null || resolved.generation() != generation) {
+            String name = modelService.getAvailableModels().stream()
+                    .filter(n -> n.toLowerCase().matches(".*\\d+n\\.onnx"))
+                    .filter(n -> !n.equals(large.getName()))
+                    .sorted()
+                    .findFirst().orElse("");
+            if (resolved == null || !resolved.name().equals(name)) {
+                if (name.isEmpty()) {
+                    log.warn("未找到级联检测可用的小模型，请配置 yolo.cascade-small-model");
+                } else {
+                    log.info("级联检测小模型: {}", name);
+                }
+            }
+            resolved = new ResolvedModel(name, generation);
+            resolvedSmallModel = resolved;
+        }
+        String name = resolved.name();
+        return name.isEmpty() || mismatched.contains(name + "|" + large.getName()) ? null : name;
+    }
+
+    /**
+     * 模型重新加载后类别可能已变化，重新检查类别一致性并重新选择小模型
+     * @param event 模型加载事件
+     */
+    @EventListener
+    public void onModelLoaded(ModelLoadedEvent event) {
+        mismatched.clear();
+        resolvedSmallModel = null;
+    }
+
+    private synchronized void recordLarge(long nanos) {
+        largeMillis = ewma(largeMillis, nanos / 1e6);
+    }
+
+    private synchronized void recordCascade(long nanos) {
+        cascadeMillis = ewma(cascadeMillis, nanos / 1e6);
+    }
+
+    private static double ewma(double current, double value) {
+        return Double.isNaN(current) ? value : current + EWMA_ALPHA * (value - current);
+    }
+
+    /**
+     * 升级到大模型的请求比例
+     * @return 比例，尚无请求时为 0
+     */
+    public double getEscalationRatio() {
+        double escalated = escalatedCounter.count();
+        double total = escalated + acceptedCounter.count();
+        return total == 0 ? 0 : escalated / total;
+    }
+
+    /**
+     * 吞吐量收益：大模型整图耗时 / 级联耗时
+     * @return 倍数，尚无测量时为 NaN
+     */
+    public synchronized double getThroughputGain() {
+        return largeMillis / cascadeMillis;
+    }
+
+    /**
+     * 级联检测统计
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", yoloConfig.isCascadeEnabled());
+        ResolvedModel resolved = resolvedSmallModel;
+        stats.put("smallModel", resolved == null ? yoloConfig.getCascadeSmallModel() : resolved.name());
+        stats.put("small", (long) acceptedCounter.count());
+        stats.put("escalated", (long) escalatedCounter.count());
+        stats.put("calibration", (long) calibrationCounter.count());
+        stats.put("escalationRatio", getEscalationRatio());
+        synchronized (this) {
+            stats.put("largeMillis", largeMillis);
+            stats.put("cascadeMillis", cascadeMillis);
+        }
+        stats.put("throughputGain", getThroughputGain());
+        return stats;
+    }
+}
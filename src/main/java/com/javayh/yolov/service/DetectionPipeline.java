@@ -0,0 +1,226 @@
+package com.javayh.yolov.service;
+
+import com.javayh.yolov.config.StageTimings;
+import com.javayh.yolov.config.YoloConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 分阶段检测流水线
+ * 预处理、推理、后处理各有独立大小的线程池和有界等待队列，请求按阶段依次移交：
+ * 第 N+1 张图像预处理时，第 N 张在推理，第 N-1 张在编码。队列已满时移交方阻塞，压力逐级传回请求线程。
+ * 每个阶段统计忙碌时间占线程总时间的比例，接近 1 的阶段是瓶颈，应增加该阶段的线程数
+ * @author haiji
+ */
+@Slf4j
+@Service
+public class DetectionPipeline {
+
+    public enum Stage { PREPROCESS, INFERENCE, POSTPROCESS }
+
+    /**
+     * 利用率的最短统计窗口，窗口内重复读取返回上一次的结果
+     */
+    private static final long UTILIZATION_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<Stage, StageExecutor> stages = new EnumMap<>(Stage.class);
+
+    @PostConstruct
+    public void init() {
+        int capacity = Math.max(1, yoloConfig.getPipelineQueueCapacity());
+        stages.put(Stage.PREPROCESS, new StageExecutor(Stage.PREPROCESS, yoloConfig.getPipelinePreprocessThreads(), capacity));
+        stages.put(Stage.INFERENCE, new StageExecutor(Stage.INFERENCE, inferenceThreads(), capacity));
+        stages.put(Stage.POSTPROCESS, new StageExecutor(Stage.POSTPROCESS, yoloConfig.getPipelinePostprocessThreads(), capacity));
+        for (StageExecutor stage : stages.values()) {
+            String tag = stage.stage.name().toLowerCase();
+            Gauge.builder("yolo.pipeline.utilization", stage, StageExecutor::utilization)
+                    .tag("stage", tag)
+                    .description("阶段线程忙碌时间占比")
+                    .register(meterRegistry);
+            Gauge.builder("yolo.pipeline.queue.size", stage.executor, e -> e.getQueue().size())
+                    .tag("stage", tag)
+                    .register(meterRegistry);
+            stage.timer = Timer.builder("yolo.pipeline.stage.latency")
+                    .tag("stage", tag)
+                    .description("阶段执行耗时（不含排队）")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 推理阶段线程数；同时启用推理调度时，请求在移交推理阶段之前已获得调度名额，
+     * 线程数不少于调度并发数，获得名额的请求不会在本阶段的先进先出队列中再次排队
+     */
+    private int inferenceThreads() {
+        int threads = Math.max(1, yoloConfig.getPipelineInferenceThreads());
+        if (yoloConfig.isSchedulerEnabled() && yoloConfig.getSchedulerConcurrency() > threads) {
+            log.info("推理调度已启用，流水线推理阶段线程数从 {} 调整为调度并发数 {}", threads,
+                    yoloConfig.getSchedulerConcurrency());
+            return yoloConfig.getSchedulerConcurrency();
+        }
+        return threads;
+    }
+
+    public boolean isEnabled() {
+        return yoloConfig.isPipelineEnabled();
+    }
+
+    /**
+     * 提交到指定阶段执行；阶段队列已满时调用方阻塞，直到有空位
+     * @param stage 阶段
+     * @param task 任务，抛出的异常包装为 CompletionException
+     * @return 任务结果
+     */
+    public <T> CompletableFuture<T> submit(Stage stage, Callable<T> task) {
+        StageExecutor executor = stages.get(stage);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        StageTimings timings = StageTimings.current();
+        executor.executor.execute(() -> {
+            // 阶段线程记录到提交方请求的阶段耗时中，后续阶段在 complete 中提交，同样带上该请求
+            StageTimings previous = StageTimings.bind(timings);
+            try {
+                execute(executor, task, future);
+            } finally {
+                StageTimings.bind(previous);
+            }
+        });
+        return future;
+    }
+
+    private static <T> void execute(StageExecutor executor, Callable<T> task, CompletableFuture<T> future) {
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = task.call();
+        } catch (Throwable e) {
+            executor.record(System.nanoTime() - start);
+            future.completeExceptionally(e);
+            return;
+        }
+        // 先记录耗时再完成：后续阶段的移交在 complete 中执行，等待下游队列的时间不计入本阶段忙碌时间
+        executor.record(System.nanoTime() - start);
+        future.complete(result);
+    }
+
+    /**
+     * 各阶段的线程数、队列、耗时与利用率
+     * @return 按阶段顺序的统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", yoloConfig.isPipelineEnabled());
+        List<Map<String, Object>> list = new ArrayList<>();
+        StageExecutor bottleneck = null;
+        for (StageExecutor stage : stages.values()) {
+            double utilization = stage.utilization();
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("stage", stage.stage.name().toLowerCase());
+            s.put("threads", stage.executor.getMaximumPoolSize());
+            s.put("active", stage.executor.getActiveCount());
+            s.put("queued", stage.executor.getQueue().size());
+            s.put("queueCapacity", stage.capacity);
+            s.put("completed", stage.executor.getCompletedTaskCount());
+            s.put("meanMillis", stage.timer.mean(TimeUnit.MILLISECONDS));
+            s.put("utilization", utilization);
+            list.add(s);
+            if (bottleneck == null || utilization > bottleneck.utilization()) {
+                bottleneck = stage;
+            }
+        }
+        stats.put("stages", list);
+        stats.put("bottleneck", bottleneck == null ? null : bottleneck.stage.name().toLowerCase());
+        return stats;
+    }
+
+    /**
+     * 一个阶段：固定线程池 + 有界队列，统计忙碌时间
+     */
+    private static final class StageExecutor {
+
+        private final Stage stage;
+        private final int capacity;
+        private final ThreadPoolExecutor executor;
+        private final LongAdder busyNanos = new LongAdder();
+        private Timer timer;
+
+        private long sampleTime = System.nanoTime();
+        private long sampleBusy;
+        private double lastUtilization;
+
+        StageExecutor(Stage stage, int threads, int capacity) {
+            this.stage = stage;
+            this.capacity = capacity;
+            AtomicInteger index = new AtomicInteger();
+            String prefix = "yolo-pipeline-" + stage.name().toLowerCase() + "-";
+            this.executor = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(capacity), r -> {
+                        Thread t = new Thread(r, prefix + index.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }, (r, e) -> {
+                        // 队列已满：阻塞移交方而不是拒绝或在移交方线程中执行，保证各阶段只在自己的线程池中运行
+                        if (e.isShutdown()) {
+                            throw new RejectedExecutionException("Pipeline is shut down");
+                        }
+                        try {
+                            e.getQueue().put(r);
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                            throw new RejectedExecutionException("Interrupted while waiting for pipeline stage " + stage, ex);
+                        }
+                    });
+        }
+
+        void record(long nanos) {
+            busyNanos.add(nanos);
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * 上一个统计窗口内的忙碌时间 / (线程数 × 窗口时长)
+         */
+        synchronized double utilization() {
+            long now = System.nanoTime();
+            long elapsed = now - sampleTime;
+            if (elapsed >= UTILIZATION_WINDOW_NANOS) {
+                long busy = busyNanos.sum();
+                lastUtilization = Math.min(1.0, (double) (busy - sampleBusy)
+                        / ((double) elapsed * executor.getMaximumPoolSize()));
+                sampleBusy = busy;
+                sampleTime = now;
+            }
+            return lastUtilization;
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        stages.values().forEach(stage -> stage.executor.shutdownNow());
+    }
+}
@@ -1,28 +1,34 @@
 package com.javayh.yolov.service;
 
-import ai.onnxruntime.OnnxTensor;
 import ai.onnxruntime.OrtException;
-import ai.onnxruntime.OrtSession;
-import com.javayh.yolov.config.YoloConfig;
+import com.javayh.yolov.config.NativeScope;
+import com.javayh.yolov.config.StageTimings;
 import com.javayh.yolov.model.Detection;
-import com.javayh.yolov.model.Letterbox;
-import com.javayh.yolov.model.ODConfig;
+import com.javayh.yolov.model.DetectionFilter;
+import com.javayh.yolov.model.DetectionOptions;
+import com.javayh.yolov.model.DetectionResponse;
+import com.javayh.yolov.model.ImageFormat;
+import com.javayh.yolov.model.LoadedModel;
+import com.javayh.yolov.model.PreparedInput;
+import com.javayh.yolov.model.RawFrame;
+import com.javayh.yolov.service.DetectionPipeline.Stage;
 import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfByte;
-import org.opencv.core.Point;
-import org.opencv.core.Scalar;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.Size;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.nio.FloatBuffer;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * 检测服务类
@@ -32,16 +38,37 @@ import java.util.Map;
 @Service
 public class DetectionService {
 
+    /**
+     * 编码输出缓冲，按线程复用，避免每次请求重新分配原生内存
+     */
+    private static final ThreadLocal<MatOfByte> ENCODE_BUFFER = ThreadLocal.withInitial(MatOfByte::new);
+
     @Autowired
-    private ODConfig odConfig;
+    private AnnotationRenderer annotationRenderer;
 
     @Autowired
-    private YoloConfig yoloConfig;
+    private InferenceService inferenceService;
 
     @Autowired
-    private YoloService yoloService;
+    private TiledDetectionService tiledDetectionService;
 
+    @Autowired
+    private CascadeDetectionService cascadeDetectionService;
 
+    @Autowired
+    private ModelRegistry modelRegistry;
+
+    @Autowired
+    private StartupMetrics startupMetrics;
+
+    @Autowired
+    private ResultPersistenceService resultPersistenceService;
+
+    @Autowired
+    private DetectionPipeline detectionPipeline;
+
+    @Autowired
+    private InferenceScheduler inferenceScheduler;
 
     /**
      * 检测图像中的物体
@@ -51,203 +78,309 @@ public class DetectionService {
      * @throws OrtException 如果 ONNX 推理失败
      */
     public byte[] detect(byte[] bytes ) throws IOException, OrtException {
-        // 1. 读取图像
-        Mat img = Imgcodecs.imdecode(new MatOfByte(bytes), Imgcodecs.IMREAD_COLOR);
-        if (img.empty()) {
-            throw new IllegalArgumentException("Invalid or unsupported image format");
+        return detect(bytes, new DetectionOptions());
+    }
+
+    /**
+     * 使用指定模型检测图像中的物体
+     * @param bytes 图像字节数组
+     * @param modelName 模型名称，为空时使用默认模型
+     * @return 检测结果字节数组
+     * @throws IOException 如果读取图像失败
+     * @throws OrtException 如果 ONNX 推理失败
+     */
+    public byte[] detect(byte[] bytes, String modelName) throws IOException, OrtException {
+        return detect(bytes, DetectionOptions.ofModel(modelName));
+    }
+
+    /**
+     * 按请求参数检测图像中的物体并返回标注后的图像
+     * @param bytes 图像字节数组
+     * @param options 检测参数
+     * @return 检测结果字节数组
+     * @throws IOException 如果读取图像失败
+     * @throws OrtException 如果 ONNX 推理失败
+     */
+    public byte[] detect(byte[] bytes, DetectionOptions options) throws IOException, OrtException {
+        if (detectionPipeline.isEnabled() && !options.isTiled()
+                && !cascadeDetectionService.isEnabled(options.getCascade(), false)) {
+            return detectPipelined(bytes, options);
         }
-        log.info("Input image size: {} , X : {}" , img.cols(), img.rows());
-
-        Mat image = img.clone();
-        Imgproc.cvtColor(image, image, Imgproc.COLOR_BGR2RGB);
-
-        int minDwDh = Math.min(img.width(), img.height());
-        int thickness = Math.max(1, minDwDh / yoloConfig.getLineThicknessRatio());
-
-        // 2. Letterbox 预处理（默认 640x640）
-        Letterbox letterbox = new Letterbox();
-        image = letterbox.letterbox(image);
-        double ratio = letterbox.getRatio();
-        double dw = letterbox.getDw();
-        double dh = letterbox.getDh();
-        int rows = letterbox.getHeight();
-        int cols = letterbox.getWidth();
-        int channels = image.channels();
-
-        // 3. 转为 CHW float 数组 [C, H, W]
-        float[] pixels = new float[channels * rows * cols];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                // 注意: get(row=y, col=x)
-                double[] pixel = image.get(j, i);
-                for (int k = 0; k < channels; k++) {
-                    pixels[rows * cols * k + j * cols + i] = (float) pixel[k] / 255.0f;
-                }
+        List<Detection> nmsDetections;
+        byte[] result;
+        try (NativeScope scope = NativeScope.open()) {
+            // 1. 读取图像
+            Mat img = decode(scope, bytes);
+            log.info("Input image size: {} , X : {}" , img.cols(), img.rows());
+
+            LoadedModel model = modelRegistry.acquire(options.getModel());
+            try {
+                nmsDetections = detect(img, model, options);
+
+                // 6. 绘图
+                draw(img, nmsDetections, model);
+            } finally {
+                model.release();
             }
+            log.debug("Detections: {}", nmsDetections);
+
+            // 7. 按请求的格式、质量和尺寸编码
+            result = encode(scope, img, options);
+        }
+        startupMetrics.recordDetection();
+
+        // 8. 异步保存检测结果（未启用时直接跳过）
+        if (options.isPersist()) {
+            resultPersistenceService.submit(options.getSourceName(), options.getFormat().getExtension(), result, nmsDetections);
         }
+        return result;
+    }
 
-        // 4. 推理
-        long[] shape = {1L, (long) channels, (long) rows, (long) cols};
-        try (OnnxTensor tensor = OnnxTensor.createTensor(yoloService.getEnv(), FloatBuffer.wrap(pixels), shape)) {
-            Map<String, OnnxTensor> inputMap = new HashMap<>(16);
-            inputMap.put(yoloService.getSession().getInputInfo().keySet().iterator().next(), tensor);
-
-            try (OrtSession.Result result = yoloService.getSession().run(inputMap)) {
-                Object value = result.get(0).getValue();
-
-                // 5. 动态解析 YOLOv8/v11 输出 [1, 84, 8400] → [8400, 84]
-                float[][] detections;
-                if (value instanceof float[][][]) {
-                    float[][][] raw = (float[][][]) value;
-                    int dim1 = raw[0].length;
-                    int dim2 = raw[0][0].length;
-
-                    if (dim1 >= 4 && dim2 > 1000) {
-                        // YOLOv8/v11 格式: [1, 84, 8400]
-                        detections = new float[dim2][dim1];
-                        for (int i = 0; i < dim2; i++) {
-                            for (int j = 0; j < dim1; j++) {
-                                detections[i][j] = raw[0][j][i];
+    /**
+     * 在分阶段流水线中检测：解码与预处理、推理、解析输出与绘制编码分别在各阶段线程池中执行，
+     * 当前线程等待结果。切片与级联检测包含多次推理，不走流水线
+     */
+    private byte[] detectPipelined(byte[] bytes, DetectionOptions options) throws OrtException {
+        PipelinedRequest request = new PipelinedRequest();
+        byte[] result;
+        // 作用域随请求在阶段之间移交，同一时刻只有一个阶段使用，全部阶段结束后由当前线程关闭
+        try (NativeScope scope = NativeScope.open()) {
+            try {
+                CompletableFuture<byte[]> future = detectionPipeline.submit(Stage.PREPROCESS, () -> {
+                    request.img = decode(scope, bytes);
+                    log.info("Input image size: {} , X : {}", request.img.cols(), request.img.rows());
+                    request.model = modelRegistry.acquire(options.getModel());
+                    StageTimings.recordModel(request.model.getName());
+                    DetectionFilter filter = DetectionFilter.of(request.model, options.getClasses(), options.getRoi());
+                    return inferenceService.prepare(request.img, request.model, options.getInputSize(), filter);
+                }).thenCompose(input -> {
+                    request.input = input;
+                    // 在预处理线程中按优先级获得推理名额后再移交，推理阶段只执行已获准的请求
+                    InferenceScheduler.Permit permit = inferenceScheduler.admit(options.getPriority());
+                    try {
+                        return detectionPipeline.submit(Stage.INFERENCE, () -> {
+                            try {
+                                return inferenceService.run(input);
+                            } finally {
+                                permit.release();
                             }
-                        }
-                    } else if (dim2 >= 4 && dim1 > 1000) {
-                        // YOLOv7 格式: [1, 25200, 84]
-                        detections = raw[0];
-                    } else {
-                        throw new RuntimeException("Unsupported output shape: [1, " + dim1 + ", " + dim2 + "]");
+                        });
+                    } catch (RuntimeException e) {
+                        permit.release();
+                        throw e;
                     }
-                } else {
-                    throw new RuntimeException("Unsupported ONNX output type: " + value.getClass());
+                }).thenCompose(raw -> detectionPipeline.submit(Stage.POSTPROCESS, () -> {
+                    request.detections = inferenceService.complete(request.model, request.input, raw);
+                    draw(request.img, request.detections, request.model);
+                    return encode(scope, request.img, options);
+                }));
+                result = future.join();
+            } catch (CompletionException e) {
+                throw unwrap(e);
+            } finally {
+                if (request.model != null) {
+                    request.model.release();
                 }
+            }
+        }
+        log.debug("Detections: {}", request.detections);
+        startupMetrics.recordDetection();
+        if (options.isPersist()) {
+            resultPersistenceService.submit(options.getSourceName(), options.getFormat().getExtension(), result,
+                    request.detections);
+        }
+        return result;
+    }
 
-                // 6. 绘制检测框（COCO 80 类）
-                //===== 收集所有检测结果 =====
-                List<Detection> detectionsList = new ArrayList<>();
-                int numClasses = odConfig.getNumClasses();
-
-                for (float[] det : detections) {
-                    if (det.length < 4 + numClasses) {
-                        continue;
-                    }
-                    // 解析边界框的中心点 (x, y) 和宽高 (w, h)
-                    float x = det[0], y = det[1], w = det[2], h = det[3];
-                    // 将 (x, y, w, h) 转换为左上角 (x0, y0) 和右下角 (x1, y1)
-                    float x0 = x - w * 0.5f;
-                    float y0 = y - h * 0.5f;
-                    float x1 = x + w * 0.5f;
-                    float y1 = y + h * 0.5f;
-
-                    // 在类别置信度部分 [det[4] 到 det[4 + numClasses - 1]] 中找出最大值及其类别 ID
-                    float maxConf = 0;
-                    int clsId = -1;
-                    for (int c = 0; c < numClasses; c++) {
-                        if (det[4 + c] > maxConf) {
-                            maxConf = det[4 + c];
-                            clsId = c;
-                        }
-                    }
-
-                    if (clsId == -1 || maxConf < yoloConfig.getConfidenceThreshold()) {
-                        continue;
-                    }
-
-                    // 反 Letterbox 到原图坐标
-                    float finalX0 = (float) ((x0 - dw) / ratio);
-                    float finalY0 = (float) ((y0 - dh) / ratio);
-                    float finalX1 = (float) ((x1 - dw) / ratio);
-                    float finalY1 = (float) ((y1 - dh) / ratio);
+    private static OrtException unwrap(CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof OrtException ortException) {
+            return ortException;
+        }
+        if (cause instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        throw new IllegalStateException(cause);
+    }
 
-                    String className = odConfig.getName(clsId);
-                    detectionsList.add(new Detection(finalX0, finalY0, finalX1, finalY1, maxConf, clsId, className));
-                }
+    /**
+     * 流水线中一个请求的中间状态，每个字段由一个阶段写入、之后的阶段读取
+     */
+    private static final class PipelinedRequest {
+        private Mat img;
+        private LoadedModel model;
+        private PreparedInput input;
+        private List<Detection> detections;
+    }
 
-                // ===== 执行 NMS =====
-                // IoU 阈值 0.45
-                List<Detection> nmsDetections = nms(detectionsList, yoloConfig.getNmsThreshold());
+    /**
+     * 解码图像，解码结果与编码字节都登记到作用域中随请求释放
+     * @param scope 请求作用域
+     * @param bytes 图像字节数组
+     * @return BGR 图像
+     */
+    private static Mat decode(NativeScope scope, byte[] bytes) {
+        long start = System.nanoTime();
+        Mat img = scope.add(Imgcodecs.imdecode(scope.add(new MatOfByte(bytes)), Imgcodecs.IMREAD_COLOR));
+        StageTimings.record(StageTimings.Stage.DECODE, start);
+        if (img.empty()) {
+            throw new IllegalArgumentException("Invalid or unsupported image format");
+        }
+        return img;
+    }
 
-                // ===== 绘图 =====
-                double fontScale = 0.5;
+    /**
+     * 编码标注后的图像，长边超过上限时先缩小
+     * @param scope 请求作用域
+     * @param img BGR 图像
+     * @param options 检测参数
+     * @return 编码后的图像
+     */
+    private byte[] encode(NativeScope scope, Mat img, DetectionOptions options) {
+        long start = System.nanoTime();
+        Mat output = img;
+        Integer maxDimension = options.getMaxDimension();
+        int longSide = Math.max(img.cols(), img.rows());
+        if (maxDimension != null && maxDimension > 0 && longSide > maxDimension) {
+            double scale = (double) maxDimension / longSide;
+            Size size = new Size(Math.round(img.cols() * scale), Math.round(img.rows() * scale));
+            // 预先按目标尺寸分配，resize 直接写入，作用域按实际大小计数
+            output = scope.add(new Mat(size, img.type()));
+            Imgproc.resize(img, output, size, 0, 0, Imgproc.INTER_AREA);
+        }
+        ImageFormat format = options.getFormat();
+        MatOfInt params = scope.add(options.getQuality() == null ? new MatOfInt()
+                : new MatOfInt(format.getQualityFlag(), format.toCodecValue(options.getQuality())));
+        MatOfByte buf = ENCODE_BUFFER.get();
+        if (!Imgcodecs.imencode(format.getExtension(), output, buf, params)) {
+            throw new IllegalArgumentException("Failed to encode image as " + format);
+        }
+        byte[] encoded = buf.toArray();
+        StageTimings.record(StageTimings.Stage.ENCODE, start);
+        return encoded;
+    }
 
-                for (Detection det : nmsDetections) {
-                    Point topLeft = new Point(det.getX0(), det.getY0());
-                    Point bottomRight = new Point(det.getX1(), det.getY1());
-                    double[] colorArr = odConfig.getOtherColor(det.getClassId());
-                    Scalar color = new Scalar(colorArr[0], colorArr[1], colorArr[2]);
+    private void draw(Mat img, List<Detection> detections, LoadedModel model) {
+        long start = System.nanoTime();
+        annotationRenderer.draw(img, detections, model);
+        StageTimings.record(StageTimings.Stage.RENDER, start);
+    }
 
-                    // 画细框
-                    Imgproc.rectangle(img, topLeft, bottomRight, color, thickness);
+    /**
+     * 检测图像中的物体，只返回检测结果，不绘制和编码图像
+     * @param bytes 图像字节数组
+     * @param options 检测参数
+     * @return 检测结果
+     * @throws OrtException 如果 ONNX 推理失败
+     */
+    public DetectionResponse detectResult(byte[] bytes, DetectionOptions options) throws OrtException {
+        try (NativeScope scope = NativeScope.open()) {
+            Mat img = decode(scope, bytes);
+            LoadedModel model = modelRegistry.acquire(options.getModel());
+            try {
+                List<Detection> detections = detect(img, model, options);
+                startupMetrics.recordDetection();
+                return new DetectionResponse(model.getName(), model.getVersion(), img.cols(), img.rows(), detections);
+            } finally {
+                model.release();
+            }
+        }
+    }
 
-                    // 写小字
-                    String label = det.getClassName() + " " + String.format("%.2f", det.getConfidence());
-                    Point textLoc = new Point(det.getX0(), Math.max(10, det.getY0() - 5));
-                    Imgproc.putText(img, label, textLoc, Imgproc.FONT_HERSHEY_SIMPLEX, fontScale, color, thickness);
-                    log.info("DetectionInfo: {}", det);
+    /**
+     * 检测客户端已 letterbox 好的原始 uint8 帧，只返回检测结果
+     * 跳过图像解码与预处理，检测框按帧描述中的缩放与填充参数映射回原图
+     * @param pixels HWC 像素数据
+     * @param frame 帧描述
+     * @param options 检测参数（不支持切片推理）
+     * @return 检测结果
+     * @throws OrtException 如果 ONNX 推理失败
+     */
+    public DetectionResponse detectRaw(byte[] pixels, RawFrame frame, DetectionOptions options) throws OrtException {
+        frame.validate(pixels.length);
+        try (NativeScope scope = NativeScope.open()) {
+            Mat mat = scope.add(new Mat(frame.getHeight(), frame.getWidth(), CvType.CV_8UC(frame.getChannels())));
+            mat.put(0, 0, pixels);
+            LoadedModel model = modelRegistry.acquire(options.getModel());
+            try {
+                boolean bgr = frame.isBgr();
+                if (frame.getChannels() == 4) {
+                    // 去掉 alpha 通道时一并转换为模型需要的通道顺序，只遍历一次像素
+                    boolean target = model.getEngine().isUint8Input() && model.getEngine().isBgrInput();
+                    Mat converted = scope.mat();
+                    Imgproc.cvtColor(mat, converted, bgr == target ? Imgproc.COLOR_RGBA2RGB : Imgproc.COLOR_RGBA2BGR);
+                    mat = converted;
+                    bgr = target;
                 }
-
+                DetectionFilter filter = DetectionFilter.of(model, options.getClasses(), options.getRoi());
+                StageTimings.recordModel(model.getName());
+                Mat prepared = mat;
+                boolean preparedBgr = bgr;
+                List<Detection> detections = inferenceScheduler.run(options.getPriority(),
+                        () -> inferenceService.detectPrepared(prepared, preparedBgr, model, frame.toLetterbox(), filter));
+                startupMetrics.recordDetection();
+                return new DetectionResponse(model.getName(), model.getVersion(), frame.getSourceWidth(),
+                        frame.getSourceHeight(), detections);
+            } finally {
+                model.release();
             }
         }
+    }
 
-        // 7. 保存检测结果图像到指定路径
-//        String savePath = yoloConfig.getSavePath();
-//        File saveDir = new File(savePath);
-//        if (!saveDir.exists()) {
-//            saveDir.mkdirs(); // 创建目录结构
-//        }
-//
-//        // 使用时间戳和原始文件名创建保存文件名
-//        String timestamp = String.valueOf(System.currentTimeMillis());
-//        String originalFilename = file.getOriginalFilename();
-//        String extension = originalFilename != null && originalFilename.contains(".")
-//                ? originalFilename.substring(originalFilename.lastIndexOf("."))
-//                : ".jpg";
-//        String saveFilename = timestamp + "_" + originalFilename.replace(extension, "") + "_detection" + extension;
-//        String fullSavePath = savePath + saveFilename;
-//
-//        // 保存图像
-//        Imgcodecs.imwrite(fullSavePath, img);
-//        log.info("Detection result saved to: {}", fullSavePath);
-
-        // 8. 返回 JPEG 字节数组
-        MatOfByte buf = new MatOfByte();
-        Imgcodecs.imencode(".jpg", img, buf);
-        return buf.toArray();
+    /**
+     * 客户端预先 letterbox 时应使用的帧格式
+     * @param modelName 模型名称，为空时使用默认模型
+     * @return 帧宽高与推荐的通道顺序
+     */
+    public Map<String, Object> rawFrameSpec(String modelName) {
+        LoadedModel model = modelRegistry.acquire(modelName);
+        try {
+            int[] size = inferenceService.preparedFrameSize(model);
+            Map<String, Object> spec = new LinkedHashMap<>();
+            spec.put("model", model.getName());
+            spec.put("width", size[0]);
+            spec.put("height", size[1]);
+            // 与模型输入一致的通道顺序可以省去服务端的颜色转换
+            spec.put("channelOrder", model.getEngine().isUint8Input() && model.getEngine().isBgrInput() ? "bgr" : "rgb");
+            spec.put("padValue", 114);
+            return spec;
+        } finally {
+            model.release();
+        }
     }
 
     /**
-     * 非极大值抑制（NMS）
-     * @param detections 检测结果列表
-     * @param iouThreshold IoU 阈值
-     * @return 保留的检测结果列表
+     * 检测已解码的 BGR 图像，返回原图坐标系下经过 NMS 的检测结果
+     * @param img BGR 图像，不会被修改
+     * @param options 检测参数
+     * @return 检测结果列表
+     * @throws OrtException 如果 ONNX 推理失败
      */
-    private List<Detection> nms(List<Detection> detections, float iouThreshold) {
-        // 按类别分组
-        Map<Integer, List<Detection>> grouped = new HashMap<>();
-        for (Detection d : detections) {
-            grouped.computeIfAbsent(d.getClassId(), k -> new ArrayList<>()).add(d);
-        }
-
-        List<Detection> result = new ArrayList<>();
-        for (List<Detection> group : grouped.values()) {
-            // 按置信度降序排序
-            group.sort((a, b) -> Float.compare(b.getConfidence(), a.getConfidence()));
-
-            boolean[] suppressed = new boolean[group.size()];
-            for (int i = 0; i < group.size(); i++) {
-                if (suppressed[i]) {
-                    continue;
-                }
-                result.add(group.get(i));
-                for (int j = i + 1; j < group.size(); j++) {
-                    if (suppressed[j]) {
-                        continue;
-                    }
-                    float iou = group.get(i).iou(group.get(j));
-                    if (iou > iouThreshold) {
-                        suppressed[j] = true;
-                    }
-                }
-            }
+    public List<Detection> detect(Mat img, DetectionOptions options) throws OrtException {
+        LoadedModel model = modelRegistry.acquire(options.getModel());
+        try {
+            return detect(img, model, options);
+        } finally {
+            model.release();
         }
-        return result;
     }
-}
\ No newline at end of file
+
+    private List<Detection> detect(Mat img, LoadedModel model, DetectionOptions options) throws OrtException {
+        StageTimings.recordModel(model.getName());
+        return inferenceScheduler.run(options.getPriority(), () -> detectScheduled(img, model, options));
+    }
+
+    private List<Detection> detectScheduled(Mat img, LoadedModel model, DetectionOptions options) throws OrtException {
+        DetectionFilter filter = DetectionFilter.of(model, options.getClasses(), options.getRoi());
+        if (options.isTiled()) {
+            return tiledDetectionService.detect(img, model, filter);
+        }
+        if (cascadeDetectionService.isEnabled(options.getCascade(), false)) {
+            return cascadeDetectionService.detect(img, model, options.getInputSize(), filter);
+        }
+        return inferenceService.detect(img, model, options.getInputSize(), filter);
+    }
+}
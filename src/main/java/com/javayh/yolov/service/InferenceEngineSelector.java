@@ -0,0 +1,157 @@
+package com.javayh.yolov.service;
+
+import com.javayh.yolov.config.YoloConfig;
+import com.javayh.yolov.engine.EngineType;
+import com.javayh.yolov.engine.InferenceEngine;
+import com.javayh.yolov.engine.OpenCvDnnEngine;
+import com.javayh.yolov.model.Letterbox;
+import com.javayh.yolov.model.LoadedModel;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 推理引擎选择
+ * 模型加载后按配置切换引擎；auto 模式下在后台对 ONNX Runtime 与 OpenCV DNN 各做一次端到端自测（含预处理），
+ * 选择当前 CPU 与模型下更快的引擎。自测期间模型照常使用 ONNX Runtime 提供服务。
+ * 自测不在加载时立即执行：加载时只登记，由预热服务在该次预热完成后于后台测量线程中执行，
+ * 与预热、会话调优不会同时占用 CPU
+ * @author haiji
+ */
+@Slf4j
+@Service
+public class InferenceEngineSelector {
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    @Autowired
+    private InferenceService inferenceService;
+
+    @Autowired
+    private ModelCatalog modelCatalog;
+
+    /**
+     * 等待预热完成后执行的引擎选择
+     */
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 最近一次自测结果，按模型名称
+     */
+    private final Map<String, Map<String, Object>> results = new ConcurrentHashMap<>();
+
+    /**
+     * 按配置为新加载的模型登记推理引擎选择，在模型预热完成后执行
+     * @param model 新加载的模型
+     * @param modelFile 原始（未融合预处理的）模型文件，OpenCV DNN 从该文件加载
+     */
+    public void configure(LoadedModel model, File modelFile) {
+        EngineType type;
+        try {
+            type = EngineType.parse(yoloConfig.getModelEngines().getOrDefault(model.getName(), yoloConfig.getEngine()));
+        } catch (IllegalArgumentException e) {
+            log.warn("模型 {} 的推理引擎配置无效，使用 ONNX Runtime: {}", model.getName(), e.getMessage());
+            return;
+        }
+        if (type == EngineType.ONNXRUNTIME) {
+            return;
+        }
+        pending.add(() -> select(model, modelFile, type));
+    }
+
+    /**
+     * 执行已登记的引擎选择，由预热服务在后台测量线程中调用
+     */
+    public void runPending() {
+        Runnable task;
+        while ((task = pending.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * 最近一次自测结果
+     * @return 按模型名称的自测结果
+     */
+    public Map<String, Map<String, Object>> getResults() {
+        return results;
+    }
+
+    private void select(LoadedModel model, File modelFile, EngineType forced) {
+        if (!model.tryAcquire()) {
+            return;
+        }
+        OpenCvDnnEngine dnn = null;
+        try {
+            dnn = new OpenCvDnnEngine(modelFile, yoloConfig.getDnnPoolSize());
+            if (forced == EngineType.OPENCV) {
+                model.setEngine(dnn);
+                dnn = null;
+                log.info("模型 {} 使用 OpenCV DNN 引擎", model.getName());
+                return;
+            }
+            double ortMillis = benchmark(model, model.getEngine());
+            double dnnMillis = benchmark(model, dnn);
+            EngineType selected = dnnMillis < ortMillis ? EngineType.OPENCV : EngineType.ONNXRUNTIME;
+            if (selected == EngineType.OPENCV) {
+                model.setEngine(dnn);
+                dnn = null;
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("onnxruntimeMillis", ortMillis);
+            result.put("opencvMillis", dnnMillis);
+            result.put("selected", selected);
+            result.put("cpus", Runtime.getRuntime().availableProcessors());
+            result.put("timestamp", System.currentTimeMillis());
+            results.put(model.getName(), result);
+            modelCatalog.recordLatency(model.getName(), Math.min(ortMillis, dnnMillis));
+            log.info("模型 {} 引擎自测: onnxruntime {} ms，opencv {} ms，选择 {}", model.getName(),
+                    String.format("%.2f", ortMillis), String.format("%.2f", dnnMillis), selected);
+        } catch (Exception e) {
+            log.warn("模型 {} 无法使用 OpenCV DNN 引擎，继续使用 ONNX Runtime: {}", model.getName(), e.getMessage());
+        } finally {
+            if (dnn != null) {
+                dnn.close();
+            }
+            model.release();
+        }
+    }
+
+    /**
+     * 以 1280x720 随机图像做端到端推理（预处理 + 推理），返回中位数耗时
+     */
+    private double benchmark(LoadedModel model, InferenceEngine engine) throws Exception {
+        Mat img = new Mat(720, 1280, CvType.CV_8UC3);
+        Core.randu(img, 0, 255);
+        try {
+            int iterations = Math.max(1, yoloConfig.getEngineBenchmarkIterations());
+            long[] times = new long[iterations];
+            for (int i = -2; i < iterations; i++) {
+                Letterbox letterbox = inferenceService.createLetterbox(model, null);
+                long start = System.nanoTime();
+                inferenceService.infer(engine, List.of(img), new Letterbox[]{letterbox});
+                if (i >= 0) {
+                    times[i] = System.nanoTime() - start;
+                }
+            }
+            Arrays.sort(times);
+            return times[iterations / 2] / 1e6;
+        } finally {
+            img.release();
+        }
+    }
+}
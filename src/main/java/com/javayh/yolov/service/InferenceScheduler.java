@@ -0,0 +1,302 @@
+package com.javayh.yolov.service;
+
+import ai.onnxruntime.OrtException;
+import com.javayh.yolov.config.StageTimings;
+import com.javayh.yolov.config.StageTimings.Stage;
+import com.javayh.yolov.config.YoloConfig;
+import com.javayh.yolov.model.Priority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 推理调度器
+ * 位于模型会话之前：实时视频帧、交互式请求、批量任务分别排队，空出推理名额时按平滑加权轮询选择下一个通道，
+ * 批量任务再多也只占自己权重对应的份额。实时帧排队超过截止时间即已过时，直接丢弃而不再推理。
+ * 未启用时直接在调用线程中执行。与检测流水线同时启用时，名额在移交推理阶段之前获得，
+ * 推理阶段的线程数不少于调度并发数，排队与优先级只发生在调度器中
+ * @author haiji
+ */
+@Slf4j
+@Service
+public class InferenceScheduler {
+
+    /**
+     * 需要推理的调用
+     */
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws OrtException;
+    }
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<Priority, ArrayDeque<Ticket>> queues = new EnumMap<>(Priority.class);
+
+    /**
+     * 平滑加权轮询的当前权重
+     */
+    private final Map<Priority, Integer> credits = new EnumMap<>(Priority.class);
+
+    private final Map<Priority, Timer> waitTimers = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> expiredCounters = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> rejectedCounters = new EnumMap<>(Priority.class);
+
+    /**
+     * 正在推理的请求数，受 queues 的锁保护
+     */
+    private int running;
+
+    @PostConstruct
+    public void init() {
+        for (Priority priority : Priority.values()) {
+            String lane = priority.name().toLowerCase();
+            ArrayDeque<Ticket> queue = new ArrayDeque<>();
+            queues.put(priority, queue);
+            credits.put(priority, 0);
+            waitTimers.put(priority, Timer.builder("yolo.scheduler.wait")
+                    .tag("lane", lane)
+                    .description("获得推理名额前的排队时间")
+                    .register(meterRegistry));
+            expiredCounters.put(priority, meterRegistry.counter("yolo.scheduler.dropped", "lane", lane, "reason", "deadline"));
+            rejectedCounters.put(priority, meterRegistry.counter("yolo.scheduler.dropped", "lane", lane, "reason", "queue_full"));
+            Gauge.builder("yolo.scheduler.queue.size", this, s -> s.queueSize(priority))
+                    .tag("lane", lane)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 按优先级排队获得推理名额后在调用线程中执行
+     * @param priority 优先级通道
+     * @param call 推理调用
+     * @return 调用结果
+     * @throws OrtException 如果 ONNX 推理失败
+     * @throws RejectedExecutionException 实时或交互通道已满，或实时帧超过截止时间被丢弃
+     */
+    public <T> T run(Priority priority, Call<T> call) throws OrtException {
+        Permit permit = admit(priority);
+        try {
+            return call.call();
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * 按优先级排队获得推理名额，推理在其他线程中执行时使用（检测流水线在移交推理阶段之前获得名额）
+     * @param priority 优先级通道
+     * @return 名额，推理结束后在任意线程中释放；未启用时为不占名额的空实现
+     * @throws RejectedExecutionException 实时或交互通道已满，或实时帧超过截止时间被丢弃
+     */
+    public Permit admit(Priority priority) {
+        if (!yoloConfig.isSchedulerEnabled()) {
+            return Permit.NONE;
+        }
+        long start = System.nanoTime();
+        acquire(priority, start);
+        waitTimers.get(priority).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        StageTimings.record(Stage.WAIT, start);
+        return new Permit(this);
+    }
+
+    /**
+     * 一个推理名额，重复释放只生效一次
+     */
+    public static final class Permit {
+
+        private static final Permit NONE = new Permit(null);
+
+        private final InferenceScheduler scheduler;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(InferenceScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        public void release() {
+            if (scheduler != null && released.compareAndSet(false, true)) {
+                scheduler.release();
+            }
+        }
+    }
+
+    private void acquire(Priority priority, long start) {
+        Ticket ticket;
+        synchronized (queues) {
+            if (running < concurrency() && queues.values().stream().allMatch(ArrayDeque::isEmpty)) {
+                running++;
+                return;
+            }
+            ArrayDeque<Ticket> queue = queues.get(priority);
+            // 批量任务由固定数量的工作线程提交，排队数不超过其并行度，只阻塞不拒绝，避免图像因排队被记为失败
+            if (priority != Priority.BULK && queue.size() >= yoloConfig.getSchedulerQueueCapacity()) {
+                rejectedCounters.get(priority).increment();
+                throw new RejectedExecutionException("Inference queue is full for " + priority + " requests");
+            }
+            ticket = priority == Priority.REALTIME
+                    ? new Ticket(true, start + TimeUnit.MILLISECONDS.toNanos(yoloConfig.getSchedulerRealtimeDeadlineMs()))
+                    : new Ticket(false, 0);
+            queue.add(ticket);
+        }
+        try {
+            boolean granted = true;
+            if (ticket.hasDeadline) {
+                granted = ticket.latch.await(ticket.deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } else {
+                ticket.latch.await();
+            }
+            if (!granted) {
+                // 截止时间已到：仍在队列中则丢弃；已被调度则照常执行
+                synchronized (queues) {
+                    if (queues.get(priority).remove(ticket)) {
+                        ticket.expired = true;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synchronized (queues) {
+                if (queues.get(priority).remove(ticket)) {
+                    throw new RejectedExecutionException("Interrupted while waiting for inference");
+                }
+            }
+            // 中断前已被调度，名额由调用方随后释放
+        }
+        if (ticket.expired) {
+            expiredCounters.get(priority).increment();
+            log.debug("实时帧排队超过 {} ms，已丢弃", yoloConfig.getSchedulerRealtimeDeadlineMs());
+            throw new RejectedExecutionException("Frame dropped: not started within "
+                    + yoloConfig.getSchedulerRealtimeDeadlineMs() + " ms");
+        }
+    }
+
+    private void release() {
+        synchronized (queues) {
+            running--;
+            dispatch();
+        }
+    }
+
+    /**
+     * 有空闲名额时按平滑加权轮询从非空通道中取出请求；调用方持有锁
+     */
+    private void dispatch() {
+        long now = System.nanoTime();
+        while (running < concurrency()) {
+            // 先丢弃已过时的实时帧，避免为过时的帧占用名额
+            Iterator<Ticket> it = queues.get(Priority.REALTIME).iterator();
+            while (it.hasNext()) {
+                Ticket ticket = it.next();
+                if (ticket.hasDeadline && ticket.deadline - now <= 0) {
+                    it.remove();
+                    ticket.expired = true;
+                    ticket.latch.countDown();
+                }
+            }
+            Priority selected = null;
+            int total = 0;
+            for (Priority priority : Priority.values()) {
+                if (queues.get(priority).isEmpty()) {
+                    continue;
+                }
+                int credit = credits.get(priority) + weight(priority);
+                credits.put(priority, credit);
+                total += weight(priority);
+                if (selected == null || credit > credits.get(selected)) {
+                    selected = priority;
+                }
+            }
+            if (selected == null) {
+                return;
+            }
+            credits.put(selected, credits.get(selected) - total);
+            running++;
+            queues.get(selected).poll().latch.countDown();
+        }
+    }
+
+    private int concurrency() {
+        return Math.max(1, yoloConfig.getSchedulerConcurrency());
+    }
+
+    private int weight(Priority priority) {
+        int weight = switch (priority) {
+            case REALTIME -> yoloConfig.getSchedulerRealtimeWeight();
+            case INTERACTIVE -> yoloConfig.getSchedulerInteractiveWeight();
+            case BULK -> yoloConfig.getSchedulerBulkWeight();
+        };
+        return Math.max(1, weight);
+    }
+
+    private int queueSize(Priority priority) {
+        synchronized (queues) {
+            return queues.get(priority).size();
+        }
+    }
+
+    /**
+     * 各通道的排队、等待时间与丢弃数
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", yoloConfig.isSchedulerEnabled());
+        stats.put("concurrency", concurrency());
+        synchronized (queues) {
+            stats.put("running", running);
+        }
+        Map<String, Object> lanes = new LinkedHashMap<>();
+        for (Priority priority : Priority.values()) {
+            Map<String, Object> lane = new LinkedHashMap<>();
+            Timer timer = waitTimers.get(priority);
+            lane.put("weight", weight(priority));
+            lane.put("queued", queueSize(priority));
+            lane.put("admitted", timer.count());
+            lane.put("meanWaitMillis", timer.mean(TimeUnit.MILLISECONDS));
+            lane.put("maxWaitMillis", timer.max(TimeUnit.MILLISECONDS));
+            lane.put("expired", (long) expiredCounters.get(priority).count());
+            lane.put("rejected", (long) rejectedCounters.get(priority).count());
+            lanes.put(priority.name().toLowerCase(), lane);
+        }
+        stats.put("lanes", lanes);
+        return stats;
+    }
+
+    private static final class Ticket {
+        private final boolean hasDeadline;
+        /**
+         * 截止时间（System.nanoTime）
+         */
+        private final long deadline;
+        private final CountDownLatch latch = new CountDownLatch(1);
+        /**
+         * 已过时被丢弃，在 latch 释放或移出队列后读取
+         */
+        private volatile boolean expired;
+
+        Ticket(boolean hasDeadline, long deadline) {
+            this.hasDeadline = hasDeadline;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,797 @@
+package com.javayh.yolov.service;
+
+import ai.onnxruntime.OrtException;
+import com.javayh.yolov.config.NativeScope;
+import com.javayh.yolov.config.StageTimings;
+import com.javayh.yolov.config.StageTimings.Stage;
+import com.javayh.yolov.config.YoloConfig;
+import com.javayh.yolov.engine.InferenceEngine;
+import com.javayh.yolov.model.AnchorLayout;
+import com.javayh.yolov.model.Detection;
+import com.javayh.yolov.model.DetectionFilter;
+import com.javayh.yolov.model.Letterbox;
+import com.javayh.yolov.model.LoadedModel;
+import com.javayh.yolov.model.ODResult;
+import com.javayh.yolov.model.OutputFormat;
+import com.javayh.yolov.model.PreparedInput;
+import com.javayh.yolov.model.RegionOfInterest;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 推理服务类
+ * 负责预处理、执行模型推理、解析输出和 NMS，不涉及模型选择与结果绘制
+ * @author haiji
+ */
+@Slf4j
+@Service
+public class InferenceService {
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    /**
+     * 感兴趣区域裁剪时向外扩展的比例，避免中心点在区域内但超出区域边界的目标被截断
+     */
+    private static final float ROI_CROP_MARGIN = 0.25f;
+
+    /**
+     * uint8 输入缓冲区，按线程复用，推理结束后张量关闭即可再次写入
+     */
+    private static final ThreadLocal<ByteBuffer> INPUT_BUFFER = new ThreadLocal<>();
+
+    /**
+     * 流水线使用的 uint8 输入缓冲区池，缓冲区在预处理线程写入、推理线程读取，推理结束后归还
+     */
+    private final ConcurrentLinkedQueue<ByteBuffer> preparedBuffers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 检测单张 BGR 图像，返回原图坐标系下经过 NMS 的检测结果
+     * @param img BGR 图像，不会被修改
+     * @param model 已占用的模型
+     * @param inputSize 请求的输入尺寸，可为空
+     * @return 检测结果列表
+     * @throws OrtException 如果 ONNX 推理失败
+     */
+    public List<Detection> detect(Mat img, LoadedModel model, Integer inputSize) throws OrtException {
+        return detect(img, model, inputSize, DetectionFilter.NONE);
+    }
+
+    /**
+     * 按过滤条件检测单张 BGR 图像
+     * 感兴趣区域较小时先裁剪再 letterbox，区域内的目标以更高分辨率进入模型
+     * @param img BGR 图像，不会被修改
+     * @param model 已占用的模型
+     * @param inputSize 请求的输入尺寸，可为空
+     * @param filter 类别与区域过滤条件
+     * @return 检测结果列表
+     * @throws OrtException 如果 ONNX 推理失败
+     */
+    public List<Detection> detect(Mat img, LoadedModel model, Integer inputSize, DetectionFilter filter) throws OrtException {
+        Rect crop = cropRect(img, filter.getRoi());
+        try (NativeScope scope = NativeScope.open()) {
+            Mat source = crop == null ? img : scope.add(img.submat(crop));
+            // 2-4. Letterbox 预处理（动态输入模型按最小矩形填充）并推理
+            Letterbox letterbox = createLetterbox(model, inputSize);
+            float[][][] raw = infer(model, List.of(source), new Letterbox[]{letterbox});
+
+            // 5. 解析输出并执行 NMS
+            float offsetX = crop == null ? 0 : crop.x;
+            float offsetY = crop == null ? 0 : crop.y;
+            List<Detection> detections = decode(raw, 0, model, letterbox, offsetX, offsetY, filter);
+            return postprocess(model, detections);
+        }
+    }
+
+    /**
+     * 预处理单张图像并打包为模型输入，与 {@link #run(PreparedInput)}、
+     * {@link #complete(LoadedModel, PreparedInput, float[][][])} 组合后等价于 {@link #detect(Mat, LoadedModel, Integer, DetectionFilter)}，
+     * 三步可以在不同线程中执行
+     * @param img BGR 图像，不会被修改
+     * @param model 已占用的模型
+     * @param inputSize 请求的输入尺寸，可为空
+     * @param filter 类别与区域过滤条件
+     * @return 请求独占的模型输入
+     */
+    public PreparedInput prepare(Mat img, LoadedModel model, Integer inputSize, DetectionFilter filter) {
+        Rect crop = cropRect(img, filter.getRoi());
+        float offsetX = crop == null ? 0 : crop.x;
+        float offsetY = crop == null ? 0 : crop.y;
+        Letterbox letterbox = createLetterbox(model, inputSize);
+        InferenceEngine engine = model.getEngine();
+        try (NativeScope scope = NativeScope.open()) {
+            Mat source = crop == null ? img : scope.add(img.submat(crop));
+            if (engine.isUint8Input()) {
+                Size size = letterbox.outputSize(source.rows(), source.cols());
+                int w = (int) size.width;
+                int h = (int) size.height;
+                ByteBuffer buffer = preparedBuffer(w * h * 3);
+                Mat dst = scope.add(new Mat(h, w, CvType.CV_8UC3, buffer));
+                long start = System.nanoTime();
+                letterbox.letterbox(source, dst);
+                StageTimings.record(Stage.LETTERBOX, start);
+                if (!engine.isBgrInput()) {
+                    start = System.nanoTime();
+                    Imgproc.cvtColor(dst, dst, Imgproc.COLOR_BGR2RGB);
+                    StageTimings.record(Stage.PACK, start);
+                }
+                return new PreparedInput(engine, letterbox, filter, offsetX, offsetY,
+                        new long[]{1, h, w, 3}, buffer, null);
+            }
+            long start = System.nanoTime();
+            Mat image = scope.add(letterbox(source, letterbox));
+            StageTimings.record(Stage.LETTERBOX, start);
+            start = System.nanoTime();
+            float[] pixels = new float[3 * image.cols() * image.rows()];
+            toChw(image, pixels, 0);
+            StageTimings.record(Stage.PACK, start);
+            return new PreparedInput(engine, letterbox, filter, offsetX, offsetY,
+                    new long[]{1, 3, image.rows(), image.cols()}, null, pixels);
+        }
+    }
+
+    /**
+     * 用预处理时选定的引擎推理已打包的输入，uint8 缓冲区在推理结束后归还
+     * @param input 预处理结果，模型需在推理结束前保持占用
+     * @return 模型第一个输出
+     * @throws OrtException 如果 ONNX 推理失败
+     */
+    public float[][][] run(PreparedInput input) throws OrtException {
+        if (!input.isUint8()) {
+            return run(input.getEngine(), input.getPixels(), input.getShape());
+        }
+        long[] shape = input.getShape();
+        ByteBuffer buffer = input.getBuffer();
+        try {
+            return runUint8(input.getEngine(), buffer.slice(0, (int) (shape[1] * shape[2] * shape[3])), shape);
+        } finally {
+            preparedBuffers.offer(buffer);
+        }
+    }
+
+    /**
+     * 解析推理输出并执行 NMS
+     * @param model 已占用的模型
+     * @param input 预处理结果
+     * @param raw 模型输出
+     * @return 原图坐标系下的检测结果
+     */
+    public List<Detection> complete(LoadedModel model, PreparedInput input, float[][][] raw) {
+        return postprocess(model, decode(raw, 0, model, input.getLetterbox(), input.getOffsetX(), input.getOffsetY(),
+                input.getFilter()));
+    }
+
+    /**
+     * 从池中取出容量足够的缓冲区；池中缓冲区数量受流水线中在途请求数限制
+     */
+    private ByteBuffer preparedBuffer(int size) {
+        ByteBuffer buffer = preparedBuffers.poll();
+        return buffer != null && buffer.capacity() >= size ? buffer : ByteBuffer.allocateDirect(size);
+    }
+
+    /**
+     * 检测客户端已按模型输入尺寸 letterbox 好的帧，跳过解码、颜色转换（通道顺序与模型一致时）和 letterbox
+     * @param frame 3 通道 uint8 帧，不会被修改
+     * @param bgr 帧的通道顺序是否为 BGR
+     * @param model 已占用的模型
+     * @param letterbox 客户端使用的缩放与填充参数
+     * @param filter 类别与区域过滤条件
+     * @return 原图坐标系下的检测结果
+     * @throws OrtException 如果 ONNX 推理失败
+     */
+    public List<Detection> detectPrepared(Mat frame, boolean bgr, LoadedModel model, Letterbox letterbox,
+                                          DetectionFilter filter) throws OrtException {
+        int w = frame.cols();
+        int h = frame.rows();
+        if (model.isDynamicInput() ? w % yoloConfig.getStride() != 0 || h % yoloConfig.getStride() != 0
+                : w != model.getFixedInputWidth() || h != model.getFixedInputHeight()) {
+            int[] size = preparedFrameSize(model);
+            throw new IllegalArgumentException("Frame size " + w + "x" + h + " does not fit model input, expected "
+                    + size[0] + "x" + size[1]);
+        }
+        float[][][] raw;
+        InferenceEngine engine = model.getEngine();
+        try (NativeScope scope = NativeScope.open()) {
+            if (engine.isUint8Input()) {
+                ByteBuffer buffer = inputBuffer(w * h * 3);
+                Mat dst = scope.add(new Mat(h, w, CvType.CV_8UC3, buffer));
+                long start = System.nanoTime();
+                if (bgr == engine.isBgrInput()) {
+                    frame.copyTo(dst);
+                } else {
+                    Imgproc.cvtColor(frame, dst, Imgproc.COLOR_BGR2RGB);
+                }
+                StageTimings.record(Stage.PACK, start);
+                raw = runUint8(engine, buffer.slice(0, w * h * 3), new long[]{1, h, w, 3});
+            } else {
+                long start = System.nanoTime();
+                Mat rgb = frame;
+                if (bgr) {
+                    rgb = scope.mat();
+                    Imgproc.cvtColor(frame, rgb, Imgproc.COLOR_BGR2RGB);
+                }
+                float[] pixels = new float[3 * w * h];
+                toChw(rgb.isContinuous() ? rgb : scope.add(rgb.clone()), pixels, 0);
+                StageTimings.record(Stage.PACK, start);
+                raw = run(engine, pixels, new long[]{1, 3, h, w});
+            }
+        }
+        return postprocess(model, decode(raw, 0, model, letterbox, 0, 0, filter));
+    }
+
+    /**
+     * 客户端预先 letterbox 时应使用的帧尺寸：固定输入模型为导出尺寸，动态输入模型为配置的输入尺寸
+     * @param model 模型
+     * @return [宽, 高]
+     */
+    public int[] preparedFrameSize(LoadedModel model) {
+        if (!model.isDynamicInput()) {
+            return new int[]{model.getFixedInputWidth(), model.getFixedInputHeight()};
+        }
+        return new int[]{alignToStride(yoloConfig.getInputWidth()), alignToStride(yoloConfig.getInputHeight())};
+    }
+
+    /**
+     * 感兴趣区域（外扩后）占整图比例不超过配置值时返回裁剪区域，否则返回 null
+     */
+    private Rect cropRect(Mat img, RegionOfInterest roi) {
+        if (roi == null) {
+            return null;
+        }
+        float marginX = (roi.getMaxX() - roi.getMinX()) * ROI_CROP_MARGIN;
+        float marginY = (roi.getMaxY() - roi.getMinY()) * ROI_CROP_MARGIN;
+        int x0 = Math.max(0, (int) Math.floor(roi.getMinX() - marginX));
+        int y0 = Math.max(0, (int) Math.floor(roi.getMinY() - marginY));
+        int x1 = Math.min(img.cols(), (int) Math.ceil(roi.getMaxX() + marginX));
+        int y1 = Math.min(img.rows(), (int) Math.ceil(roi.getMaxY() + marginY));
+        if (x1 - x0 < yoloConfig.getStride() || y1 - y0 < yoloConfig.getStride()) {
+            return null;
+        }
+        double ratio = (double) (x1 - x0) * (y1 - y0) / ((double) img.cols() * img.rows());
+        return ratio > yoloConfig.getRoiCropMaxArea() ? null : new Rect(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    /**
+     * 批量检测多张 BGR 图像，所有图像缩放到同一输入尺寸后打包为一个 [N, C, H, W] 张量推理
+     * @param images BGR 图像列表，不会被修改
+     * @param model 已占用的模型，批次维需为动态
+     * @return 与输入顺序一致的检测结果
+     * @throws OrtException 如果 ONNX 推理失败
+     */
+    public List<List<Detection>> detectBatch(List<Mat> images, LoadedModel model) throws OrtException {
+        if (images.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Letterbox[] letterboxes = new Letterbox[images.size()];
+        for (int i = 0; i < images.size(); i++) {
+            letterboxes[i] = createBatchLetterbox(model, null);
+        }
+        float[][][] raw = infer(model, images, letterboxes);
+
+        List<List<Detection>> results = new ArrayList<>(images.size());
+        for (int i = 0; i < images.size(); i++) {
+            results.add(postprocess(model, decode(raw, i, model, letterboxes[i], 0, 0)));
+        }
+        return results;
+    }
+
+    /**
+     * 预处理一批图像并推理，批量推理时所有 letterbox 的输出尺寸需一致
+     * 融合了预处理的模型（uint8 输入）直接把 letterbox 结果写入输入张量的直接缓冲区，
+     * 不做颜色转换、归一化和转置；其他模型转为归一化的 CHW float
+     * @param model 已占用的模型
+     * @param sources BGR 图像，不会被修改
+     * @param letterboxes 每张图像的 letterbox，推理后记录缩放与填充参数
+     * @return 模型第一个输出
+     * @throws OrtException 如果 ONNX 推理失败
+     */
+    public float[][][] infer(LoadedModel model, List<Mat> sources, Letterbox[] letterboxes) throws OrtException {
+        return infer(model.getEngine(), sources, letterboxes);
+    }
+
+    /**
+     * 使用指定的推理引擎预处理并推理一批图像
+     * @param engine 推理引擎
+     * @param sources BGR 图像，不会被修改
+     * @param letterboxes 每张图像的 letterbox
+     * @return 模型第一个输出
+     * @throws OrtException 如果 ONNX 推理失败
+     */
+    public float[][][] infer(InferenceEngine engine, List<Mat> sources, Letterbox[] letterboxes) throws OrtException {
+        if (engine.isUint8Input()) {
+            return inferUint8(engine, sources, letterboxes);
+        }
+        float[] pixels = null;
+        int w = 0;
+        int h = 0;
+        for (int i = 0; i < sources.size(); i++) {
+            try (NativeScope scope = NativeScope.open()) {
+                long start = System.nanoTime();
+                Mat image = scope.add(letterbox(sources.get(i), letterboxes[i]));
+                StageTimings.record(Stage.LETTERBOX, start);
+                start = System.nanoTime();
+                if (pixels == null) {
+                    w = image.cols();
+                    h = image.rows();
+                    pixels = new float[sources.size() * 3 * w * h];
+                }
+                toChw(image, pixels, i * 3 * w * h);
+                StageTimings.record(Stage.PACK, start);
+            }
+        }
+        return run(engine, pixels, new long[]{sources.size(), 3, h, w});
+    }
+
+    private float[][][] inferUint8(InferenceEngine engine, List<Mat> sources, Letterbox[] letterboxes) throws OrtException {
+        Mat first = sources.get(0);
+        Size size = letterboxes[0].outputSize(first.rows(), first.cols());
+        int w = (int) size.width;
+        int h = (int) size.height;
+        int frame = w * h * 3;
+        ByteBuffer buffer = inputBuffer(frame * sources.size());
+        try (NativeScope scope = NativeScope.open()) {
+            for (int i = 0; i < sources.size(); i++) {
+                // Mat 包装直接缓冲区中该图像的区域，letterbox 的填充结果直接写入张量内存
+                Mat dst = scope.add(new Mat(h, w, CvType.CV_8UC3, buffer.slice(i * frame, frame)));
+                long start = System.nanoTime();
+                letterboxes[i].letterbox(sources.get(i), dst);
+                StageTimings.record(Stage.LETTERBOX, start);
+                if (dst.rows() != h || dst.cols() != w) {
+                    throw new IllegalStateException("Batch inputs must have the same letterbox size");
+                }
+                if (!engine.isBgrInput()) {
+                    start = System.nanoTime();
+                    Imgproc.cvtColor(dst, dst, Imgproc.COLOR_BGR2RGB);
+                    StageTimings.record(Stage.PACK, start);
+                }
+            }
+            return runUint8(engine, buffer.slice(0, frame * sources.size()), new long[]{sources.size(), h, w, 3});
+        }
+    }
+
+    private static float[][][] run(InferenceEngine engine, float[] pixels, long[] shape) throws OrtException {
+        long start = System.nanoTime();
+        try {
+            return engine.run(pixels, shape);
+        } finally {
+            StageTimings.record(Stage.RUN, start);
+        }
+    }
+
+    private static float[][][] runUint8(InferenceEngine engine, ByteBuffer pixels, long[] shape) throws OrtException {
+        long start = System.nanoTime();
+        try {
+            return engine.runUint8(pixels, shape);
+        } finally {
+            StageTimings.record(Stage.RUN, start);
+        }
+    }
+
+    /**
+     * 按线程复用的 uint8 输入缓冲区，容量不足时重新分配
+     */
+    private static ByteBuffer inputBuffer(int size) {
+        ByteBuffer buffer = INPUT_BUFFER.get();
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(size);
+            INPUT_BUFFER.set(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * 对一张图像的解析结果执行 NMS；端到端模型已在图内完成 NMS，只按上限截断
+     * @param model 模型
+     * @param detections 解析结果
+     * @return 最终检测结果
+     */
+    public List<Detection> postprocess(LoadedModel model, List<Detection> detections) {
+        long start = System.nanoTime();
+        try {
+            if (model.getOutputFormat().isEndToEnd()) {
+                return limit(detections);
+            }
+            return nms(detections, yoloConfig.getNmsThreshold());
+        } finally {
+            StageTimings.record(Stage.NMS, start);
+        }
+    }
+
+    /**
+     * 根据模型输入形状与请求参数创建 Letterbox
+     * 固定输入模型只能使用导出时的尺寸；动态输入模型使用请求尺寸或配置尺寸，并按 stride 取整
+     * @param model 模型
+     * @param requestedSize 请求的输入尺寸（长边），可为空
+     * @return Letterbox
+     */
+    public Letterbox createLetterbox(LoadedModel model, Integer requestedSize) {
+        if (!model.isDynamicInput()) {
+            if (requestedSize != null && requestedSize != model.getFixedInputWidth()) {
+                log.debug("模型 {} 为固定输入 {}x{}，忽略请求尺寸 {}", model.getName(),
+                        model.getFixedInputWidth(), model.getFixedInputHeight(), requestedSize);
+            }
+            return new Letterbox(model.getFixedInputWidth(), model.getFixedInputHeight());
+        }
+        int w = alignToStride(requestedSize != null ? requestedSize : yoloConfig.getInputWidth());
+        int h = alignToStride(requestedSize != null ? requestedSize : yoloConfig.getInputHeight());
+        return new Letterbox(w, h, yoloConfig.isLetterboxAuto(), yoloConfig.getStride());
+    }
+
+    /**
+     * 批量推理使用的 Letterbox，不使用最小矩形模式，保证同一批次内输入尺寸一致
+     * @param model 模型
+     * @param requestedSize 请求的输入尺寸（长边），可为空
+     * @return Letterbox
+     */
+    public Letterbox createBatchLetterbox(LoadedModel model, Integer requestedSize) {
+        if (!model.isDynamicInput()) {
+            return new Letterbox(model.getFixedInputWidth(), model.getFixedInputHeight());
+        }
+        int w = alignToStride(requestedSize != null ? requestedSize : yoloConfig.getInputWidth());
+        int h = alignToStride(requestedSize != null ? requestedSize : yoloConfig.getInputHeight());
+        return new Letterbox(w, h);
+    }
+
+    /**
+     * 向上取整到 stride 的整数倍
+     * @param size 尺寸
+     * @return 对齐后的尺寸
+     */
+    public int alignToStride(int size) {
+        int stride = yoloConfig.getStride();
+        return Math.max(stride, (size + stride - 1) / stride * stride);
+    }
+
+    /**
+     * 转为 RGB 并 letterbox，返回新的 Mat
+     * @param img BGR 图像，不会被修改
+     * @param letterbox 记录缩放与填充参数
+     * @return 预处理后的 RGB 图像
+     */
+    public Mat letterbox(Mat img, Letterbox letterbox) {
+        Mat image = new Mat();
+        Imgproc.cvtColor(img, image, Imgproc.COLOR_BGR2RGB);
+        return letterbox.letterbox(image);
+    }
+
+    /**
+     * 将 HWC uint8 图像一次性读出并转换为归一化的 CHW float 数组
+     * @param image 连续存储的 HWC 图像
+     * @param dst 目标数组
+     * @param offset 写入起始位置（批量输入时为 batchIndex * C * H * W）
+     */
+    public static void toChw(Mat image, float[] dst, int offset) {
+        int channels = image.channels();
+        int plane = image.rows() * image.cols();
+        byte[] data = new byte[plane * channels];
+        image.get(0, 0, data);
+        final float scale = 1.0f / 255.0f;
+        for (int p = 0, i = 0; p < plane; p++) {
+            for (int k = 0; k < channels; k++) {
+                dst[offset + k * plane + p] = (data[i++] & 0xFF) * scale;
+            }
+        }
+    }
+
+    /**
+     * 使用模型当前的推理引擎执行推理
+     * @param model 已占用的模型
+     * @param pixels CHW 输入数据
+     * @param shape 输入形状 [N, C, H, W]
+     * @return 模型第一个输出 [N, dim1, dim2]；图内 NMS 模型的 [num_dets, 7] 输出包装为 [1, num_dets, 7]
+     * @throws OrtException 如果 ONNX 推理失败
+     */
+    public float[][][] run(LoadedModel model, float[] pixels, long[] shape) throws OrtException {
+        return run(model.getEngine(), pixels, shape);
+    }
+
+    /**
+     * 解析一张图像的输出，阈值过滤后映射回原图坐标
+     * @param raw 模型输出
+     * @param batch 批次下标
+     * @param model 模型
+     * @param letterbox 该图像的 letterbox 参数
+     * @param offsetX 该图像在原图中的 x 偏移（切片推理时使用）
+     * @param offsetY 该图像在原图中的 y 偏移（切片推理时使用）
+     * @return 未经 NMS 的检测结果
+     */
+    public List<Detection> decode(float[][][] raw, int batch, LoadedModel model, Letterbox letterbox,
+                                  float offsetX, float offsetY) {
+        return decode(raw, batch, model, letterbox, offsetX, offsetY, DetectionFilter.NONE);
+    }
+
+    /**
+     * 按过滤条件解析一张图像的输出
+     * 只对白名单中的类别打分，中心点在区域外的锚点在阈值过滤时跳过，不参与 Top-K
+     * @param raw 模型输出
+     * @param batch 批次下标
+     * @param model 模型
+     * @param letterbox 该图像的 letterbox 参数
+     * @param offsetX 该图像在原图中的 x 偏移
+     * @param offsetY 该图像在原图中的 y 偏移
+     * @param filter 类别与区域过滤条件
+     * @return 未经 NMS 的检测结果
+     */
+    public List<Detection> decode(float[][][] raw, int batch, LoadedModel model, Letterbox letterbox,
+                                  float offsetX, float offsetY, DetectionFilter filter) {
+        long start = System.nanoTime();
+        try {
+            return decodeOutput(raw, batch, model, letterbox, offsetX, offsetY, filter);
+        } finally {
+            StageTimings.record(Stage.DECODE_OUTPUT, start);
+        }
+    }
+
+    private List<Detection> decodeOutput(float[][][] raw, int batch, LoadedModel model, Letterbox letterbox,
+                                         float offsetX, float offsetY, DetectionFilter filter) {
+        if (model.getOutputFormat().isEndToEnd()) {
+            return decodeEndToEnd(raw, batch, model, letterbox, offsetX, offsetY, filter);
+        }
+        float[][] out = raw[batch];
+        int dim1 = out.length;
+        int dim2 = out[0].length;
+        int numClasses = model.getNumClasses();
+        int[] classIds = filter.resolveClassIds(numClasses);
+        float threshold = filter.confidenceThreshold(yoloConfig.getConfidenceThreshold());
+
+        // 每个锚点在请求类别中的最高分与类别
+        AnchorLayout layout = model.resolveAnchorLayout(dim1, dim2);
+        if (layout == null) {
+            throw new RuntimeException("Unsupported output shape: [" + raw.length + ", " + dim1 + ", " + dim2
+                    + "] for " + numClasses + " classes");
+        }
+        boolean transposed = layout == AnchorLayout.CHANNELS_FIRST;
+        int anchors = transposed ? dim2 : dim1;
+        float[] maxConf = new float[anchors];
+        int[] clsIds = new int[anchors];
+        if (transposed) {
+            // YOLOv8/v11 格式: [1, 84, 8400]，锚点数随输入尺寸变化
+            // 不转置，按类别通道逐行扫描：每个通道是连续内存，未请求的类别通道完全不读取
+            for (int c : classIds) {
+                float[] plane = out[4 + c];
+                for (int i = 0; i < anchors; i++) {
+                    if (plane[i] > maxConf[i]) {
+                        maxConf[i] = plane[i];
+                        clsIds[i] = c;
+                    }
+                }
+            }
+        } else {
+            // YOLOv7 格式: [1, 25200, 84]
+            for (int i = 0; i < anchors; i++) {
+                float[] det = out[i];
+                for (int c : classIds) {
+                    if (det[4 + c] > maxConf[i]) {
+                        maxConf[i] = det[4 + c];
+                        clsIds[i] = c;
+                    }
+                }
+            }
+        }
+
+        // 阈值与区域过滤（按类别覆盖），候选写回 maxConf/candidates 的前 count 个位置；
+        // 中心点在感兴趣区域外的锚点在参与 Top-K 之前被跳过，不会挤占区域内候选的名额
+        boolean roi = filter.hasRegion();
+        int[] candidates = new int[anchors];
+        int count = 0;
+        for (int i = 0; i < anchors; i++) {
+            float conf = maxConf[i];
+            if (conf <= 0 || conf < filter.classThreshold(model, clsIds[i], threshold)) {
+                continue;
+            }
+            if (roi && !filter.accepts(
+                    unletterboxX(transposed ? out[0][i] : out[i][0], letterbox, offsetX),
+                    unletterboxY(transposed ? out[1][i] : out[i][1], letterbox, offsetY))) {
+                continue;
+            }
+            maxConf[count] = conf;
+            candidates[count++] = i;
+        }
+
+        // 候选过多时部分选择置信度最高的 Top-K，不做完整排序
+        int maxCandidates = yoloConfig.getMaxCandidates();
+        if (maxCandidates > 0 && count > maxCandidates) {
+            selectTopK(maxConf, candidates, count, maxCandidates);
+            count = maxCandidates;
+        }
+
+        //===== 收集所有检测结果 =====
+        List<Detection> detectionsList = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            int i = candidates[k];
+            detectionsList.add(transposed
+                    ? toDetection(out[0][i], out[1][i], out[2][i], out[3][i], maxConf[k], clsIds[i],
+                    model, letterbox, offsetX, offsetY)
+                    : toDetection(out[i][0], out[i][1], out[i][2], out[i][3], maxConf[k], clsIds[i],
+                    model, letterbox, offsetX, offsetY));
+        }
+        return detectionsList;
+    }
+
+    /**
+     * 解析端到端模型的输出：框已是 letterbox 坐标系下的左上/右下角且已完成 NMS，
+     * 不做转置、类别扫描和 Top-K，只按阈值与过滤条件筛选后映射回原图
+     * [num_dets, 7] 格式的一次输出包含整个批次，按 batchId 取出当前图像的行
+     */
+    private List<Detection> decodeEndToEnd(float[][][] raw, int batch, LoadedModel model, Letterbox letterbox,
+                                           float offsetX, float offsetY, DetectionFilter filter) {
+        float threshold = filter.confidenceThreshold(yoloConfig.getConfidenceThreshold());
+        List<Detection> detections = new ArrayList<>();
+        if (model.getOutputFormat() == OutputFormat.NMS_ROWS) {
+            for (float[] row : raw[0]) {
+                ODResult r = new ODResult(row);
+                if (r.getBatchId() != batch) {
+                    continue;
+                }
+                Detection det = toEndToEndDetection(r.getX0(), r.getY0(), r.getX1(), r.getY1(), r.getConfidence(),
+                        r.getClsId(), threshold, model, letterbox, offsetX, offsetY, filter);
+                if (det != null) {
+                    detections.add(det);
+                }
+            }
+        } else {
+            for (float[] row : raw[batch]) {
+                Detection det = toEndToEndDetection(row[0], row[1], row[2], row[3], row[4], (int) row[5],
+                        threshold, model, letterbox, offsetX, offsetY, filter);
+                if (det != null) {
+                    detections.add(det);
+                }
+            }
+        }
+        return detections;
+    }
+
+    private static Detection toEndToEndDetection(float x0, float y0, float x1, float y1, float conf, int clsId,
+                                                 float threshold, LoadedModel model, Letterbox letterbox,
+                                                 float offsetX, float offsetY, DetectionFilter filter) {
+        // 固定数量输出（如 YOLOv10 的 300 行）不足时以低分行补齐
+        if (conf < filter.classThreshold(model, clsId, threshold) || !filter.acceptsClass(clsId)) {
+            return null;
+        }
+        float x = (x0 + x1) * 0.5f;
+        float y = (y0 + y1) * 0.5f;
+        if (!filter.accepts(unletterboxX(x, letterbox, offsetX), unletterboxY(y, letterbox, offsetY))) {
+            return null;
+        }
+        return toDetection(x, y, x1 - x0, y1 - y0, conf, clsId, model, letterbox, offsetX, offsetY);
+    }
+
+    /**
+     * 快速选择：重排 scores/indices 的前 n 个元素，使前 k 个为分数最高的 k 个（内部无序），平均 O(n)
+     * @param scores 分数
+     * @param indices 与分数一一对应的下标
+     * @param n 有效元素数
+     * @param k 选择数量
+     */
+    static void selectTopK(float[] scores, int[] indices, int n, int k) {
+        int lo = 0;
+        int hi = n - 1;
+        while (lo < hi) {
+            float pivot = scores[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (scores[i] > pivot) {
+                    i++;
+                }
+                while (scores[j] < pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    float ts = scores[i];
+                    scores[i] = scores[j];
+                    scores[j] = ts;
+                    int ti = indices[i];
+                    indices[i] = indices[j];
+                    indices[j] = ti;
+                    i++;
+                    j--;
+                }
+            }
+            if (k - 1 <= j) {
+                hi = j;
+            } else if (k - 1 >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 按配置的每图上限截断检测结果，保留置信度最高的部分
+     * @param detections 检测结果
+     * @return 截断后的检测结果
+     */
+    public List<Detection> limit(List<Detection> detections) {
+        int max = yoloConfig.getMaxDetections();
+        if (max <= 0 || detections.size() <= max) {
+            return detections;
+        }
+        int n = detections.size();
+        float[] scores = new float[n];
+        int[] indices = new int[n];
+        for (int i = 0; i < n; i++) {
+            scores[i] = detections.get(i).getConfidence();
+            indices[i] = i;
+        }
+        selectTopK(scores, indices, n, max);
+        List<Detection> result = new ArrayList<>(max);
+        for (int i = 0; i < max; i++) {
+            result.add(detections.get(indices[i]));
+        }
+        return result;
+    }
+
+    /**
+     * 将中心点宽高格式的框反 Letterbox 到原图坐标
+     */
+    private static Detection toDetection(float x, float y, float w, float h, float conf, int clsId,
+                                         LoadedModel model, Letterbox letterbox, float offsetX, float offsetY) {
+        double ratio = letterbox.getRatio();
+        float cx = unletterboxX(x, letterbox, offsetX);
+        float cy = unletterboxY(y, letterbox, offsetY);
+        float halfW = (float) (w * 0.5 / ratio);
+        float halfH = (float) (h * 0.5 / ratio);
+        return new Detection(cx - halfW, cy - halfH, cx + halfW, cy + halfH, conf, clsId, model.getClassName(clsId));
+    }
+
+    private static float unletterboxX(float x, Letterbox letterbox, float offsetX) {
+        return (float) ((x - letterbox.getDw()) / letterbox.getRatio()) + offsetX;
+    }
+
+    private static float unletterboxY(float y, Letterbox letterbox, float offsetY) {
+        return (float) ((y - letterbox.getDh()) / letterbox.getRatio()) + offsetY;
+    }
+
+    /**
+     * 非极大值抑制（NMS）
+     * @param detections 检测结果列表
+     * @param iouThreshold IoU 阈值
+     * @return 保留的检测结果列表
+     */
+    public List<Detection> nms(List<Detection> detections, float iouThreshold) {
+        // 按类别分组
+        Map<Integer, List<Detection>> grouped = new HashMap<>();
+        for (Detection d : detections) {
+            grouped.computeIfAbsent(d.getClassId(), k -> new ArrayList<>()).add(d);
+        }
+
+        List<Detection> result = new ArrayList<>();
+        for (List<Detection> group : grouped.values()) {
+            // 按置信度降序排序
+            group.sort((a, b) -> Float.compare(b.getConfidence(), a.getConfidence()));
+
+            boolean[] suppressed = new boolean[group.size()];
+            for (int i = 0; i < group.size(); i++) {
+                if (suppressed[i]) {
+                    continue;
+                }
+                result.add(group.get(i));
+                for (int j = i + 1; j < group.size(); j++) {
+                    if (suppressed[j]) {
+                        continue;
+                    }
+                    float iou = group.get(i).iou(group.get(j));
+                    if (iou > iouThreshold) {
+                        suppressed[j] = true;
+                    }
+                }
+            }
+        }
+        return limit(result);
+    }
+}
@@ -0,0 +1,377 @@
+package com.javayh.yolov.service;
+
+import com.javayh.yolov.config.OnnxInputFusion;
+import com.javayh.yolov.config.YoloConfig;
+import com.javayh.yolov.model.ModelMetadata;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.ResourcePatternUtils;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 模型目录
+ * 启动时扫描一次模型目录、开发资源目录与 classpath，之后通过 WatchService 增量更新，列表请求直接读内存。
+ * 每个模型的哈希与输入输出形状由后台线程读取模型文件后补齐，不创建推理会话
+ * @author haiji
+ */
+@Slf4j
+@Service
+public class ModelCatalog {
+
+    /**
+     * 开发环境下的模型资源目录
+     */
+    private static final String RESOURCE_MODELS_DIR = "src/main/resources/models";
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    /**
+     * 模型元数据，按文件名
+     */
+    private final Map<String, ModelMetadata> models = new ConcurrentHashMap<>();
+
+    /**
+     * 类别文件的类别数，按文件名
+     */
+    private final Map<String, Integer> classesFiles = new ConcurrentHashMap<>();
+
+    /**
+     * 最近一次测得的单次检测耗时（毫秒），按模型名称
+     */
+    private final Map<String, Double> latencies = new ConcurrentHashMap<>();
+
+    private final ExecutorService inspector = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "yolo-model-inspect");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * 目录版本，模型或类别文件增删改时递增，供缓存了目录查询结果的调用方判断是否需要重新查询
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private WatchService watchService;
+
+    @PostConstruct
+    public void init() {
+        long start = System.currentTimeMillis();
+        scan();
+        watch();
+        log.info("模型目录已建立: {} 个模型，{} 个类别文件，耗时 {} ms", models.size(), classesFiles.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 可用的模型文件名
+     * @return 按名称排序的模型文件名
+     */
+    public List<String> getModelNames() {
+        return models.keySet().stream().sorted().toList();
+    }
+
+    /**
+     * 可用的类别文件名
+     * @return 按名称排序的类别文件名
+     */
+    public List<String> getClassesFileNames() {
+        return classesFiles.keySet().stream().sorted().toList();
+    }
+
+    /**
+     * 全部模型的元数据，类别文件与最近耗时在读取时按当前状态填充
+     * @return 按名称排序的元数据副本
+     */
+    public List<ModelMetadata> getModels() {
+        return models.values().stream()
+                .sorted(Comparator.comparing(ModelMetadata::getName))
+                .map(this::snapshot)
+                .toList();
+    }
+
+    /**
+     * 单个模型的元数据
+     * @param name 模型文件名
+     * @return 元数据副本，不存在时返回 null
+     */
+    public ModelMetadata get(String name) {
+        ModelMetadata metadata = models.get(name);
+        return metadata == null ? null : snapshot(metadata);
+    }
+
+    /**
+     * 目录版本，模型或类别文件发生变化后递增
+     * @return 当前版本
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * 记录模型最近一次测得的单次检测耗时
+     * @param name 模型文件名
+     * @param millis 耗时（毫秒）
+     */
+    public void recordLatency(String name, double millis) {
+        latencies.put(name, millis);
+    }
+
+    /**
+     * 目录中的实例由后台线程补齐哈希与形状，并发请求各自填充副本，不修改共享实例
+     */
+    private ModelMetadata snapshot(ModelMetadata source) {
+        ModelMetadata metadata = new ModelMetadata();
+        metadata.setName(source.getName());
+        metadata.setLocation(source.getLocation());
+        metadata.setSizeBytes(source.getSizeBytes());
+        metadata.setLastModified(source.getLastModified());
+        metadata.setSha256(source.getSha256());
+        metadata.setInputShape(source.getInputShape());
+        metadata.setOutputShape(source.getOutputShape());
+        metadata.setError(source.getError());
+        String classesFile = classesFileFor(metadata.getName());
+        metadata.setClassesFile(classesFile);
+        // 类别文件可能在匹配后被删除
+        metadata.setNumClasses(classesFile == null ? 0 : classesFiles.getOrDefault(classesFile, 0));
+        metadata.setLastLatencyMillis(latencies.get(metadata.getName()));
+        return metadata;
+    }
+
+    /**
+     * 与 {@link ModelRegistry} 相同的命名约定：mask_dete_yolo11.onnx 依次匹配 mask_dete_yolo11.names、mask_dete.names、mask.names
+     */
+    private String classesFileFor(String modelName) {
+        String base = modelName.substring(0, modelName.length() - ".onnx".length());
+        while (true) {
+            if (classesFiles.containsKey(base + ".names")) {
+                return base + ".names";
+            }
+            int idx = base.lastIndexOf('_');
+            if (idx <= 0) {
+                return null;
+            }
+            base = base.substring(0, idx);
+        }
+    }
+
+    /**
+     * 全量扫描：classpath 只在此时枚举一次（fat jar 中需要遍历全部条目）
+     * 已在目录中的名称也重新定位，监听事件溢出期间被删除的文件因此能被移除
+     */
+    private void scan() {
+        Set<String> names = new HashSet<>(models.keySet());
+        names.addAll(classesFiles.keySet());
+        try {
+            for (Resource resource : ResourcePatternUtils.getResourcePatternResolver(resourceLoader)
+                    .getResources("classpath*:models/*")) {
+                if (resource.getFilename() != null) {
+                    names.add(resource.getFilename());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("扫描 classpath 模型失败: {}", e.getMessage());
+        }
+        for (Path dir : dirs()) {
+            if (!Files.isDirectory(dir)) {
+                continue;
+            }
+            try (Stream<Path> files = Files.list(dir)) {
+                files.forEach(path -> names.add(path.getFileName().toString()));
+            } catch (IOException e) {
+                log.warn("扫描模型目录失败 {}: {}", dir, e.getMessage());
+            }
+        }
+        names.forEach(this::refresh);
+    }
+
+    private List<Path> dirs() {
+        return List.of(Paths.get(yoloConfig.getModelsDir()), Paths.get(RESOURCE_MODELS_DIR));
+    }
+
+    /**
+     * 按优先级（模型目录、开发资源目录、classpath）重新定位文件并更新目录
+     */
+    private void refresh(String name) {
+        String lower = name.toLowerCase();
+        if (!lower.endsWith(".onnx") && !lower.endsWith(".names")) {
+            return;
+        }
+        Source source = locate(name);
+        if (source == null) {
+            if (models.remove(name) != null | classesFiles.remove(name) != null) {
+                generation.incrementAndGet();
+                log.info("模型目录移除: {}", name);
+            }
+            return;
+        }
+        if (lower.endsWith(".names")) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(source.open(), StandardCharsets.UTF_8))) {
+                classesFiles.put(name, (int) reader.lines().count());
+                generation.incrementAndGet();
+            } catch (IOException e) {
+                log.warn("读取类别文件失败 {}: {}", name, e.getMessage());
+            }
+            return;
+        }
+        ModelMetadata current = models.get(name);
+        if (current != null && current.getLocation().equals(source.location())
+                && current.getSizeBytes() == source.size() && current.getLastModified() == source.lastModified()) {
+            return;
+        }
+        ModelMetadata metadata = new ModelMetadata();
+        metadata.setName(name);
+        metadata.setLocation(source.location());
+        metadata.setSizeBytes(source.size());
+        metadata.setLastModified(source.lastModified());
+        models.put(name, metadata);
+        generation.incrementAndGet();
+        if (current != null) {
+            log.info("模型目录更新: {}", name);
+        }
+        inspector.execute(() -> inspect(metadata, source));
+    }
+
+    /**
+     * 读取模型计算 SHA-256 并解析输入输出形状
+     */
+    private void inspect(ModelMetadata metadata, Source source) {
+        try (InputStream in = source.open()) {
+            byte[] bytes = in.readAllBytes();
+            metadata.setSha256(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes)));
+            long[][] shapes = OnnxInputFusion.ioShapes(bytes);
+            metadata.setInputShape(shapes[0]);
+            metadata.setOutputShape(shapes[1]);
+        } catch (IOException | IllegalArgumentException | NoSuchAlgorithmException e) {
+            metadata.setError(e.getMessage());
+            log.warn("读取模型元数据失败 {}: {}", metadata.getName(), e.getMessage());
+        }
+    }
+
+    private Source locate(String name) {
+        try {
+            for (Path dir : dirs()) {
+                Path path = dir.resolve(name);
+                if (Files.isRegularFile(path)) {
+                    return new Source(path.toAbsolutePath().toString(), Files.size(path),
+                            Files.getLastModifiedTime(path).toMillis(), path, null);
+                }
+            }
+            Resource resource = resourceLoader.getResource("classpath:models/" + name);
+            if (resource.exists()) {
+                return new Source("classpath:models/" + name, resource.contentLength(), 0, null, resource);
+            }
+        } catch (IOException e) {
+            log.warn("定位模型文件失败 {}: {}", name, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 监听文件系统目录；classpath 中的模型随应用发布，不需要监听
+     */
+    private void watch() {
+        try {
+            // 模型目录不存在时创建，之后放入的模型也能被发现
+            Files.createDirectories(Paths.get(yoloConfig.getModelsDir()));
+            watchService = FileSystems.getDefault().newWatchService();
+            int registered = 0;
+            for (Path dir : dirs()) {
+                if (Files.isDirectory(dir)) {
+                    dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    registered++;
+                }
+            }
+            if (registered == 0) {
+                watchService.close();
+                return;
+            }
+        } catch (IOException e) {
+            log.warn("无法监听模型目录，目录只在启动时扫描: {}", e.getMessage());
+            return;
+        }
+        Thread watcher = new Thread(this::pollEvents, "yolo-model-catalog");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void pollEvents() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Set<String> changed = new HashSet<>();
+                boolean overflow = false;
+                // 大模型文件分多次写入会产生一串 MODIFY 事件，等待事件平静后再刷新
+                do {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                        } else if (event.context() instanceof Path path) {
+                            changed.add(path.getFileName().toString());
+                        }
+                    }
+                    key.reset();
+                } while ((key = watchService.poll(yoloConfig.getCatalogDebounceMillis(), TimeUnit.MILLISECONDS)) != null);
+                if (overflow) {
+                    scan();
+                } else {
+                    changed.forEach(this::refresh);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 应用关闭
+        }
+    }
+
+    private record Source(String location, long size, long lastModified, Path path, Resource resource) {
+
+        InputStream open() throws IOException {
+            return path != null ? Files.newInputStream(path) : resource.getInputStream();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        inspector.shutdownNow();
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
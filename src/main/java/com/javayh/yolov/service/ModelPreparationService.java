@@ -0,0 +1,152 @@
+package com.javayh.yolov.service;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.javayh.yolov.config.OnnxInputFusion;
+import com.javayh.yolov.config.YoloConfig;
+import com.javayh.yolov.model.SessionProfile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 模型准备服务
+ * 加载模型前把预处理融合进计算图（见 {@link OnnxInputFusion}），改写结果按模型内容哈希缓存，同一模型只改写一次
+ * @author haiji
+ */
+@Slf4j
+@Service
+public class ModelPreparationService {
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    @Autowired
+    private SessionTuningService sessionTuningService;
+
+    /**
+     * classpath 模型解压后的文件，按资源位置缓存，同一模型在进程内只解压一次
+     */
+    private final Map<String, File> extracted = new ConcurrentHashMap<>();
+
+    private Path extractDir;
+
+    /**
+     * 创建推理会话，优先使用融合预处理后的模型，改写或加载失败时回退到原模型
+     * 本机已有该模型的会话配置（见 {@link SessionTuningService}）时按配置创建
+     * @param env ONNX Runtime 环境
+     * @param modelFile 原模型文件
+     * @return 推理会话
+     * @throws OrtException 原模型加载失败
+     */
+    public OrtSession createSession(OrtEnvironment env, File modelFile) throws OrtException {
+        File prepared = prepare(modelFile);
+        if (!prepared.equals(modelFile)) {
+            try {
+                return createTunedSession(env, prepared);
+            } catch (OrtException e) {
+                log.warn("融合预处理的模型加载失败，使用原模型: {}", e.getMessage());
+                prepared.delete();
+            }
+        }
+        return createTunedSession(env, modelFile);
+    }
+
+    private OrtSession createTunedSession(OrtEnvironment env, File modelFile) throws OrtException {
+        SessionProfile profile = sessionTuningService.findProfile(modelFile);
+        if (profile == null) {
+            return env.createSession(modelFile.getAbsolutePath());
+        }
+        try (OrtSession.SessionOptions options = sessionTuningService.toOptions(profile)) {
+            log.info("使用会话配置 {}: {} 线程/{}/{}", modelFile.getName(), profile.getIntraOpThreads(),
+                    profile.getExecutionMode(), profile.getOptLevel());
+            return env.createSession(modelFile.getAbsolutePath(), options);
+        }
+    }
+
+    /**
+     * 返回融合预处理后的模型文件，未启用或模型不支持时返回原文件
+     * @param modelFile 原模型文件
+     * @return 可直接加载的模型文件
+     */
+    public File prepare(File modelFile) {
+        if (!yoloConfig.isFusePreprocess()) {
+            return modelFile;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            byte[] model = Files.readAllBytes(modelFile.toPath());
+            boolean swap = yoloConfig.isFuseChannelSwap();
+            String name = modelFile.getName().replaceFirst("(?i)\\.onnx$", "");
+            // 只按内容哈希缓存：暂存目录中验证过的模型复制到 yolo.model-path 后文件名不同，仍命中同一份融合结果
+            Path cached = Paths.get(yoloConfig.getFusedModelDir())
+                    .resolve(hash(model) + (swap ? ".bgr" : ".rgb") + ".onnx");
+            if (Files.isRegularFile(cached)) {
+                return cached.toFile();
+            }
+            byte[] fused = OnnxInputFusion.fuse(model, swap);
+            Files.createDirectories(cached.getParent());
+            Path temp = Files.createTempFile(cached.getParent(), name, ".tmp");
+            Files.write(temp, fused);
+            Files.move(temp, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("已融合预处理: {} -> {}，耗时 {} ms", modelFile.getName(), cached, System.currentTimeMillis() - start);
+            return cached.toFile();
+        } catch (IllegalArgumentException e) {
+            log.info("模型 {} 不支持融合预处理: {}", modelFile.getName(), e.getMessage());
+        } catch (IOException e) {
+            log.warn("融合预处理失败，使用原模型 {}: {}", modelFile.getName(), e.getMessage());
+        }
+        return modelFile;
+    }
+
+    /**
+     * 把 classpath 中的模型解压为文件（ONNX Runtime 只能从文件或字节加载），保留原文件名，进程退出时删除
+     * @param resource classpath 模型资源
+     * @return 解压后的文件，同一资源多次调用返回同一文件
+     * @throws IOException 读取或写入失败
+     */
+    public synchronized File extract(Resource resource) throws IOException {
+        String key = resource.getDescription();
+        File cached = extracted.get(key);
+        if (cached != null && cached.isFile()) {
+            return cached;
+        }
+        if (extractDir == null) {
+            extractDir = Files.createTempDirectory("yolo-models");
+            // deleteOnExit 按登记的逆序执行，目录先登记，里面的文件删除后目录才删除
+            extractDir.toFile().deleteOnExit();
+        }
+        String fileName = resource.getFilename() == null ? "model.onnx" : resource.getFilename();
+        File file = extractDir.resolve(fileName).toFile();
+        try (InputStream in = resource.getInputStream()) {
+            Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        file.deleteOnExit();
+        extracted.put(key, file);
+        return file;
+    }
+
+    static String hash(byte[] model) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(model);
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.javayh.yolov.service;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.javayh.yolov.config.YoloConfig;
+import com.javayh.yolov.model.ClassNames;
+import com.javayh.yolov.model.Detection;
+import com.javayh.yolov.model.DetectionFilter;
+import com.javayh.yolov.model.Letterbox;
+import com.javayh.yolov.model.LoadedModel;
+import com.javayh.yolov.model.ModelQualification;
+import com.javayh.yolov.model.ModelQualification.Stage;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 上传模型验证服务
+ * 上传的模型先写入暂存目录，后台依次完成：加载并校验输出与类别文件一致、样例推理、预处理融合、延迟测量，
+ * 延迟在预算之内才复制到 yolo.model-path，并以验证时创建的会话激活；任一步失败时当前模型保持不变
+ * @author haiji
+ */
+@Slf4j
+@Service
+public class ModelQualificationService {
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    @Autowired
+    private YoloService yoloService;
+
+    @Autowired
+    private InferenceService inferenceService;
+
+    @Autowired
+    private ModelPreparationService modelPreparationService;
+
+    private final Map<String, ModelQualification> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 单线程执行，同一时间只验证一个模型，激活顺序与上传顺序一致
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "yolo-model-qualify");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * 暂存上传的模型与类别文件并提交验证
+     * @param modelFile ONNX 模型文件
+     * @param classesFile 类别名称文件
+     * @return 验证任务
+     * @throws IOException 暂存失败
+     */
+    public ModelQualification submit(MultipartFile modelFile, MultipartFile classesFile) throws IOException {
+        String id = UUID.randomUUID().toString().substring(0, 8);
+        Path dir = Paths.get(yoloConfig.getModelStagingDir(), id);
+        Files.createDirectories(dir);
+        try (InputStream model = modelFile.getInputStream(); InputStream classes = classesFile.getInputStream()) {
+            Files.copy(model, dir.resolve("model.onnx"));
+            Files.copy(classes, dir.resolve("classes.names"));
+        }
+        ModelQualification job = new ModelQualification(id, modelFile.getOriginalFilename(),
+                classesFile.getOriginalFilename());
+        jobs.put(id, job);
+        log.info("模型已暂存，等待验证: {} ({})", job.getModelName(), id);
+        executor.execute(() -> qualify(job, dir));
+        return job;
+    }
+
+    public ModelQualification getJob(String id) {
+        return jobs.get(id);
+    }
+
+    public Collection<ModelQualification> getJobs() {
+        return jobs.values();
+    }
+
+    private void qualify(ModelQualification job, Path dir) {
+        File modelFile = dir.resolve("model.onnx").toFile();
+        Path classesFile = dir.resolve("classes.names");
+        LoadedModel candidate = null;
+        Mat sample = new Mat(720, 1280, CvType.CV_8UC3);
+        try {
+            Core.randu(sample, 0, 255);
+
+            // 1. 原模型能加载，输出与类别文件一致，样例推理可以解析
+            job.setStage(Stage.VALIDATING);
+            List<String> classes = ClassNames.parse(Files.readAllLines(classesFile, StandardCharsets.UTF_8));
+            if (classes.isEmpty()) {
+                reject(job, "Classes file is empty");
+                return;
+            }
+            job.setNumClasses(classes.size());
+            OrtSession plainSession;
+            try {
+                plainSession = yoloService.getEnv().createSession(modelFile.getAbsolutePath());
+            } catch (OrtException e) {
+                reject(job, "Model failed to load: " + e.getMessage());
+                return;
+            }
+            try (OrtSession session = plainSession) {
+                LoadedModel plain = new LoadedModel(job.getModelName(), session, classes, modelFile.length());
+                job.setOutputFormat(plain.getOutputFormat());
+                job.addCheck("loaded");
+                String mismatch;
+                try {
+                    mismatch = checkOutput(plain, sample);
+                } catch (OrtException | RuntimeException e) {
+                    mismatch = "Sample inference failed: " + e.getMessage();
+                }
+                if (mismatch != null) {
+                    reject(job, mismatch);
+                    return;
+                }
+                job.addCheck("output matches " + classes.size() + " classes");
+            }
+
+            // 2. 融合预处理并按本机会话配置创建最终使用的会话
+            job.setStage(Stage.OPTIMIZING);
+            long start = System.currentTimeMillis();
+            OrtSession session = modelPreparationService.createSession(yoloService.getEnv(), modelFile);
+            job.setLoadMillis(System.currentTimeMillis() - start);
+            candidate = new LoadedModel(job.getModelName(), session, classes, LoadedModel.estimateNativeBytes(modelFile));
+            job.addCheck(candidate.isUint8Input() ? "preprocessing fused" : "preprocessing not fused");
+
+            // 3. 与线上相同的检测流程测量延迟
+            job.setStage(Stage.PROFILING);
+            for (int i = 0; i < 3; i++) {
+                inferenceService.detect(sample, candidate, null, DetectionFilter.NONE);
+            }
+            int iterations = Math.max(1, yoloConfig.getQualificationIterations());
+            long[] times = new long[iterations];
+            for (int i = 0; i < iterations; i++) {
+                long t = System.nanoTime();
+                inferenceService.detect(sample, candidate, null, DetectionFilter.NONE);
+                times[i] = System.nanoTime() - t;
+            }
+            Arrays.sort(times);
+            job.setP50Millis(times[iterations / 2] / 1e6);
+            job.setP95Millis(times[Math.min(iterations - 1, (int) Math.ceil(iterations * 0.95) - 1)] / 1e6);
+            job.addCheck(String.format("latency p50 %.1f ms, p95 %.1f ms", job.getP50Millis(), job.getP95Millis()));
+            String overBudget = checkBudget(job);
+            if (overBudget != null) {
+                reject(job, overBudget);
+                return;
+            }
+
+            // 4. 验证通过：原子替换当前模型文件，测量过的会话直接交给默认模型使用
+            job.setStage(Stage.ACTIVATING);
+            replace(modelFile.toPath(), Paths.get(yoloConfig.getModelPath()));
+            replace(classesFile, Paths.get(yoloConfig.getClassesPath()));
+            candidate = null;
+            yoloService.activate(session);
+            job.finish(Stage.ACTIVE, null);
+            log.info("模型验证通过并已激活: {} ({})，p50 {} ms", job.getModelName(), job.getId(),
+                    String.format("%.1f", job.getP50Millis()));
+        } catch (Exception e) {
+            log.error("模型验证失败: {} ({}): {}", job.getModelName(), job.getId(), e.getMessage(), e);
+            job.finish(Stage.FAILED, e.getMessage());
+        } finally {
+            sample.release();
+            if (candidate != null) {
+                candidate.retire();
+            }
+            try {
+                FileSystemUtils.deleteRecursively(dir);
+            } catch (IOException e) {
+                log.warn("清理暂存目录失败 {}: {}", dir, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 锚点输出应有一维为 4 + nc，与推理时解析输出的规则一致，见 {@link LoadedModel#resolveAnchorLayout}；
+     * 端到端输出只校验能否解析
+     */
+    private String checkOutput(LoadedModel model, Mat sample) throws OrtException {
+        Letterbox letterbox = inferenceService.createLetterbox(model, null);
+        float[][][] raw = inferenceService.infer(model, List.of(sample), new Letterbox[]{letterbox});
+        if (!model.getOutputFormat().isEndToEnd()) {
+            int dim1 = raw[0].length;
+            int dim2 = raw[0][0].length;
+            if (model.resolveAnchorLayout(dim1, dim2) == null) {
+                return "Model output [" + dim1 + ", " + dim2 + "] does not match " + model.getNumClasses() + " classes";
+            }
+        }
+        List<Detection> detections = inferenceService.postprocess(model,
+                inferenceService.decode(raw, 0, model, letterbox, 0, 0));
+        log.debug("样例推理输出 {} 个检测框", detections.size());
+        return null;
+    }
+
+    private String checkBudget(ModelQualification job) {
+        double p50Budget = yoloConfig.getQualificationP50BudgetMs();
+        double p95Budget = yoloConfig.getQualificationP95BudgetMs();
+        if (p50Budget > 0 && job.getP50Millis() > p50Budget) {
+            return String.format("p50 %.1f ms exceeds budget %.1f ms", job.getP50Millis(), p50Budget);
+        }
+        if (p95Budget > 0 && job.getP95Millis() > p95Budget) {
+            return String.format("p95 %.1f ms exceeds budget %.1f ms", job.getP95Millis(), p95Budget);
+        }
+        return null;
+    }
+
+    private static void reject(ModelQualification job, String reason) {
+        log.warn("模型未通过验证: {} ({}): {}", job.getModelName(), job.getId(), reason);
+        job.finish(Stage.REJECTED, reason);
+    }
+
+    /**
+     * 先复制到目标目录下的临时文件再原子改名，读取方不会看到写了一半的文件
+     */
+    private static void replace(Path source, Path target) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, target.getFileName().toString(), ".tmp");
+        Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
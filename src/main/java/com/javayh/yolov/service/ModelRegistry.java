@@ -0,0 +1,281 @@
+package com.javayh.yolov.service;
+
+import ai.onnxruntime.OrtSession;
+import com.javayh.yolov.config.YoloConfig;
+import com.javayh.yolov.model.ClassNames;
+import com.javayh.yolov.model.ClassThresholds;
+import com.javayh.yolov.model.LoadedModel;
+import com.javayh.yolov.model.ModelLoadedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 模型注册表
+ * 按名称在内存中同时持有多个模型，首次使用时懒加载，超出原生内存预算时按 LRU 淘汰空闲模型
+ * @author haiji
+ */
+@Slf4j
+@Service
+public class ModelRegistry {
+
+    /**
+     * 开发环境下的模型资源目录
+     */
+    private static final String RESOURCE_MODELS_DIR = "src/main/resources/models";
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    @Autowired
+    private YoloService yoloService;
+
+    @Autowired
+    private ModelPreparationService modelPreparationService;
+
+    @Autowired
+    private InferenceEngineSelector inferenceEngineSelector;
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 已加载模型，按访问顺序排列（最久未使用的在前）
+     */
+    private final LinkedHashMap<String, LoadedModel> models = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * 正在加载中的模型，避免同一模型被并发重复加载
+     */
+    private final Map<String, CompletableFuture<LoadedModel>> loading = new HashMap<>();
+
+    private long totalBytes;
+
+    /**
+     * 占用指定名称的模型，名称为空时使用默认模型；使用完毕后需调用 {@link LoadedModel#release()}
+     * @param name 模型文件名，可省略 .onnx 后缀
+     * @return 已占用的模型
+     */
+    public LoadedModel acquire(String name) {
+        if (name == null || name.isBlank()) {
+            return yoloService.acquireActiveModel();
+        }
+        String key = normalize(name);
+        LoadedModel active = yoloService.getActiveModel();
+        if (active != null && active.getName().equals(key)) {
+            return yoloService.acquireActiveModel();
+        }
+
+        for (;;) {
+            CompletableFuture<LoadedModel> future;
+            boolean owner = false;
+            synchronized (this) {
+                LoadedModel model = models.get(key);
+                if (model != null && model.tryAcquire()) {
+                    return model;
+                }
+                future = loading.get(key);
+                if (future == null) {
+                    future = new CompletableFuture<>();
+                    loading.put(key, future);
+                    owner = true;
+                }
+            }
+
+            if (!owner) {
+                // 等待其他线程加载完成后重新从注册表获取
+                future.join();
+                continue;
+            }
+
+            try {
+                LoadedModel model = load(key);
+                synchronized (this) {
+                    loading.remove(key);
+                    models.put(key, model);
+                    totalBytes += model.getNativeBytes();
+                    model.tryAcquire();
+                    evictIdle();
+                }
+                future.complete(model);
+                eventPublisher.publishEvent(new ModelLoadedEvent(this, key, false));
+                return model;
+            } catch (Exception e) {
+                synchronized (this) {
+                    loading.remove(key);
+                }
+                future.completeExceptionally(e);
+                throw e instanceof RuntimeException re ? re
+                        : new IllegalStateException("Failed to load model " + key + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 模型是否已在注册表中
+     * @param name 模型文件名
+     * @return 是否已加载
+     */
+    public synchronized boolean isLoaded(String name) {
+        return models.containsKey(normalize(name));
+    }
+
+    /**
+     * 卸载指定模型，进行中的请求结束后关闭会话
+     * @param name 模型文件名
+     * @return 是否存在该模型
+     */
+    public synchronized boolean unload(String name) {
+        LoadedModel model = models.remove(normalize(name));
+        if (model == null) {
+            return false;
+        }
+        totalBytes -= model.getNativeBytes();
+        model.retire();
+        return true;
+    }
+
+    /**
+     * 已加载模型的状态
+     * @return 模型状态列表
+     */
+    public synchronized List<Map<String, Object>> getLoadedModels() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (LoadedModel model : models.values()) {
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("name", model.getName());
+            info.put("classes", model.getNumClasses());
+            info.put("nativeBytes", model.getNativeBytes());
+            info.put("outputFormat", model.getOutputFormat());
+            info.put("engine", model.getEngine().getType());
+            info.put("inUse", model.getInUse());
+            info.put("lastUsed", model.getLastUsed());
+            list.add(info);
+        }
+        return list;
+    }
+
+    /**
+     * 超出内存预算时淘汰最久未使用且空闲的模型
+     */
+    private void evictIdle() {
+        long budget = yoloConfig.getModelMemoryBudgetMb() * 1024 * 1024;
+        Iterator<LoadedModel> it = models.values().iterator();
+        while (totalBytes > budget && it.hasNext()) {
+            LoadedModel model = it.next();
+            if (model.getInUse() > 0) {
+                continue;
+            }
+            it.remove();
+            totalBytes -= model.getNativeBytes();
+            model.retire();
+            log.info("内存预算不足，淘汰模型: {}", model.getName());
+        }
+        if (totalBytes > budget) {
+            log.warn("模型注册表超出内存预算: {} MB > {} MB", totalBytes >> 20, yoloConfig.getModelMemoryBudgetMb());
+        }
+    }
+
+    private LoadedModel load(String key) throws Exception {
+        long start = System.currentTimeMillis();
+        File modelFile = locate(key);
+        if (modelFile == null) {
+            throw new IllegalArgumentException("Model not found: " + key);
+        }
+        ClassList classes = loadClasses(key);
+        OrtSession session = modelPreparationService.createSession(yoloService.getEnv(), modelFile);
+        LoadedModel model = new LoadedModel(key, session, classes.names(), classes.thresholds(),
+                LoadedModel.estimateNativeBytes(modelFile));
+        log.info("模型已加载: {}，类别数 {}，耗时 {} ms", key, classes.names().size(), System.currentTimeMillis() - start);
+        inferenceEngineSelector.configure(model, modelFile);
+        return model;
+    }
+
+    /**
+     * 依次从模型目录、开发资源目录和 classpath 中查找模型文件
+     */
+    private File locate(String fileName) throws IOException {
+        for (Path dir : List.of(Paths.get(yoloConfig.getModelsDir()), Paths.get(RESOURCE_MODELS_DIR))) {
+            Path path = dir.resolve(fileName);
+            if (Files.isRegularFile(path)) {
+                return path.toFile();
+            }
+        }
+        Resource resource = resourceLoader.getResource("classpath:models/" + fileName);
+        if (!resource.exists()) {
+            return null;
+        }
+        return modelPreparationService.extract(resource);
+    }
+
+    /**
+     * 按命名约定查找类别文件：mask_dete_yolo11.onnx 依次尝试 mask_dete_yolo11.names、mask_dete.names、mask.names
+     * 同目录下同名的 .thresholds 文件作为按类别覆盖的置信度阈值
+     */
+    private ClassList loadClasses(String modelFileName) throws IOException {
+        String base = modelFileName.substring(0, modelFileName.length() - ".onnx".length());
+        while (true) {
+            String classesFile = base + ".names";
+            for (Path dir : List.of(Paths.get(yoloConfig.getModelsDir()), Paths.get(RESOURCE_MODELS_DIR))) {
+                Path path = dir.resolve(classesFile);
+                if (Files.isRegularFile(path)) {
+                    List<String> names = ClassNames.parse(Files.readAllLines(path, StandardCharsets.UTF_8));
+                    Path thresholds = dir.resolve(ClassThresholds.fileNameFor(classesFile));
+                    return new ClassList(names, Files.isRegularFile(thresholds)
+                            ? ClassThresholds.parse(Files.readAllLines(thresholds, StandardCharsets.UTF_8), names) : null);
+                }
+            }
+            Resource resource = resourceLoader.getResource("classpath:models/" + classesFile);
+            if (resource.exists()) {
+                List<String> names = ClassNames.parse(readLines(resource));
+                Resource thresholds = resourceLoader.getResource("classpath:models/" + ClassThresholds.fileNameFor(classesFile));
+                return new ClassList(names, thresholds.exists() ? ClassThresholds.parse(readLines(thresholds), names) : null);
+            }
+            int idx = base.lastIndexOf('_');
+            if (idx <= 0) {
+                throw new IllegalArgumentException("Classes file not found for model: " + modelFileName);
+            }
+            base = base.substring(0, idx);
+        }
+    }
+
+    private static List<String> readLines(Resource resource) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            return reader.lines().toList();
+        }
+    }
+
+    private record ClassList(List<String> names, float[] thresholds) {
+    }
+
+    private static String normalize(String name) {
+        String fileName = name.trim();
+        if (fileName.contains("/") || fileName.contains("\\") || fileName.contains("..")) {
+            throw new IllegalArgumentException("Invalid model name: " + name);
+        }
+        return fileName.toLowerCase().endsWith(".onnx") ? fileName : fileName + ".onnx";
+    }
+}
@@ -1,5 +1,6 @@
 package com.javayh.yolov.service;
 
+import com.javayh.yolov.model.ModelQualification;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -16,12 +17,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.List;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
-import java.util.stream.Collectors;
 
 /**
  * 模型管理服务类
@@ -33,6 +29,12 @@ public class ModelService {
     
     @Autowired
     private ResourceLoader resourceLoader;
+
+    @Autowired
+    private ModelCatalog modelCatalog;
+
+    @Autowired
+    private ModelQualificationService modelQualificationService;
     
     @Value("${yolo.model-path}")
     private String modelPath;
@@ -54,23 +56,34 @@ public class ModelService {
      * @throws IOException 文件操作异常
      */
     public String uploadModel(MultipartFile modelFile, MultipartFile classesFile) throws IOException {
+        try {
+            ModelQualification job = stageModel(modelFile, classesFile);
+            return "模型上传成功，正在后台验证，任务: " + job.getId();
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * 暂存上传的模型并提交后台验证，验证通过后自动替换当前模型
+     * @param modelFile ONNX模型文件
+     * @param classesFile 类别名称文件
+     * @return 验证任务
+     * @throws IOException 文件操作异常
+     * @throws IllegalArgumentException 文件格式错误
+     */
+    public ModelQualification stageModel(MultipartFile modelFile, MultipartFile classesFile) throws IOException {
         // 验证模型文件
         if (!isValidModelFile(modelFile)) {
-            return "模型文件格式错误，请上传有效的.onnx文件";
+            throw new IllegalArgumentException("模型文件格式错误，请上传有效的.onnx文件");
         }
         
         // 验证类别文件
         if (!isValidClassesFile(classesFile)) {
-            return "类别文件格式错误，请上传有效的.names文件";
+            throw new IllegalArgumentException("类别文件格式错误，请上传有效的.names文件");
         }
         
-        // 保存模型文件
-        saveFile(modelFile, modelPath);
-        
-        // 保存类别文件
-        saveFile(classesFile, classesPath);
-        
-        return "模型上传成功，请重启应用以加载新模型";
+        return modelQualificationService.submit(modelFile, classesFile);
     }
     
     /**
@@ -108,22 +121,6 @@ public class ModelService {
         return originalFilename != null && originalFilename.toLowerCase().endsWith(".names");
     }
     
-    /**
-     * 保存上传的文件
-     * @param file 上传的文件
-     * @param targetPath 目标路径
-     * @throws IOException 文件操作异常
-     */
-    private void saveFile(MultipartFile file, String targetPath) throws IOException {
-        Path path = Paths.get(targetPath);
-        
-        // 创建目录（如果不存在）
-        Files.createDirectories(path.getParent());
-        
-        // 保存文件
-        file.transferTo(path);
-    }
-    
     /**
      * 复制默认文件
      * @param defaultResourcePath 默认资源路径
@@ -169,39 +166,7 @@ public class ModelService {
      * @return ONNX模型文件列表
      */
     public List<String> getAvailableModels() {
-        List<String> models = new ArrayList<>();
-        try {
-            // 获取resources/models目录下的所有.onnx文件
-            Path modelsDir = Paths.get("src/main/resources/models");
-            
-            if (Files.exists(modelsDir) && Files.isDirectory(modelsDir)) {
-                Files.walk(modelsDir, 1)
-                    .filter(path -> Files.isRegularFile(path) && path.toString().toLowerCase().endsWith(".onnx"))
-                    .forEach(path -> models.add(path.getFileName().toString()));
-            } else {
-                // 如果在开发环境中找不到目录，尝试从jar包中读取
-                // 获取所有资源路径
-                java.io.InputStream is = getClass().getClassLoader().getResourceAsStream("models/");
-                if (is != null) {
-                    // 这个方法在jar包中可能不工作，所以我们使用备用方案
-                    JarFile jarFile = new JarFile(
-                            Paths.get(getClass().getProtectionDomain().getCodeSource().getLocation().toURI()).toFile());
-                    Enumeration<JarEntry> entries = jarFile.entries();
-                    while (entries.hasMoreElements()) {
-                        java.util.jar.JarEntry entry = entries.nextElement();
-                        if (entry.getName().startsWith("models/")
-                                && entry.getName().toLowerCase().endsWith(".onnx") && !entry.isDirectory()) {
-                            models.add(entry.getName().substring(entry.getName().lastIndexOf('/') + 1));
-                        }
-                    }
-                    jarFile.close();
-                }
-            }
-        } catch (Exception e) {
-            log.error("获取可用模型列表时出错: {}", e.getMessage(), e);
-        }
-        
-        return models;
+        return modelCatalog.getModelNames();
     }
     
     /**
@@ -209,35 +174,7 @@ public class ModelService {
      * @return 类别文件列表
      */
     public List<String> getAvailableClassesFiles() {
-        List<String> classesFiles = new ArrayList<>();
-        try {
-            // 获取resources/models目录下的所有.names文件
-            Path modelsDir = Paths.get("src/main/resources/models");
-            
-            if (Files.exists(modelsDir) && Files.isDirectory(modelsDir)) {
-                Files.walk(modelsDir, 1)
-                    .filter(path -> Files.isRegularFile(path) && path.toString().toLowerCase().endsWith(".names"))
-                    .forEach(path -> classesFiles.add(path.getFileName().toString()));
-            } else {
-                // 如果在开发环境中找不到目录，尝试从jar包中读取
-                // 获取所有资源路径
-                JarFile jarFile = new JarFile(
-                        Paths.get(getClass().getProtectionDomain().getCodeSource().getLocation().toURI()).toFile());
-                Enumeration<JarEntry> entries = jarFile.entries();
-                while (entries.hasMoreElements()) {
-                    JarEntry entry = entries.nextElement();
-                    if (entry.getName().startsWith("models/")
-                            && entry.getName().toLowerCase().endsWith(".names") && !entry.isDirectory()) {
-                        classesFiles.add(entry.getName().substring(entry.getName().lastIndexOf('/') + 1));
-                    }
-                }
-                jarFile.close();
-            }
-        } catch (Exception e) {
-            log.error("读取类别文件失败: {}", e.getMessage(), e);
-        }
-        
-        return classesFiles;
+        return modelCatalog.getClassesFileNames();
     }
     
     /**
@@ -293,7 +230,7 @@ public class ModelService {
                 
                 // 检查类别文件在jar包中是否存在
                 if (!classesExists) {
-                    JarEntry classesEntry = jarFile.getJarEntry("models/" + classesName);
+                    java.util.jar.JarEntry classesEntry = jarFile.getJarEntry("models/" + classesName);
                     if (classesEntry != null) {
                         try (InputStream classesInputStream = jarFile.getInputStream(classesEntry)) {
                             Files.copy(classesInputStream, targetClassesPath, StandardCopyOption.REPLACE_EXISTING);
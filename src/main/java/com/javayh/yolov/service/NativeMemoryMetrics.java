@@ -0,0 +1,70 @@
+package com.javayh.yolov.service;
+
+import com.javayh.yolov.config.NativeScope;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 原生内存指标
+ * 导出 {@link NativeScope} 统计的存活原生字节数与进程 RSS，用于发现堆外内存增长
+ * @author haiji
+ */
+@Slf4j
+@Service
+public class NativeMemoryMetrics {
+
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("yolo.native.live.bytes", NativeScope::getLiveBytes)
+                .description("请求作用域内存活的 Mat/张量字节数")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("yolo.native.peak.bytes", NativeScope::getPeakBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("yolo.native.scopes.open", NativeScope::getOpenScopes).register(meterRegistry);
+        FunctionCounter.builder("yolo.native.scopes.leaked", NativeScope.class, c -> NativeScope.getLeakedScopes())
+                .description("未关闭即被回收的作用域数")
+                .register(meterRegistry);
+        FunctionCounter.builder("yolo.native.allocated.bytes", NativeScope.class, c -> NativeScope.getAllocatedBytes())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("yolo.process.rss.bytes", NativeMemoryMetrics::readRssBytes)
+                .description("进程常驻内存（仅 Linux）")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 读取进程 RSS
+     * @return 常驻内存字节数，无法读取时返回 -1
+     */
+    public static long readRssBytes() {
+        try {
+            for (String line : Files.readAllLines(PROC_STATUS)) {
+                if (line.startsWith("VmRSS:")) {
+                    String kb = line.substring("VmRSS:".length()).replace("kB", "").trim();
+                    return Long.parseLong(kb) * 1024;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("读取 RSS 失败: {}", e.getMessage());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,103 @@
+package com.javayh.yolov.service;
+
+import com.javayh.yolov.config.StageTimings;
+import com.javayh.yolov.config.YoloConfig;
+import com.javayh.yolov.model.RequestProfile;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 检测请求耗时记录
+ * 超过慢请求阈值的请求总是记录，其余请求按比例抽样作为基线；记录保存在固定容量的环形缓冲区中，
+ * 只保留最近的请求，查询时按总耗时从高到低排列
+ * @author haiji
+ */
+@Slf4j
+@Service
+public class RequestProfiler {
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    private RequestProfile[] buffer;
+
+    /**
+     * 下一个写入位置，受 buffer 的锁保护
+     */
+    private int next;
+
+    @PostConstruct
+    public void init() {
+        buffer = new RequestProfile[Math.max(1, yoloConfig.getProfileBufferSize())];
+    }
+
+    /**
+     * 请求结束时调用，按阈值与抽样比例决定是否记录
+     * @param method 请求方法
+     * @param path 请求路径
+     * @param status 响应状态码
+     * @param timings 请求的阶段耗时
+     */
+    public void record(String method, String path, int status, StageTimings timings) {
+        double total = timings.getTotalMillis();
+        boolean slow = total >= yoloConfig.getProfileSlowThresholdMs();
+        if (!slow && ThreadLocalRandom.current().nextDouble() >= yoloConfig.getProfileSampleRate()) {
+            return;
+        }
+        RequestProfile profile = new RequestProfile();
+        profile.setTimestamp(System.currentTimeMillis());
+        profile.setMethod(method);
+        profile.setPath(path);
+        profile.setStatus(status);
+        profile.setModel(timings.getModel());
+        profile.setTotalMillis(total);
+        profile.setStages(timings.getStageMillis());
+        profile.setSlow(slow);
+        if (slow) {
+            log.debug("慢请求 {} {} {} ms: {}", method, path, String.format("%.1f", total), timings.toServerTiming());
+        }
+        synchronized (buffer) {
+            buffer[next] = profile;
+            next = (next + 1) % buffer.length;
+        }
+    }
+
+    /**
+     * 最近记录中总耗时最高的请求
+     * @param limit 返回数量上限
+     * @param minMillis 总耗时下限（毫秒）
+     * @return 按总耗时从高到低排列
+     */
+    public List<RequestProfile> getSlowest(int limit, double minMillis) {
+        List<RequestProfile> profiles = new ArrayList<>(buffer.length);
+        synchronized (buffer) {
+            for (RequestProfile profile : buffer) {
+                if (profile != null && profile.getTotalMillis() >= minMillis) {
+                    profiles.add(profile);
+                }
+            }
+        }
+        return profiles.stream()
+                .sorted(Comparator.comparingDouble(RequestProfile::getTotalMillis).reversed())
+                .limit(Math.max(0, limit))
+                .toList();
+    }
+
+    /**
+     * 清空记录
+     */
+    public void clear() {
+        synchronized (buffer) {
+            Arrays.fill(buffer, null);
+            next = 0;
+        }
+    }
+}
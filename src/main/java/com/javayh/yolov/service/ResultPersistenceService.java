@@ -0,0 +1,300 @@
+package com.javayh.yolov.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javayh.yolov.config.YoloConfig;
+import com.javayh.yolov.model.Detection;
+import com.javayh.yolov.model.ImageFormat;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 检测结果持久化服务
+ * 请求线程只把已编码的标注图像和检测元数据放入有界队列，由后台 I/O 线程批量写盘，
+ * 队列满时丢弃并计数，不阻塞检测请求；目录按容量与时间做保留清理
+ * @author haiji
+ */
+@Slf4j
+@Service
+public class ResultPersistenceService {
+
+    /**
+     * 本服务写出的文件名：时间戳_序号_原始文件名_detection 加图像或 .json 扩展名，保留清理只删除这类文件
+     */
+    private static final Pattern RESULT_FILE = Pattern.compile("\\d+_\\d+_[A-Za-z0-9_\\-]+_detection("
+            + Stream.of(ImageFormat.values()).map(f -> Pattern.quote(f.getExtension())).collect(Collectors.joining("|"))
+            + "|\\.json)");
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private BlockingQueue<PendingResult> queue;
+    private final List<Thread> writers = new ArrayList<>();
+    /**
+     * 文件名序号，同一毫秒内同名的结果不会互相覆盖
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    private ScheduledExecutorService retentionExecutor;
+    private volatile boolean running;
+
+    private Counter writtenCounter;
+    private Counter droppedCounter;
+    private Counter failedCounter;
+    private Timer lagTimer;
+
+    /**
+     * 待写入的结果
+     */
+    private record PendingResult(String baseName, String extension, byte[] image, List<Detection> detections,
+                                 long enqueuedNanos) {
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!yoloConfig.isSaveEnabled()) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(Math.max(1, yoloConfig.getSaveQueueCapacity()));
+        writtenCounter = meterRegistry.counter("yolo.persistence.written");
+        droppedCounter = meterRegistry.counter("yolo.persistence.dropped");
+        failedCounter = meterRegistry.counter("yolo.persistence.failed");
+        lagTimer = Timer.builder("yolo.persistence.lag")
+                .description("结果从入队到落盘的耗时")
+                .register(meterRegistry);
+        Gauge.builder("yolo.persistence.queue.size", () -> queue.size()).register(meterRegistry);
+        Gauge.builder("yolo.persistence.queue.oldest.age.ms", this::oldestAgeMillis).register(meterRegistry);
+
+        running = true;
+        AtomicInteger index = new AtomicInteger();
+        for (int i = 0; i < Math.max(1, yoloConfig.getSaveWriterThreads()); i++) {
+            Thread writer = new Thread(this::drainLoop, "yolo-persist-" + index.incrementAndGet());
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+        retentionExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "yolo-persist-retention");
+            t.setDaemon(true);
+            return t;
+        });
+        retentionExecutor.scheduleWithFixedDelay(this::applyRetention, 1, 5, TimeUnit.MINUTES);
+        log.info("检测结果持久化已启用: {}", Paths.get(yoloConfig.getSavePath()).toAbsolutePath());
+    }
+
+    /**
+     * 提交一条结果，队列已满时丢弃
+     * @param sourceName 原始文件名，可为空
+     * @param extension 图像扩展名（如 .jpg）
+     * @param image 已编码的标注图像
+     * @param detections 检测结果
+     * @return 是否入队成功
+     */
+    public boolean submit(String sourceName, String extension, byte[] image, List<Detection> detections) {
+        if (!running) {
+            return false;
+        }
+        String base = sourceName == null || sourceName.isBlank() ? "image" : sourceName;
+        int dot = base.lastIndexOf('.');
+        if (dot > 0) {
+            base = base.substring(0, dot);
+        }
+        base = base.replaceAll("[^A-Za-z0-9_\\-]", "_");
+        String baseName = System.currentTimeMillis() + "_" + sequence.incrementAndGet() + "_" + base + "_detection";
+        if (!queue.offer(new PendingResult(baseName, extension, image, detections, System.nanoTime()))) {
+            droppedCounter.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private void drainLoop() {
+        List<PendingResult> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingResult first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, Math.max(1, yoloConfig.getSaveFsyncBatch()) - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 一批结果全部写入后再统一 fsync，让内核合并回写，减少每个文件单独同步的开销
+     */
+    private void writeBatch(List<PendingResult> batch) {
+        Path dir = Paths.get(yoloConfig.getSavePath());
+        List<FileChannel> channels = new ArrayList<>(batch.size() * 2);
+        try {
+            Files.createDirectories(dir);
+            for (PendingResult result : batch) {
+                try {
+                    channels.add(write(dir.resolve(result.baseName() + result.extension()), result.image()));
+                    channels.add(write(dir.resolve(result.baseName() + ".json"),
+                            objectMapper.writeValueAsBytes(result.detections())));
+                    writtenCounter.increment();
+                } catch (IOException e) {
+                    failedCounter.increment();
+                    log.error("写入检测结果失败: {}", result.baseName(), e);
+                }
+            }
+            for (FileChannel channel : channels) {
+                if (yoloConfig.isSaveFsync()) {
+                    channel.force(true);
+                }
+            }
+        } catch (IOException e) {
+            log.error("写入检测结果失败: {}", e.getMessage(), e);
+        } finally {
+            for (FileChannel channel : channels) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // 关闭失败不影响后续写入
+                }
+            }
+            long now = System.nanoTime();
+            for (PendingResult result : batch) {
+                lagTimer.record(now - result.enqueuedNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private static FileChannel write(Path path, byte[] data) throws IOException {
+        // 文件名唯一，已存在说明有冲突，宁可失败计数也不覆盖已保存的结果
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 删除超过保留时长的结果文件，总大小仍超出上限时从最旧的文件开始删除；
+     * 目录中不是本服务写出的文件不参与统计，也不会被删除
+     */
+    void applyRetention() {
+        Path dir = Paths.get(yoloConfig.getSavePath());
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        record Entry(Path path, long size, long modified) {
+        }
+        List<Entry> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(dir)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (!isResultFile(path.getFileName().toString())) {
+                    continue;
+                }
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    // 列出后已被删除
+                    continue;
+                }
+                if (attrs.isRegularFile()) {
+                    files.add(new Entry(path, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                }
+            }
+        } catch (IOException e) {
+            log.error("扫描结果目录失败: {}", e.getMessage(), e);
+            return;
+        }
+        files.sort(Comparator.comparingLong(Entry::modified));
+
+        long cutoff = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(yoloConfig.getSaveRetentionHours());
+        long maxBytes = yoloConfig.getSaveRetentionMaxMb() * 1024 * 1024;
+        long total = files.stream().mapToLong(Entry::size).sum();
+        int deleted = 0;
+        for (Entry file : files) {
+            boolean expired = yoloConfig.getSaveRetentionHours() > 0 && file.modified() < cutoff;
+            boolean overSize = maxBytes > 0 && total > maxBytes;
+            if (!expired && !overSize) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(file.path());
+                total -= file.size();
+                deleted++;
+            } catch (IOException e) {
+                log.warn("删除过期结果失败: {}", file.path());
+            }
+        }
+        if (deleted > 0) {
+            log.info("结果目录保留清理: 删除 {} 个文件，剩余 {} MB", deleted, total >> 20);
+        }
+    }
+
+    static boolean isResultFile(String fileName) {
+        return RESULT_FILE.matcher(fileName).matches();
+    }
+
+    private double oldestAgeMillis() {
+        PendingResult oldest = queue.peek();
+        return oldest == null ? 0 : (System.nanoTime() - oldest.enqueuedNanos()) / 1e6;
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        // 停止接收新结果，等待队列写完
+        running = false;
+        for (Thread writer : writers) {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        retentionExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,400 @@
+package com.javayh.yolov.service;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javayh.yolov.config.YoloConfig;
+import com.javayh.yolov.model.SessionProfile;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 会话配置调优服务
+ * 在合成输入上遍历算子内线程数、执行模式、图优化级别与并发数的组合，
+ * 把最优组合按模型哈希与 CPU 特征保存为 {@link SessionProfile}，之后在同类机器上加载同一模型时直接复用
+ * @author haiji
+ */
+@Slf4j
+@Service
+public class SessionTuningService {
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 调优与预热、引擎自测依次执行，测量期间没有其他后台测量占用 CPU
+     */
+    @Autowired
+    private BackgroundBenchmarkExecutor backgroundBenchmarkExecutor;
+
+    private final AtomicBoolean tuning = new AtomicBoolean();
+
+    /**
+     * 模型文件哈希缓存，键为 路径|大小|修改时间
+     */
+    private final Map<String, String> hashes = new ConcurrentHashMap<>();
+
+    /**
+     * 本机 CPU 特征
+     */
+    @Getter
+    private final String cpuSignature = cpuSignature();
+
+    /**
+     * 最近一次调优的结果，包含每个组合的测量值
+     */
+    @Getter
+    private volatile Map<String, Object> lastResult;
+
+    /**
+     * 查找模型在本机上已保存的会话配置
+     * @param modelFile 实际加载的模型文件
+     * @return 会话配置，不存在时返回 null
+     */
+    public SessionProfile findProfile(File modelFile) {
+        try {
+            Path path = profilePath(modelHash(modelFile));
+            return Files.isRegularFile(path) ? objectMapper.readValue(path.toFile(), SessionProfile.class) : null;
+        } catch (IOException e) {
+            log.warn("读取会话配置失败 {}: {}", modelFile.getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 根据会话配置创建 SessionOptions，调用方负责关闭
+     * @param profile 会话配置
+     * @return SessionOptions
+     * @throws OrtException 配置无效
+     */
+    public OrtSession.SessionOptions toOptions(SessionProfile profile) throws OrtException {
+        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+        try {
+            options.setIntraOpNumThreads(profile.getIntraOpThreads());
+            options.setExecutionMode(OrtSession.SessionOptions.ExecutionMode.valueOf(profile.getExecutionMode()));
+            options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.valueOf(profile.getOptLevel()));
+            return options;
+        } catch (OrtException | RuntimeException e) {
+            options.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 启用自动调优且本机尚无该模型的会话配置时，在后台调优
+     * @param env ONNX Runtime 环境
+     * @param modelFile 实际加载的模型文件
+     * @param onTuned 配置保存后的回调，通常为重新加载模型
+     * @return 是否已提交调优
+     */
+    public boolean tuneIfNeeded(OrtEnvironment env, File modelFile, Runnable onTuned) {
+        if (!yoloConfig.isSessionTuning() || findProfile(modelFile) != null) {
+            return false;
+        }
+        return submit(env, modelFile, onTuned);
+    }
+
+    /**
+     * 在后台调优，已有调优进行中时忽略
+     * @param env ONNX Runtime 环境
+     * @param modelFile 实际加载的模型文件
+     * @param onTuned 配置保存后的回调
+     * @return 是否已提交调优
+     */
+    public boolean submit(OrtEnvironment env, File modelFile, Runnable onTuned) {
+        if (!tuning.compareAndSet(false, true)) {
+            return false;
+        }
+        backgroundBenchmarkExecutor.execute(() -> {
+            try {
+                if (tune(env, modelFile) != null && onTuned != null) {
+                    onTuned.run();
+                }
+            } catch (Exception e) {
+                log.warn("会话调优失败 {}: {}", modelFile.getName(), e.getMessage());
+            } finally {
+                tuning.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 是否有调优正在进行
+     * @return 是否正在调优
+     */
+    public boolean isTuning() {
+        return tuning.get();
+    }
+
+    private SessionProfile tune(OrtEnvironment env, File modelFile) throws IOException {
+        long start = System.currentTimeMillis();
+        String modelHash = modelHash(modelFile);
+        log.info("开始会话调优: {}，CPU {}", modelFile.getName(), cpuSignature);
+        boolean throughputObjective = !"latency".equalsIgnoreCase(yoloConfig.getSessionTuneObjective());
+        List<SessionProfile> trials = new ArrayList<>();
+        SessionProfile best = null;
+        // 调优与线上请求共用 CPU，建议在低峰或发布前的预热阶段进行
+        ExecutorService workers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "yolo-session-tune-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            for (String optLevel : yoloConfig.getSessionTuneOptLevels()) {
+                for (String mode : yoloConfig.getSessionTuneExecutionModes()) {
+                    for (int threads : intraOpThreadGrid()) {
+                        SessionProfile options = new SessionProfile();
+                        options.setIntraOpThreads(threads);
+                        options.setExecutionMode(mode.trim().toUpperCase());
+                        options.setOptLevel(optLevel.trim().toUpperCase());
+                        try (OrtSession.SessionOptions sessionOptions = toOptions(options);
+                             OrtSession session = env.createSession(modelFile.getAbsolutePath(), sessionOptions)) {
+                            for (int concurrency : concurrencyGrid(threads)) {
+                                SessionProfile trial = measure(env, session, workers, options, concurrency);
+                                trials.add(trial);
+                                if (best == null || (throughputObjective
+                                        ? trial.getThroughput() > best.getThroughput()
+                                        : trial.getP50Millis() < best.getP50Millis())) {
+                                    best = trial;
+                                }
+                            }
+                        } catch (Exception e) {
+                            log.warn("会话配置 {}/{}/{} 线程测量失败: {}", options.getOptLevel(),
+                                    options.getExecutionMode(), threads, e.getMessage());
+                        }
+                    }
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        if (best == null) {
+            return null;
+        }
+        best.setModelHash(modelHash);
+        best.setCpuSignature(cpuSignature);
+        best.setCreatedAt(System.currentTimeMillis());
+
+        Path path = profilePath(modelHash);
+        Files.createDirectories(path.getParent());
+        Path temp = Files.createTempFile(path.getParent(), modelHash, ".tmp");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(temp.toFile(), best);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("model", modelFile.getName());
+        result.put("servingConcurrency", servingConcurrency());
+        result.put("profile", best);
+        result.put("trials", trials);
+        result.put("elapsedMillis", System.currentTimeMillis() - start);
+        lastResult = result;
+        log.info("会话调优完成: {}，{} 个组合，最优 {} 线程/{}/{}/并发 {}，{} 次/秒，p50 {} ms，耗时 {} ms",
+                modelFile.getName(), trials.size(), best.getIntraOpThreads(), best.getExecutionMode(),
+                best.getOptLevel(), best.getConcurrency(), String.format("%.1f", best.getThroughput()),
+                String.format("%.2f", best.getP50Millis()), System.currentTimeMillis() - start);
+        if (servingConcurrency() == 0 && best.getConcurrency() > 1) {
+            log.info("未启用推理调度，最优并发 {} 不会自动生效，可设置 yolo.scheduler-enabled=true 与 yolo.scheduler-concurrency={}",
+                    best.getConcurrency(), best.getConcurrency());
+        }
+        return best;
+    }
+
+    /**
+     * 以 concurrency 个线程并发推理，测量吞吐量与单次耗时中位数
+     */
+    private SessionProfile measure(OrtEnvironment env, OrtSession session, ExecutorService workers,
+                                   SessionProfile options, int concurrency) throws Exception {
+        NodeInfo input = session.getInputInfo().values().iterator().next();
+        TensorInfo info = (TensorInfo) input.getInfo();
+        long[] shape = syntheticShape(info);
+        int iterations = Math.max(1, yoloConfig.getSessionTuneIterations());
+        long[] latencies = new long[concurrency * iterations];
+        List<OnnxTensor> tensors = new ArrayList<>();
+        try {
+            for (int i = 0; i < concurrency; i++) {
+                tensors.add(syntheticTensor(env, info.type, shape));
+            }
+            // 预热：首次 run 会分配内存池
+            for (OnnxTensor tensor : tensors) {
+                session.run(Map.of(input.getName(), tensor)).close();
+            }
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int w = 0; w < concurrency; w++) {
+                int worker = w;
+                Map<String, OnnxTensor> inputs = Map.of(input.getName(), tensors.get(w));
+                tasks.add(() -> {
+                    for (int i = 0; i < iterations; i++) {
+                        long t = System.nanoTime();
+                        OrtSession.Result result = session.run(inputs);
+                        latencies[worker * iterations + i] = System.nanoTime() - t;
+                        result.close();
+                    }
+                    return null;
+                });
+            }
+            long start = System.nanoTime();
+            for (Future<Void> future : workers.invokeAll(tasks)) {
+                future.get();
+            }
+            long elapsed = System.nanoTime() - start;
+            Arrays.sort(latencies);
+
+            SessionProfile trial = new SessionProfile();
+            trial.setIntraOpThreads(options.getIntraOpThreads());
+            trial.setExecutionMode(options.getExecutionMode());
+            trial.setOptLevel(options.getOptLevel());
+            trial.setConcurrency(concurrency);
+            trial.setThroughput(latencies.length * 1e9 / elapsed);
+            trial.setP50Millis(latencies[latencies.length / 2] / 1e6);
+            return trial;
+        } finally {
+            tensors.forEach(OnnxTensor::close);
+        }
+    }
+
+    /**
+     * 算子内线程数候选，未配置时取 1、核数/4、核数/2、核数
+     */
+    private List<Integer> intraOpThreadGrid() {
+        if (!yoloConfig.getSessionTuneIntraOpThreads().isEmpty()) {
+            return yoloConfig.getSessionTuneIntraOpThreads();
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        TreeSet<Integer> grid = new TreeSet<>(List.of(1, Math.max(1, cores / 4), Math.max(1, cores / 2), cores));
+        return new ArrayList<>(grid);
+    }
+
+    /**
+     * 并发数候选
+     * 启用推理调度或流水线时线上并发数是固定的，只在该并发数下测量，保证选出的组合在实际负载下最优；
+     * 否则取配置的候选，未配置时取 1 与刚好占满全部核的并发数
+     */
+    private List<Integer> concurrencyGrid(int threads) {
+        int serving = servingConcurrency();
+        if (serving > 0) {
+            return List.of(serving);
+        }
+        if (!yoloConfig.getSessionTuneConcurrency().isEmpty()) {
+            return yoloConfig.getSessionTuneConcurrency();
+        }
+        int saturate = Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, threads));
+        return saturate == 1 ? List.of(1) : List.of(1, saturate);
+    }
+
+    /**
+     * 线上同时推理的请求数：启用推理调度时为调度并发数，启用流水线时为推理阶段线程数，否则不受限制
+     * @return 并发数，不受限制时为 0
+     */
+    public int servingConcurrency() {
+        if (yoloConfig.isSchedulerEnabled()) {
+            return Math.max(1, yoloConfig.getSchedulerConcurrency());
+        }
+        if (yoloConfig.isPipelineEnabled()) {
+            return Math.max(1, yoloConfig.getPipelineInferenceThreads());
+        }
+        return 0;
+    }
+
+    /**
+     * 合成输入的形状，动态维度按批量 1 与配置的输入尺寸填充
+     */
+    private long[] syntheticShape(TensorInfo info) {
+        long[] shape = info.getShape().clone();
+        if (shape.length != 4) {
+            throw new IllegalArgumentException("Unsupported input rank: " + shape.length);
+        }
+        // uint8 输入为 NHWC（见 OnnxInputFusion），float 输入为 NCHW
+        int heightAxis = info.type == OnnxJavaType.UINT8 ? 1 : 2;
+        int channelAxis = info.type == OnnxJavaType.UINT8 ? 3 : 1;
+        shape[0] = shape[0] <= 0 ? 1 : shape[0];
+        shape[heightAxis] = shape[heightAxis] <= 0 ? yoloConfig.getInputHeight() : shape[heightAxis];
+        shape[heightAxis + 1] = shape[heightAxis + 1] <= 0 ? yoloConfig.getInputWidth() : shape[heightAxis + 1];
+        shape[channelAxis] = shape[channelAxis] <= 0 ? 3 : shape[channelAxis];
+        return shape;
+    }
+
+    private static OnnxTensor syntheticTensor(OrtEnvironment env, OnnxJavaType type, long[] shape) throws OrtException {
+        int elements = (int) Arrays.stream(shape).reduce(1, (a, b) -> a * b);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (type == OnnxJavaType.UINT8) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(elements);
+            for (int i = 0; i < elements; i++) {
+                buffer.put((byte) random.nextInt(256));
+            }
+            return OnnxTensor.createTensor(env, buffer.flip(), shape, OnnxJavaType.UINT8);
+        }
+        FloatBuffer buffer = ByteBuffer.allocateDirect(elements * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        for (int i = 0; i < elements; i++) {
+            buffer.put(random.nextFloat());
+        }
+        return OnnxTensor.createTensor(env, buffer.flip(), shape);
+    }
+
+    private Path profilePath(String modelHash) {
+        return Paths.get(yoloConfig.getSessionProfileDir()).resolve(modelHash + "." + cpuSignature + ".json");
+    }
+
+    private String modelHash(File modelFile) throws IOException {
+        String key = modelFile.getAbsolutePath() + "|" + modelFile.length() + "|" + modelFile.lastModified();
+        String hash = hashes.get(key);
+        if (hash == null) {
+            hash = ModelPreparationService.hash(Files.readAllBytes(modelFile.toPath()));
+            hashes.put(key, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * 架构、逻辑核数与 CPU 型号，型号取自 /proc/cpuinfo，读不到时为空
+     */
+    private static String cpuSignature() {
+        String model = "";
+        try {
+            model = Files.readAllLines(Paths.get("/proc/cpuinfo"), StandardCharsets.UTF_8).stream()
+                    .filter(line -> line.startsWith("model name"))
+                    .map(line -> line.substring(line.indexOf(':') + 1).trim())
+                    .findFirst().orElse("");
+        } catch (IOException | RuntimeException ignored) {
+            // 非 Linux 平台只按架构与核数区分
+        }
+        String arch = System.getProperty("os.arch");
+        int cores = Runtime.getRuntime().availableProcessors();
+        String hash = ModelPreparationService.hash((arch + "|" + cores + "|" + model).getBytes(StandardCharsets.UTF_8));
+        return arch + "-" + cores + "c-" + hash.substring(0, 8);
+    }
+}
@@ -0,0 +1,92 @@
+package com.javayh.yolov.service;
+
+import com.javayh.yolov.config.YoloConfig;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 启动耗时统计
+ * 记录 OpenCV 加载、模型加载、应用就绪和首次检测完成的时间点（相对 JVM 启动），通过 /actuator/info 输出
+ * @author haiji
+ */
+@Slf4j
+@Lazy(false)
+@Component
+public class StartupMetrics implements InfoContributor {
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    private final long jvmStartTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    @Getter
+    private volatile long openCvLoadMillis = -1;
+    @Getter
+    private volatile long modelLoadMillis = -1;
+    @Getter
+    private volatile long readyMillis = -1;
+    @Getter
+    private volatile long firstDetectionMillis = -1;
+
+    public void recordOpenCvLoad(long millis) {
+        openCvLoadMillis = millis;
+    }
+
+    public void recordModelLoad(long millis) {
+        modelLoadMillis = millis;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        readyMillis = System.currentTimeMillis() - jvmStartTime;
+        log.info("应用启动完成，距 JVM 启动 {} ms", readyMillis);
+    }
+
+    /**
+     * 记录检测完成，仅首次生效
+     */
+    public void recordDetection() {
+        if (firstDetectionMillis >= 0) {
+            return;
+        }
+        synchronized (this) {
+            if (firstDetectionMillis >= 0) {
+                return;
+            }
+            firstDetectionMillis = System.currentTimeMillis() - jvmStartTime;
+        }
+        log.info("首次检测完成，time-to-first-detection: {} ms (OpenCV {} ms, 模型 {} ms, 就绪 {} ms)",
+                firstDetectionMillis, openCvLoadMillis, modelLoadMillis, readyMillis);
+        if (yoloConfig.isStartupBenchmark()) {
+            // 启动基准模式：输出结果后退出，便于脚本重复测量
+            Thread exit = new Thread(() -> System.exit(SpringApplication.exit(applicationContext)), "startup-benchmark-exit");
+            exit.start();
+        }
+    }
+
+    @Override
+    public void contribute(Info.Builder builder) {
+        Map<String, Object> startup = new LinkedHashMap<>();
+        startup.put("openCvLoadMillis", openCvLoadMillis);
+        startup.put("modelLoadMillis", modelLoadMillis);
+        startup.put("readyMillis", readyMillis);
+        startup.put("timeToFirstDetectionMillis", firstDetectionMillis);
+        builder.withDetail("startup", startup);
+    }
+}
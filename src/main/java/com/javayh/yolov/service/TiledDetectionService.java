@@ -0,0 +1,235 @@
+package com.javayh.yolov.service;
+
+import ai.onnxruntime.OrtException;
+import com.javayh.yolov.config.NativeScope;
+import com.javayh.yolov.config.YoloConfig;
+import com.javayh.yolov.model.Detection;
+import com.javayh.yolov.model.DetectionFilter;
+import com.javayh.yolov.model.Letterbox;
+import com.javayh.yolov.model.LoadedModel;
+import com.javayh.yolov.model.RegionOfInterest;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 切片推理服务（SAHI 风格）
+ * 将高分辨率图像切分为相互重叠的切片，批量推理后映射回原图坐标并做跨切片合并，避免小目标在整图缩放时丢失
+ * @author haiji
+ */
+@Slf4j
+@Service
+public class TiledDetectionService {
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    @Autowired
+    private InferenceService inferenceService;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger index = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, yoloConfig.getTileParallelism()), r -> {
+            Thread t = new Thread(r, "yolo-tile-" + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 切片检测
+     * @param img BGR 图像，不会被修改
+     * @param model 已占用的模型
+     * @return 原图坐标系下合并后的检测结果
+     * @throws OrtException 如果 ONNX 推理失败
+     */
+    public List<Detection> detect(Mat img, LoadedModel model) throws OrtException {
+        return detect(img, model, DetectionFilter.NONE);
+    }
+
+    /**
+     * 按过滤条件切片检测，与感兴趣区域不相交的切片不参与推理
+     * @param img BGR 图像，不会被修改
+     * @param model 已占用的模型
+     * @param filter 类别与区域过滤条件
+     * @return 原图坐标系下合并后的检测结果
+     * @throws OrtException 如果 ONNX 推理失败
+     */
+    public List<Detection> detect(Mat img, LoadedModel model, DetectionFilter filter) throws OrtException {
+        int tileSize = yoloConfig.getTileSize();
+        if (img.cols() <= tileSize && img.rows() <= tileSize) {
+            return inferenceService.detect(img, model, null, filter);
+        }
+
+        List<Rect> tiles = computeTiles(img.cols(), img.rows(), tileSize, yoloConfig.getTileOverlap());
+        RegionOfInterest roi = filter.getRoi();
+        if (roi != null) {
+            tiles.removeIf(t -> t.x > roi.getMaxX() || t.y > roi.getMaxY()
+                    || t.x + t.width < roi.getMinX() || t.y + t.height < roi.getMinY());
+        }
+        int batchSize = model.isDynamicBatch() ? Math.max(1, yoloConfig.getTileBatchSize()) : 1;
+
+        List<Future<List<Detection>>> futures = new ArrayList<>();
+        for (int i = 0; i < tiles.size(); i += batchSize) {
+            List<Rect> chunk = tiles.subList(i, Math.min(tiles.size(), i + batchSize));
+            futures.add(executor.submit(() -> detectTiles(img, model, chunk, filter)));
+        }
+        if (yoloConfig.isTileIncludeFullImage()) {
+            futures.add(executor.submit(() -> inferenceService.detect(img, model, null, filter)));
+        }
+
+        List<Detection> all = new ArrayList<>();
+        for (Future<List<Detection>> future : futures) {
+            all.addAll(await(future));
+        }
+        List<Detection> merged = inferenceService.limit(
+                merge(all, yoloConfig.getNmsThreshold(), yoloConfig.getTileMergeThreshold()));
+        log.debug("切片推理: {} 个切片，候选 {} 个，合并后 {} 个", tiles.size(), all.size(), merged.size());
+        return merged;
+    }
+
+    /**
+     * 一批切片打包为 [N, C, H, W] 输入，一次 OrtSession.run 完成推理
+     */
+    private List<Detection> detectTiles(Mat img, LoadedModel model, List<Rect> tiles, DetectionFilter filter) throws OrtException {
+        Letterbox[] letterboxes = new Letterbox[tiles.size()];
+        float[][][] raw;
+        try (NativeScope scope = NativeScope.open()) {
+            List<Mat> images = new ArrayList<>(tiles.size());
+            for (int i = 0; i < tiles.size(); i++) {
+                images.add(scope.add(img.submat(tiles.get(i))));
+                // 批量输入要求所有切片尺寸一致，不使用最小矩形模式
+                letterboxes[i] = inferenceService.createBatchLetterbox(model, yoloConfig.getTileSize());
+            }
+            raw = inferenceService.infer(model, images, letterboxes);
+        }
+
+        List<Detection> detections = new ArrayList<>();
+        for (int i = 0; i < tiles.size(); i++) {
+            Rect rect = tiles.get(i);
+            detections.addAll(inferenceService.decode(raw, i, model, letterboxes[i], rect.x, rect.y, filter));
+        }
+        return detections;
+    }
+
+    /**
+     * 计算相互重叠的切片区域，最后一行/列贴齐图像边缘
+     * @param width 图像宽度
+     * @param height 图像高度
+     * @param tileSize 切片边长
+     * @param overlap 重叠比例
+     * @return 切片区域列表
+     */
+    static List<Rect> computeTiles(int width, int height, int tileSize, float overlap) {
+        int step = Math.max(1, Math.round(tileSize * (1 - overlap)));
+        List<Rect> tiles = new ArrayList<>();
+        for (int y : starts(height, tileSize, step)) {
+            for (int x : starts(width, tileSize, step)) {
+                tiles.add(new Rect(x, y, Math.min(tileSize, width), Math.min(tileSize, height)));
+            }
+        }
+        return tiles;
+    }
+
+    private static List<Integer> starts(int length, int tileSize, int step) {
+        List<Integer> starts = new ArrayList<>();
+        if (length <= tileSize) {
+            starts.add(0);
+            return starts;
+        }
+        for (int s = 0; s + tileSize < length; s += step) {
+            starts.add(s);
+        }
+        starts.add(length - tileSize);
+        return starts;
+    }
+
+    /**
+     * 跨切片 NMS：同类框 IoU 超过 NMS 阈值，或交集占较小框比例超过合并阈值（切片边缘的截断框）时抑制低分框
+     * @param detections 所有切片的检测结果
+     * @param iouThreshold IoU 阈值
+     * @param iosThreshold 交集/较小框面积阈值
+     * @return 合并后的检测结果
+     */
+    static List<Detection> merge(List<Detection> detections, float iouThreshold, float iosThreshold) {
+        Map<Integer, List<Detection>> grouped = new HashMap<>();
+        for (Detection d : detections) {
+            grouped.computeIfAbsent(d.getClassId(), k -> new ArrayList<>()).add(d);
+        }
+
+        List<Detection> result = new ArrayList<>();
+        for (List<Detection> group : grouped.values()) {
+            group.sort((a, b) -> Float.compare(b.getConfidence(), a.getConfidence()));
+            boolean[] suppressed = new boolean[group.size()];
+            for (int i = 0; i < group.size(); i++) {
+                if (suppressed[i]) {
+                    continue;
+                }
+                Detection keep = group.get(i);
+                result.add(keep);
+                for (int j = i + 1; j < group.size(); j++) {
+                    if (suppressed[j]) {
+                        continue;
+                    }
+                    Detection other = group.get(j);
+                    if (keep.iou(other) > iouThreshold || intersectionOverSmaller(keep, other) > iosThreshold) {
+                        suppressed[j] = true;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static float intersectionOverSmaller(Detection a, Detection b) {
+        float w = Math.min(a.getX1(), b.getX1()) - Math.max(a.getX0(), b.getX0());
+        float h = Math.min(a.getY1(), b.getY1()) - Math.max(a.getY0(), b.getY0());
+        if (w <= 0 || h <= 0) {
+            return 0;
+        }
+        float areaA = (a.getX1() - a.getX0()) * (a.getY1() - a.getY0());
+        float areaB = (b.getX1() - b.getX0()) * (b.getY1() - b.getY0());
+        float smaller = Math.min(areaA, areaB);
+        return smaller <= 0 ? 0 : w * h / smaller;
+    }
+
+    private static List<Detection> await(Future<List<Detection>> future) throws OrtException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Tiled detection interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof OrtException ort) {
+                throw ort;
+            }
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
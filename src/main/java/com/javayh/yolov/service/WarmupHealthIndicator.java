@@ -0,0 +1,31 @@
+package com.javayh.yolov.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * 预热健康检查，默认模型预热完成前返回 OUT_OF_SERVICE，负载均衡据此决定是否转发流量
+ * @author haiji
+ */
+@Component
+public class WarmupHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private WarmupService warmupService;
+
+    @Override
+    public Health health() {
+        if (warmupService.isWarm()) {
+            return Health.up()
+                    .withDetail("warmupMillis", warmupService.getLastWarmupMillis())
+                    .build();
+        }
+        Health.Builder builder = Health.outOfService();
+        if (warmupService.getLastError() != null) {
+            builder.withDetail("error", warmupService.getLastError());
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,149 @@
+package com.javayh.yolov.service;
+
+import com.javayh.yolov.config.YoloConfig;
+import com.javayh.yolov.model.DetectionOptions;
+import com.javayh.yolov.model.ModelLoadedEvent;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+
+/**
+ * 模型预热服务
+ * 模型加载后使用合成图像跑完整检测流程（解码、推理、绘制、编码）若干次，让 ONNX Runtime 分配内存池、
+ * JIT 编译解码与 NMS 热点代码；预热结果不保存，首次预热计入 time-to-first-detection
+ * @author haiji
+ */
+@Slf4j
+@Lazy(false)
+@Service
+public class WarmupService {
+
+    @Autowired
+    private YoloConfig yoloConfig;
+
+    @Autowired
+    private DetectionService detectionService;
+
+    @Autowired
+    private ModelRegistry modelRegistry;
+
+    @Autowired
+    private ModelCatalog modelCatalog;
+
+    @Autowired
+    private YoloService yoloService;
+
+    @Autowired
+    private InferenceEngineSelector inferenceEngineSelector;
+
+    /**
+     * 预热与引擎自测、会话调优在同一个线程中依次执行
+     */
+    @Autowired
+    private BackgroundBenchmarkExecutor backgroundBenchmarkExecutor;
+
+    /**
+     * 默认模型是否已完成预热
+     */
+    @Getter
+    private volatile boolean warm;
+
+    /**
+     * 最近一次预热失败的原因
+     */
+    @Getter
+    private volatile String lastError;
+
+    /**
+     * 最近一次预热耗时（毫秒）
+     */
+    @Getter
+    private volatile long lastWarmupMillis;
+
+    /**
+     * 应用启动完成后预热默认模型
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        submit(null, true);
+    }
+
+    /**
+     * 模型重新加载或注册表懒加载后预热对应模型
+     * @param event 模型加载事件
+     */
+    @EventListener
+    public void onModelLoaded(ModelLoadedEvent event) {
+        submit(event.isDefaultModel() ? null : event.getModelName(), event.isDefaultModel());
+    }
+
+    private void submit(String modelName, boolean defaultModel) {
+        if (defaultModel) {
+            warm = false;
+        }
+        backgroundBenchmarkExecutor.execute(() -> {
+            warmUp(modelName, defaultModel);
+            // 引擎自测在预热之后进行，两种引擎都在已预热的状态下计时
+            inferenceEngineSelector.runPending();
+        });
+    }
+
+    private void warmUp(String modelName, boolean defaultModel) {
+        if (!defaultModel && !modelRegistry.isLoaded(modelName)) {
+            return;
+        }
+        int iterations = yoloConfig.getWarmupIterations();
+        String target = defaultModel ? "默认模型" : modelName;
+        try {
+            if (iterations > 0) {
+                DetectionOptions options = DetectionOptions.ofModel(modelName);
+                options.setPersist(false);
+                byte[] image = syntheticImage(yoloConfig.getInputWidth(), yoloConfig.getInputHeight());
+                long start = System.currentTimeMillis();
+                for (int i = 0; i < iterations; i++) {
+                    detectionService.detect(image, options);
+                }
+                long elapsed = System.currentTimeMillis() - start;
+                lastWarmupMillis = elapsed;
+                modelCatalog.recordLatency(defaultModel ? yoloService.getActiveModel().getName() : modelName,
+                        (double) elapsed / iterations);
+                log.info("{}预热完成: {} 次，耗时 {} ms", target, iterations, elapsed);
+            }
+            if (defaultModel) {
+                lastError = null;
+                warm = true;
+            }
+        } catch (Exception e) {
+            log.error("{}预热失败: {}", target, e.getMessage(), e);
+            if (defaultModel) {
+                lastError = e.getMessage();
+            }
+        }
+    }
+
+    /**
+     * 生成随机噪声的 JPEG 图像
+     */
+    private static byte[] syntheticImage(int width, int height) {
+        Mat mat = new Mat(height, width, CvType.CV_8UC3);
+        MatOfByte buf = new MatOfByte();
+        try {
+            Core.randu(mat, 0, 255);
+            Imgcodecs.imencode(".jpg", mat, buf);
+            return buf.toArray();
+        } finally {
+            mat.release();
+            buf.release();
+        }
+    }
+}
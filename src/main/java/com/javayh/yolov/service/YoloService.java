@@ -2,19 +2,30 @@ package com.javayh.yolov.service;
 
 import ai.onnxruntime.OrtEnvironment;
 import ai.onnxruntime.OrtSession;
+import com.javayh.yolov.config.OpenCvLoader;
 import com.javayh.yolov.config.YoloConfig;
+import com.javayh.yolov.model.ClassNames;
+import com.javayh.yolov.model.ClassThresholds;
+import com.javayh.yolov.model.LoadedModel;
+import com.javayh.yolov.model.ModelLoadedEvent;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.Data;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 /**
@@ -23,6 +34,7 @@ import java.util.List;
  * @author haiji
  */
 @Data
+@Lazy(false)
 @Service
 @Slf4j
 public class YoloService {
@@ -33,78 +45,173 @@ public class YoloService {
     @Autowired
     private ResourceLoader resourceLoader;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private StartupMetrics startupMetrics;
+
+    @Autowired
+    private ModelPreparationService modelPreparationService;
+
+    @Autowired
+    private InferenceEngineSelector inferenceEngineSelector;
+
+    @Autowired
+    private SessionTuningService sessionTuningService;
+
     private OrtEnvironment env;
     private OrtSession session;
     private List<String> classesName;
+    private float[] classThresholds;
     private double[] colors;
 
-    private File modelTempFile = null;
+    /**
+     * 当前默认模型，供未指定模型的请求使用
+     */
+    private volatile LoadedModel activeModel;
+
+    /**
+     * 当前默认模型的原始文件
+     */
+    private File modelFile;
 
     /**
      * 初始化YOLOv11服务
      */
     @PostConstruct
     public void init() {
+        // OpenCV native 库与 ONNX 会话互不依赖，并行加载以缩短启动时间
+        CompletableFuture<Void> openCv = CompletableFuture.runAsync(() -> {
+            long start = System.currentTimeMillis();
+            OpenCvLoader.load();
+            startupMetrics.recordOpenCvLoad(System.currentTimeMillis() - start);
+        });
         try {
             log.info("正在初始化YOLO服务...");
+            long start = System.currentTimeMillis();
             reloadModelAndClasses();
+            startupMetrics.recordModelLoad(System.currentTimeMillis() - start);
             log.info("YOLO服务初始化完成");
         } catch (Exception e) {
             log.error("Failed to initialize YOLOv11 service", e);
             // 不抛出异常，允许应用启动但功能不可用
             log.warn("YOLOv11 detection service is unavailable");
+        } finally {
+            openCv.join();
         }
     }
 
     /**
      * 重新加载模型和类别文件
-     * 当用户上传新模型时调用此方法
+     * 当用户上传新模型、模型通过验证或会话调优完成时调用。多个来源的重新加载串行执行，
+     * 新会话与类别先在局部变量中构建，全部成功后再一次性替换默认模型；失败时关闭新会话，保留原模型
      */
-    public void reloadModelAndClasses() throws Exception {
+    public synchronized void reloadModelAndClasses() throws Exception {
         log.info("正在重新加载YOLO模型和类别...");
         // 初始化ONNX Runtime环境
-        env = OrtEnvironment.getEnvironment();
+        if (env == null) {
+            env = OrtEnvironment.getEnvironment();
+        }
 
         // 首先尝试加载自定义上传的模型文件
         String customModelPath = yoloConfig.getModelPath();
         File customModelFile = new File(customModelPath);
 
+        File loadedFile;
+        String modelName;
         if (customModelFile.exists() && customModelFile.length() > 0) {
             // 使用自定义上传的模型文件
             log.info("使用自定义模型文件: {}", customModelPath);
-            session = env.createSession(customModelFile.getAbsolutePath());
+            loadedFile = customModelFile;
+            modelName = customModelFile.getName();
         } else {
             // 如果自定义文件不存在，使用默认模型路径
             String defaultModelPath = yoloConfig.getDefaultModelPath();
             Resource modelResource = resourceLoader.getResource(defaultModelPath);
             log.info("使用默认模型文件: {}", defaultModelPath);
 
-            // 将资源复制到临时文件
-            modelTempFile = File.createTempFile("model", ".onnx");
-            modelTempFile.deleteOnExit();
-            try (InputStream in = modelResource.getInputStream();
-                 FileOutputStream out = new FileOutputStream(modelTempFile)) {
-                byte[] buffer = new byte[4096];
-                int bytesRead;
-                while ((bytesRead = in.read(buffer)) != -1) {
-                    out.write(buffer, 0, bytesRead);
-                }
-            }
-
-            // 使用临时文件创建会话
-            session = env.createSession(modelTempFile.getAbsolutePath());
+            // classpath 资源解压为文件后创建会话，同一资源只解压一次
+            loadedFile = modelPreparationService.extract(modelResource);
+            modelName = loadedFile.getName();
         }
+        install(modelPreparationService.createSession(env, loadedFile), loadedFile, modelName);
+    }
+
+    /**
+     * 激活已通过验证的模型：模型与类别文件已复制到 yolo.model-path 与 yolo.classes-path，
+     * 直接使用验证时创建并测量过的会话，不再重新融合预处理和创建会话
+     * @param qualifiedSession 验证时创建的会话，激活后归默认模型所有，失败时被关闭
+     * @throws Exception 类别文件加载失败
+     */
+    public synchronized void activate(OrtSession qualifiedSession) throws Exception {
+        File loadedFile = new File(yoloConfig.getModelPath());
+        install(qualifiedSession, loadedFile, loadedFile.getName());
+    }
 
-        // 加载类别名称
-        loadClasses();
+    /**
+     * 加载类别并替换默认模型；调用方持有锁
+     */
+    private void install(OrtSession newSession, File loadedFile, String modelName) throws Exception {
+        LoadedModel model;
+        LoadedClasses classes;
+        try {
+            // 加载类别名称
+            classes = loadClasses();
+            model = new LoadedModel(modelName, newSession, classes.names(), classes.thresholds(),
+                    LoadedModel.estimateNativeBytes(loadedFile));
+        } catch (Exception e) {
+            newSession.close();
+            throw e;
+        }
 
-        // 生成颜色
-        generateColors();
+        // 替换默认模型，旧会话在进行中的请求结束后关闭
+        LoadedModel previous = activeModel;
+        session = newSession;
+        classesName = classes.names();
+        classThresholds = classes.thresholds();
+        colors = generateColors(classes.names());
+        modelFile = loadedFile;
+        activeModel = model;
+        if (previous != null) {
+            previous.retire();
+        }
+        inferenceEngineSelector.configure(model, loadedFile);
+        sessionTuningService.tuneIfNeeded(env, modelPreparationService.prepare(loadedFile), this::reloadTunedModel);
 
         log.info("YOLOv11 model loaded successfully");
+        // 通知预热服务，启动阶段由 ApplicationReadyEvent 触发预热
+        eventPublisher.publishEvent(new ModelLoadedEvent(this, model.getName(), true));
+    }
+
+    /**
+     * 手动触发默认模型的会话调优，完成后重新加载模型以应用新配置
+     * @return 是否已提交，已有调优进行中时返回 false
+     */
+    public boolean tuneSession() {
+        if (modelFile == null) {
+            throw new IllegalStateException("Model not loaded");
+        }
+        return sessionTuningService.submit(env, modelPreparationService.prepare(modelFile), this::reloadTunedModel);
+    }
+
+    private void reloadTunedModel() {
+        try {
+            reloadModelAndClasses();
+        } catch (Exception e) {
+            log.warn("应用会话配置后重新加载模型失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 类别名称与按类别覆盖的阈值
+     */
+    private record LoadedClasses(List<String> names, float[] thresholds) {
     }
 
-    private void loadClasses() throws IOException {
+    private LoadedClasses loadClasses() throws IOException {
+        List<String> classesName;
+        float[] classThresholds;
         // 首先尝试加载自定义上传的类别文件
         String customClassesPath = yoloConfig.getClassesPath();
         File customClassesFile = new File(customClassesPath);
@@ -112,44 +219,89 @@ public class YoloService {
         if (customClassesFile.exists() && customClassesFile.length() > 0) {
             // 使用自定义上传的类别文件
             log.info("使用自定义类别文件: {}", customClassesPath);
-            try (BufferedReader reader = new BufferedReader(new FileReader(customClassesFile))) {
-                classesName = reader.lines().toList();
-            }
+            classesName = ClassNames.parse(Files.readAllLines(customClassesFile.toPath(), StandardCharsets.UTF_8));
+            File thresholdsFile = new File(ClassThresholds.fileNameFor(customClassesPath));
+            classThresholds = thresholdsFile.isFile()
+                    ? ClassThresholds.parse(Files.readAllLines(thresholdsFile.toPath(), StandardCharsets.UTF_8), classesName)
+                    : null;
         } else {
             // 如果自定义文件不存在，使用默认类别路径
             String defaultClassesPath = yoloConfig.getDefaultClassesPath();
             Resource classesResource = resourceLoader.getResource(defaultClassesPath);
             log.info("使用默认类别文件: {}", defaultClassesPath);
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(classesResource.getInputStream()))) {
-                classesName = reader.lines().toList();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(classesResource.getInputStream(), StandardCharsets.UTF_8))) {
+                classesName = ClassNames.parse(reader.lines().toList());
+            }
+            Resource thresholdsResource = resourceLoader.getResource(ClassThresholds.fileNameFor(defaultClassesPath));
+            classThresholds = null;
+            if (thresholdsResource.exists()) {
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(thresholdsResource.getInputStream(), StandardCharsets.UTF_8))) {
+                    classThresholds = ClassThresholds.parse(reader.lines().toList(), classesName);
+                }
             }
         }
+        if (classThresholds != null) {
+            log.info("加载类别阈值: {}", Arrays.toString(classThresholds));
+        }
 
         log.info("加载类别数量: {}", classesName.size());
         log.info("前10个类别: {}", classesName.subList(0, Math.min(10, classesName.size())));
+        return new LoadedClasses(classesName, classThresholds);
     }
 
-    private void generateColors() {
-        // 使用固定的颜色表，确保不同类别有明显区分的颜色
-        String[] colorHex = {
-                "#FF0000", "#00FF00", "#0000FF", "#FFFF00", "#00FFFF", "#FF00FF",
-                "#FFA500", "#FFC0CB", "#800080", "#008000", "#808000", "#008080",
-                "#800000", "#000080", "#C0C0C0", "#808080", "#FFD700", "#FF6347",
-                "#4682B4", "#90EE90", "#FF7F50", "#DDA0DD", "#98FB98", "#F08080",
-                "#20B2AA", "#FFB6C1", "#87CEFA", "#9370DB", "#3CB371", "#7B68EE"
-        };
-
-        colors = new double[classesName.size() * 3];
+    /**
+     * 固定的颜色表，确保不同类别有明显区分的颜色
+     */
+    private static final String[] COLOR_HEX = {
+            "#FF0000", "#00FF00", "#0000FF", "#FFFF00", "#00FFFF", "#FF00FF",
+            "#FFA500", "#FFC0CB", "#800080", "#008000", "#808000", "#008080",
+            "#800000", "#000080", "#C0C0C0", "#808080", "#FFD700", "#FF6347",
+            "#4682B4", "#90EE90", "#FF7F50", "#DDA0DD", "#98FB98", "#F08080",
+            "#20B2AA", "#FFB6C1", "#87CEFA", "#9370DB", "#3CB371", "#7B68EE"
+    };
+
+    private static double[] generateColors(List<String> classesName) {
+        double[] colors = new double[classesName.size() * 3];
         for (int i = 0; i < classesName.size(); i++) {
-            // 循环使用颜色表中的颜色
-            String hex = colorHex[i % colorHex.length];
-            int r = Integer.parseInt(hex.substring(1, 3), 16);
-            int g = Integer.parseInt(hex.substring(3, 5), 16);
-            int b = Integer.parseInt(hex.substring(5, 7), 16);
-
-            colors[i * 3] = r / 255.0;
-            colors[i * 3 + 1] = g / 255.0;
-            colors[i * 3 + 2] = b / 255.0;
+            double[] bgr = paletteBgr(i);
+            colors[i * 3] = bgr[2] / 255.0;
+            colors[i * 3 + 1] = bgr[1] / 255.0;
+            colors[i * 3 + 2] = bgr[0] / 255.0;
+        }
+        return colors;
+    }
+
+    /**
+     * 类别在颜色表中的颜色（OpenCV BGR，0-255），循环使用颜色表
+     * @param clsId 类别id
+     * @return BGR 颜色
+     */
+    public static double[] paletteBgr(int clsId) {
+        String hex = COLOR_HEX[Math.floorMod(clsId, COLOR_HEX.length)];
+        int r = Integer.parseInt(hex.substring(1, 3), 16);
+        int g = Integer.parseInt(hex.substring(3, 5), 16);
+        int b = Integer.parseInt(hex.substring(5, 7), 16);
+        return new double[]{b, g, r};
+    }
+
+    /**
+     * 占用当前默认模型，使用完毕后需调用 {@link LoadedModel#release()}
+     * @return 默认模型
+     */
+    public LoadedModel acquireActiveModel() {
+        for (;;) {
+            LoadedModel model = activeModel;
+            if (model == null) {
+                throw new IllegalStateException("YOLO model is not loaded");
+            }
+            if (model.tryAcquire()) {
+                return model;
+            }
+            if (model == activeModel) {
+                throw new IllegalStateException("YOLO model has been closed");
+            }
         }
     }
 
@@ -159,8 +311,8 @@ public class YoloService {
     @PreDestroy
     public void destroy() {
         try {
-            if (session != null) {
-                session.close();
+            if (activeModel != null) {
+                activeModel.retire();
             }
             if (env != null) {
                 env.close();
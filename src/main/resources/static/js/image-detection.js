@@ -2,6 +2,11 @@
 let selectedImage = null;
 let detectionResult = null;
 
+// 预览参数：按显示区域缩小并使用 WebP，下载时再请求原始分辨率
+const PREVIEW_MAX_SIZE = 1600;
+const PREVIEW_FORMAT = 'webp';
+const PREVIEW_QUALITY = 80;
+
 // 页面加载完成后初始化
 document.addEventListener('DOMContentLoaded', function() {
     // 监听文件选择事件
@@ -132,30 +137,35 @@ function detectImage() {
     // 创建FormData对象
     const formData = new FormData();
     formData.append('file', selectedImage);
+    formData.append('format', PREVIEW_FORMAT);
+    formData.append('quality', PREVIEW_QUALITY);
+    formData.append('maxSize', PREVIEW_MAX_SIZE);
     
-    // 发送检测请求
+    // 发送检测请求，直接接收图像字节，不经过 Base64
     fetch('/detect-image', {
         method: 'POST',
+        headers: {
+            'Accept': 'image/*'
+        },
         body: formData
     })
     .then(response => {
         if (!response.ok) {
-            throw new Error('检测失败: ' + response.statusText);
+            return response.text().then(text => {
+                throw new Error(text || response.statusText);
+            });
         }
-        return response.text();
+        return response.blob();
     })
-    .then(data => {
-        // 检查是否返回了错误信息
-        if (data.startsWith('error:')) {
-            throw new Error(data.substring(6));
+    .then(blob => {
+        if (detectionResult) {
+            URL.revokeObjectURL(detectionResult);
         }
+        detectionResult = URL.createObjectURL(blob);
         
         // 显示检测结果
-        resultImage.innerHTML = `<img src="${data}" alt="检测结果">`;
-        
-        // 保存检测结果
-        detectionResult = data;
-        console.log('检测结果已保存:', detectionResult);
+        resultImage.innerHTML = `<img src="${detectionResult}" alt="检测结果">`;
+        console.log('检测结果已保存:', blob.type, blob.size);
         
         // 启用下载按钮
         const downloadBtn = document.getElementById('downloadBtn');
@@ -217,19 +227,46 @@ function handleDrop(e) {
 
 dropArea.addEventListener('drop', handleDrop, false);
 
-// 下载检测结果
+// 下载检测结果（原始分辨率）
 function downloadResult() {
-    if (!detectionResult) return;
+    if (!selectedImage) return;
     
-    // 创建一个临时的下载链接
-    const link = document.createElement('a');
-    link.href = detectionResult;
-    link.download = 'detection_result.jpg';
+    const downloadBtn = document.getElementById('downloadBtn');
+    downloadBtn.disabled = true;
     
-    // 触发下载
-    document.body.appendChild(link);
-    link.click();
+    const formData = new FormData();
+    formData.append('file', selectedImage);
     
-    // 清理
-    document.body.removeChild(link);
-}
\ No newline at end of file
+    fetch('/detect-and-download', {
+        method: 'POST',
+        body: formData
+    })
+    .then(response => {
+        if (!response.ok) {
+            throw new Error('下载失败: ' + response.statusText);
+        }
+        return response.blob();
+    })
+    .then(blob => {
+        // 创建一个临时的下载链接
+        const url = URL.createObjectURL(blob);
+        const link = document.createElement('a');
+        link.href = url;
+        link.download = 'detection_result.jpg';
+        
+        // 触发下载
+        document.body.appendChild(link);
+        link.click();
+        
+        // 清理
+        document.body.removeChild(link);
+        URL.revokeObjectURL(url);
+    })
+    .catch(error => {
+        console.error('下载错误:', error);
+        alert(error.message);
+    })
+    .finally(() => {
+        downloadBtn.disabled = false;
+    });
+}
@@ -7,6 +7,17 @@ let video = null; // 全局video元素引用
 let resultCanvas = null; // 全局画布元素引用
 let frameQueue = []; // 帧队列，只处理最新的帧
 let isProcessingFrame = false; // 标记是否正在处理帧
+let rawFrameSpec = null; // 原始帧接口的帧格式，获取失败时回退为 JPEG 上传
+let latestDetections = []; // 最近一次的检测结果（原图坐标），叠加在每一帧上
+
+// 与服务端标注使用相同的颜色表
+const BOX_COLORS = [
+    '#FF0000', '#00FF00', '#0000FF', '#FFFF00', '#00FFFF', '#FF00FF',
+    '#FFA500', '#FFC0CB', '#800080', '#008000', '#808000', '#008080',
+    '#800000', '#000080', '#C0C0C0', '#808080', '#FFD700', '#FF6347',
+    '#4682B4', '#90EE90', '#FF7F50', '#DDA0DD', '#98FB98', '#F08080',
+    '#20B2AA', '#FFB6C1', '#87CEFA', '#9370DB', '#3CB371', '#7B68EE'
+];
 
 // 页面加载完成后初始化
 document.addEventListener('DOMContentLoaded', function() {
@@ -143,6 +154,82 @@ function displayVideoFrame(base64Frame) {
     img.src = `data:image/jpeg;base64,${base64Frame}`;
 }
 
+// 获取原始帧接口的帧格式（模型输入尺寸）
+async function loadRawFrameSpec() {
+    try {
+        const response = await fetch('/api/detect/raw');
+        rawFrameSpec = response.ok ? await response.json() : null;
+    } catch (error) {
+        rawFrameSpec = null;
+    }
+    console.log('原始帧格式:', rawFrameSpec || '不可用，使用 JPEG 上传');
+}
+
+// 按模型输入尺寸 letterbox 视频帧，返回 RGBA 像素与缩放、填充参数
+function letterboxFrame(canvas, ctx, source, sourceWidth, sourceHeight) {
+    const width = rawFrameSpec.width;
+    const height = rawFrameSpec.height;
+    if (canvas.width !== width || canvas.height !== height) {
+        canvas.width = width;
+        canvas.height = height;
+    }
+    const ratio = Math.min(width / sourceWidth, height / sourceHeight);
+    const newWidth = Math.round(sourceWidth * ratio);
+    const newHeight = Math.round(sourceHeight * ratio);
+    const padX = Math.floor((width - newWidth) / 2);
+    const padY = Math.floor((height - newHeight) / 2);
+    const pad = rawFrameSpec.padValue;
+    ctx.fillStyle = `rgb(${pad}, ${pad}, ${pad})`;
+    ctx.fillRect(0, 0, width, height);
+    ctx.drawImage(source, padX, padY, newWidth, newHeight);
+    return {
+        pixels: ctx.getImageData(0, 0, width, height).data,
+        params: new URLSearchParams({
+            width, height, channelOrder: 'rgba', ratio, padX, padY, sourceWidth, sourceHeight
+        })
+    };
+}
+
+// 发送原始帧，返回原图坐标系下的检测结果
+async function detectRawFrame(frame) {
+    const response = await fetch('/api/detect/raw?' + frame.params, {
+        method: 'POST',
+        headers: {
+            'Content-Type': 'application/octet-stream',
+            'Accept': 'application/json'
+        },
+        body: frame.pixels
+    });
+    if (!response.ok) {
+        throw new Error('检测请求失败，状态码: ' + response.status);
+    }
+    const result = await response.json();
+    return result.detections;
+}
+
+// 在画布上绘制检测框，检测结果为原图（视频）坐标
+function drawDetections(ctx, detections, scaleX, scaleY) {
+    const lineWidth = Math.max(2, Math.round(ctx.canvas.width / 400));
+    ctx.lineWidth = lineWidth;
+    ctx.font = `${Math.max(12, lineWidth * 6)}px sans-serif`;
+    ctx.textBaseline = 'bottom';
+    detections.forEach(det => {
+        const color = BOX_COLORS[det.classId % BOX_COLORS.length];
+        const x = det.x0 * scaleX;
+        const y = det.y0 * scaleY;
+        ctx.strokeStyle = color;
+        ctx.strokeRect(x, y, (det.x1 - det.x0) * scaleX, (det.y1 - det.y0) * scaleY);
+        const label = `${det.className} ${det.confidence.toFixed(2)}`;
+        const textWidth = ctx.measureText(label).width;
+        const textHeight = lineWidth * 6 + 4;
+        const textY = y > textHeight ? y : y + textHeight;
+        ctx.fillStyle = color;
+        ctx.fillRect(x, textY - textHeight, textWidth + 4, textHeight);
+        ctx.fillStyle = '#FFFFFF';
+        ctx.fillText(label, x + 2, textY - 2);
+    });
+}
+
 // 处理单帧图像
 async function processVideoFrame(base64Image) {
     try {
@@ -272,7 +359,7 @@ function startStream() {
             
             // 创建画布元素用于捕获帧
             const canvas = document.createElement('canvas');
-            const ctx = canvas.getContext('2d');
+            const ctx = canvas.getContext('2d', { willReadFrequently: true });
             
             // 初始化结果画布
             const videoDisplay = document.getElementById('videoDisplay');
@@ -286,7 +373,7 @@ function startStream() {
             video.addEventListener('loadedmetadata', function() {
                 console.log('视频元数据加载完成，尺寸:', video.videoWidth, 'x', video.videoHeight);
                 
-                // 设置画布尺寸与视频尺寸匹配
+                // 设置画布尺寸与视频尺寸匹配（原始帧模式下捕获画布按模型输入尺寸重设）
                 canvas.width = video.videoWidth;
                 canvas.height = video.videoHeight;
                 resultCanvas.width = video.videoWidth;
@@ -314,8 +401,8 @@ function startStream() {
                 resultCtx.drawImage(video, 0, 0, resultCanvas.width, resultCanvas.height);
                 console.log('初始视频帧绘制完成');
                 
-                // 开始捕获帧
-                startCapture();
+                // 获取原始帧格式后开始捕获帧
+                loadRawFrameSpec().then(startCapture);
             });
             
             // 视频就绪可以播放时的处理
@@ -339,21 +426,29 @@ function startStream() {
                     // 直接将视频帧绘制到结果画布
                     const resultCtx = resultCanvas.getContext('2d');
                     resultCtx.drawImage(video, 0, 0, resultCanvas.width, resultCanvas.height);
-                    
-                    // 同时绘制到隐藏画布用于处理
-                    ctx.drawImage(video, 0, 0, canvas.width, canvas.height);
-                    
-                    // 将画布内容转换为Base64
-                    const base64Image = canvas.toDataURL('image/jpeg', 0.7);
+
+                    let frame;
+                    if (rawFrameSpec) {
+                        // 原始帧模式：在浏览器中 letterbox 并发送像素，检测框在本地叠加绘制，两端都不做 JPEG 编解码
+                        drawDetections(resultCtx, latestDetections,
+                            resultCanvas.width / video.videoWidth, resultCanvas.height / video.videoHeight);
+                        frame = letterboxFrame(canvas, ctx, video, video.videoWidth, video.videoHeight);
+                    } else {
+                        // 同时绘制到隐藏画布用于处理
+                        ctx.drawImage(video, 0, 0, canvas.width, canvas.height);
+
+                        // 将画布内容转换为Base64
+                        frame = canvas.toDataURL('image/jpeg', 0.7);
+                    }
                     
                     // 如果当前没有在处理帧，就处理这个帧
                     if (!isProcessingFrame) {
                         // 只保留最新的帧
-                        frameQueue = [base64Image];
+                        frameQueue = [frame];
                         processNextFrame();
                     } else {
                         // 如果已经在处理，就添加到队列末尾
-                        frameQueue.push(base64Image);
+                        frameQueue.push(frame);
                     }
                 } catch (error) {
                     console.error('捕获视频帧失败:', error);
@@ -371,6 +466,12 @@ function startStream() {
                 try {
                     // 获取队列中的第一个帧（最新的）
                     const base64Image = frameQueue.pop();
+                    frameQueue = [];
+
+                    if (typeof base64Image !== 'string') {
+                        latestDetections = await detectRawFrame(base64Image);
+                        return;
+                    }
                     
                     // 将Base64图像发送到后端进行检测
                     // 注意：使用正确的接口地址和参数格式
@@ -493,6 +594,9 @@ function stopStream() {
         captureInterval = null;
     }
     
+    latestDetections = [];
+    frameQueue = [];
+
     // 清空视频显示
     const videoDisplay = document.getElementById('videoDisplay');
     videoDisplay.innerHTML = '<p class="placeholder">点击开始检测按钮开始视频流</p>';
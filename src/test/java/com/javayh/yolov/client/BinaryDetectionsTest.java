@@ -0,0 +1,73 @@
+package com.javayh.yolov.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 紧凑二进制检测结果的写入与读取
+ * @author haiji
+ */
+class BinaryDetectionsTest {
+
+    @Test
+    void roundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryDetections.HEADER_SIZE + 2 * BinaryDetections.RECORD_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        BinaryDetections.writeHeader(buffer, 1920, 1080, 7L, 2);
+        BinaryDetections.writeRecord(buffer, 1.5f, 2.5f, 100f, 200f, 0.9f, 3);
+        BinaryDetections.writeRecord(buffer, 10f, 20f, 30f, 40f, 0.25f, 0);
+
+        BinaryDetections detections = BinaryDetections.wrap(buffer.array());
+        assertEquals(1920, detections.width());
+        assertEquals(1080, detections.height());
+        assertEquals(7L, detections.modelVersion());
+        assertEquals(2, detections.count());
+        assertEquals(1.5f, detections.x0(0));
+        assertEquals(2.5f, detections.y0(0));
+        assertEquals(100f, detections.x1(0));
+        assertEquals(200f, detections.y1(0));
+        assertEquals(0.9f, detections.score(0));
+        assertEquals(3, detections.classId(0));
+        assertEquals(0.25f, detections.score(1));
+        assertEquals(0, detections.classId(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> detections.x0(2));
+    }
+
+    @Test
+    void wrapStartsAtBufferPosition() {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + BinaryDetections.HEADER_SIZE + BinaryDetections.RECORD_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(-1);
+        BinaryDetections.writeHeader(buffer, 640, 480, 1L, 1);
+        BinaryDetections.writeRecord(buffer, 1f, 2f, 3f, 4f, 0.5f, 9);
+        buffer.position(4);
+        assertEquals(9, BinaryDetections.wrap(buffer).classId(0));
+    }
+
+    @Test
+    void wrapLeavesCallerBufferUntouched() {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryDetections.HEADER_SIZE + BinaryDetections.RECORD_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        BinaryDetections.writeHeader(buffer, 640, 480, 1L, 1);
+        BinaryDetections.writeRecord(buffer, 1f, 2f, 3f, 4f, 0.5f, 9);
+        buffer.flip().order(ByteOrder.BIG_ENDIAN);
+
+        assertEquals(0.5f, BinaryDetections.wrap(buffer).score(0));
+        assertEquals(ByteOrder.BIG_ENDIAN, buffer.order());
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    void rejectsTruncatedPayload() {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryDetections.HEADER_SIZE + BinaryDetections.RECORD_SIZE - 1)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        BinaryDetections.writeHeader(buffer, 640, 480, 1L, 1);
+        assertThrows(IllegalArgumentException.class, () -> BinaryDetections.wrap(buffer.array()));
+        assertThrows(IllegalArgumentException.class, () -> BinaryDetections.wrap(new byte[BinaryDetections.HEADER_SIZE]));
+    }
+}
@@ -0,0 +1,140 @@
+package com.javayh.yolov.config;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtSession;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 输入预处理融合：改写后的模型接受 uint8 NHWC 输入，输出与原模型对归一化 NCHW 输入的结果一致
+ * @author haiji
+ */
+class OnnxInputFusionTest {
+
+    private static final int H = 2;
+    private static final int W = 3;
+
+    @Test
+    void declaredShapesAreRewritten() {
+        long[][] shapes = OnnxInputFusion.ioShapes(OnnxInputFusion.fuse(identityModel(), true));
+        assertArrayEquals(new long[]{1, H, W, 3}, shapes[0]);
+        assertArrayEquals(new long[]{1, 3, H, W}, shapes[1]);
+    }
+
+    @Test
+    void fusedModelSwapsChannelsAndNormalizes() throws Exception {
+        assertFusedOutput(true);
+    }
+
+    @Test
+    void fusedModelKeepsChannelOrder() throws Exception {
+        assertFusedOutput(false);
+    }
+
+    @Test
+    void rejectsAlreadyFusedModel() {
+        byte[] fused = OnnxInputFusion.fuse(identityModel(), false);
+        assertThrows(IllegalArgumentException.class, () -> OnnxInputFusion.fuse(fused, false));
+    }
+
+    private static void assertFusedOutput(boolean swapChannels) throws Exception {
+        byte[] pixels = new byte[H * W * 3];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) (i * 11 + 7);
+        }
+        OrtEnvironment env = OrtEnvironment.getEnvironment();
+        try (OrtSession session = env.createSession(OnnxInputFusion.fuse(identityModel(), swapChannels));
+             OnnxTensor input = OnnxTensor.createTensor(env, ByteBuffer.wrap(pixels), new long[]{1, H, W, 3},
+                     OnnxJavaType.UINT8);
+             OrtSession.Result result = session.run(Map.of("images_uint8", input))) {
+            assertEquals(swapChannels ? OnnxInputFusion.ORDER_BGR : OnnxInputFusion.ORDER_RGB,
+                    session.getMetadata().getCustomMetadata().get(OnnxInputFusion.CHANNEL_ORDER_KEY));
+            float[][][][] output = (float[][][][]) result.get(0).getValue();
+            for (int c = 0; c < 3; c++) {
+                int source = swapChannels ? 2 - c : c;
+                for (int y = 0; y < H; y++) {
+                    for (int x = 0; x < W; x++) {
+                        float expected = (pixels[(y * W + x) * 3 + source] & 0xFF) / 255f;
+                        assertEquals(expected, output[0][c][y][x], 1e-6f);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 最小的 ONNX 模型：images float [1, 3, H, W] → Identity → output
+     */
+    private static byte[] identityModel() {
+        ByteArrayOutputStream node = new ByteArrayOutputStream();
+        string(node, 1, "images");
+        string(node, 2, "output");
+        string(node, 4, "Identity");
+
+        ByteArrayOutputStream graph = new ByteArrayOutputStream();
+        bytes(graph, 1, node.toByteArray());
+        string(graph, 2, "identity");
+        bytes(graph, 11, floatValueInfo("images", 1, 3, H, W));
+        bytes(graph, 12, floatValueInfo("output", 1, 3, H, W));
+
+        ByteArrayOutputStream opset = new ByteArrayOutputStream();
+        varint(opset, 2, 13);
+
+        ByteArrayOutputStream model = new ByteArrayOutputStream();
+        varint(model, 1, 7);
+        bytes(model, 8, opset.toByteArray());
+        bytes(model, 7, graph.toByteArray());
+        return model.toByteArray();
+    }
+
+    private static byte[] floatValueInfo(String name, long... dims) {
+        ByteArrayOutputStream shape = new ByteArrayOutputStream();
+        for (long dim : dims) {
+            ByteArrayOutputStream d = new ByteArrayOutputStream();
+            varint(d, 1, dim);
+            bytes(shape, 1, d.toByteArray());
+        }
+        ByteArrayOutputStream tensor = new ByteArrayOutputStream();
+        varint(tensor, 1, 1);
+        bytes(tensor, 2, shape.toByteArray());
+        ByteArrayOutputStream type = new ByteArrayOutputStream();
+        bytes(type, 1, tensor.toByteArray());
+        ByteArrayOutputStream info = new ByteArrayOutputStream();
+        string(info, 1, name);
+        bytes(info, 2, type.toByteArray());
+        return info.toByteArray();
+    }
+
+    private static void varint(ByteArrayOutputStream out, int number, long value) {
+        raw(out, (long) number << 3);
+        raw(out, value);
+    }
+
+    private static void bytes(ByteArrayOutputStream out, int number, byte[] value) {
+        raw(out, ((long) number << 3) | 2);
+        raw(out, value.length);
+        out.writeBytes(value);
+    }
+
+    private static void string(ByteArrayOutputStream out, int number, String value) {
+        bytes(out, number, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void raw(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
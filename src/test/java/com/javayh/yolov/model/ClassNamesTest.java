@@ -0,0 +1,25 @@
+package com.javayh.yolov.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 类别文件解析
+ * @author haiji
+ */
+class ClassNamesTest {
+
+    @Test
+    void interiorBlankLinesKeepTheirIndex() {
+        assertEquals(List.of("mask", "", "no_mask"), ClassNames.parse(List.of("mask\r", "  ", "no_mask ")));
+    }
+
+    @Test
+    void trailingBlankLinesAreIgnored() {
+        assertEquals(List.of("mask", "no_mask"), ClassNames.parse(List.of("mask", "no_mask", "", " ")));
+        assertEquals(List.of(), ClassNames.parse(List.of("", "")));
+    }
+}
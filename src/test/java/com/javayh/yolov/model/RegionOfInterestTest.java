@@ -0,0 +1,51 @@
+package com.javayh.yolov.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 感兴趣区域的解析与包含判断
+ * @author haiji
+ */
+class RegionOfInterestTest {
+
+    @Test
+    void rectangleAcceptsReversedCorners() {
+        RegionOfInterest roi = RegionOfInterest.parse("100, 80, 10, 20");
+        assertTrue(roi.isRectangle());
+        assertTrue(roi.contains(50, 50));
+        assertTrue(roi.contains(10, 20));
+        assertFalse(roi.contains(5, 50));
+        assertFalse(roi.contains(50, 90));
+    }
+
+    @Test
+    void concavePolygon() {
+        // U 形：左右两臂之间的缺口不属于区域
+        RegionOfInterest roi = RegionOfInterest.parse("0,0,30,0,30,30,20,30,20,10,10,10,10,30,0,30");
+        assertFalse(roi.isRectangle());
+        assertTrue(roi.contains(5, 20));
+        assertTrue(roi.contains(25, 20));
+        assertTrue(roi.contains(15, 5));
+        assertFalse(roi.contains(15, 20), "缺口在外接矩形内但不在多边形内");
+        assertFalse(roi.contains(35, 5));
+    }
+
+    @Test
+    void triangle() {
+        RegionOfInterest roi = RegionOfInterest.parse("0,0,10,0,0,10");
+        assertTrue(roi.contains(2, 2));
+        assertFalse(roi.contains(8, 8));
+    }
+
+    @Test
+    void parseRejectsInvalidInput() {
+        assertNull(RegionOfInterest.parse(" "));
+        assertThrows(IllegalArgumentException.class, () -> RegionOfInterest.parse("0,0,10"));
+        assertThrows(IllegalArgumentException.class, () -> RegionOfInterest.parse("0,0,10,10,5"));
+    }
+}
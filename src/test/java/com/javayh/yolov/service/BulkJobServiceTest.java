@@ -0,0 +1,71 @@
+package com.javayh.yolov.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 批量任务断点续跑的检查点解析
+ * @author haiji
+ */
+class BulkJobServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void pathsMustStayUnderJobsRoot(@TempDir Path dir) {
+        Path root = dir.resolve("jobs").toAbsolutePath().normalize();
+        assertEquals(root.resolve("in/images.zip"), BulkJobService.resolveUnder(root, "in/./images.zip"));
+        assertEquals(root.resolve("out.jsonl"), BulkJobService.resolveUnder(root, "in/../out.jsonl"));
+        assertThrows(IllegalArgumentException.class, () -> BulkJobService.resolveUnder(root, "../secret"));
+        assertThrows(IllegalArgumentException.class, () -> BulkJobService.resolveUnder(root, "in/../../jobs2/x"));
+        assertThrows(IllegalArgumentException.class,
+                () -> BulkJobService.resolveUnder(root, dir.resolve("other.jsonl").toAbsolutePath().toString()));
+    }
+
+    @Test
+    void missingFileHasNoCheckpoint(@TempDir Path dir) throws Exception {
+        assertTrue(BulkJobService.readCheckpoint(dir.resolve("out.jsonl"), objectMapper).isEmpty());
+    }
+
+    @Test
+    void failedImagesAreRetried(@TempDir Path dir) throws Exception {
+        Path output = dir.resolve("out.jsonl");
+        Files.writeString(output, """
+                {"path":"a.jpg","detections":[]}
+                {"path":"b.jpg","error":"decode failed"}
+                {"path":"c.jpg","detections":[{"classId":0}]}
+                """, StandardCharsets.UTF_8);
+
+        assertEquals(Set.of("a.jpg", "c.jpg"), BulkJobService.readCheckpoint(output, objectMapper));
+    }
+
+    @Test
+    void partialLastLineIsTruncated(@TempDir Path dir) throws Exception {
+        Path output = dir.resolve("out.jsonl");
+        String complete = "{\"path\":\"a.jpg\",\"detections\":[]}\n";
+        Files.writeString(output, complete + "{\"path\":\"b.jpg\",\"detec", StandardCharsets.UTF_8);
+
+        assertEquals(Set.of("a.jpg"), BulkJobService.readCheckpoint(output, objectMapper));
+        // 续跑时追加的下一行不会与残缺行拼接
+        assertEquals(complete, Files.readString(output, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void fileWithoutCompleteLineIsEmptied(@TempDir Path dir) throws Exception {
+        Path output = dir.resolve("out.jsonl");
+        Files.writeString(output, "{\"path\":\"a.j", StandardCharsets.UTF_8);
+
+        assertTrue(BulkJobService.readCheckpoint(output, objectMapper).isEmpty());
+        assertEquals(0, Files.size(output));
+    }
+}
@@ -0,0 +1,144 @@
+package com.javayh.yolov.service;
+
+import com.javayh.yolov.config.YoloConfig;
+import com.javayh.yolov.model.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 推理调度器的加权轮询顺序与实时帧截止时间
+ * @author haiji
+ */
+class InferenceSchedulerTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static InferenceScheduler scheduler(YoloConfig config) {
+        InferenceScheduler scheduler = new InferenceScheduler();
+        ReflectionTestUtils.setField(scheduler, "yoloConfig", config);
+        ReflectionTestUtils.setField(scheduler, "meterRegistry", new SimpleMeterRegistry());
+        scheduler.init();
+        return scheduler;
+    }
+
+    private static YoloConfig config() {
+        YoloConfig config = new YoloConfig();
+        config.setSchedulerEnabled(true);
+        config.setSchedulerConcurrency(1);
+        config.setSchedulerRealtimeWeight(6);
+        config.setSchedulerInteractiveWeight(3);
+        config.setSchedulerBulkWeight(1);
+        config.setSchedulerRealtimeDeadlineMs(TimeUnit.SECONDS.toMillis(30));
+        return config;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int queued(InferenceScheduler scheduler, Priority priority) {
+        Map<String, Object> lanes = (Map<String, Object>) scheduler.getStats().get("lanes");
+        return (Integer) ((Map<String, Object>) lanes.get(priority.name().toLowerCase())).get("queued");
+    }
+
+    private static void awaitQueued(InferenceScheduler scheduler, Priority priority, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (queued(scheduler, priority) < count) {
+            assertTrue(System.nanoTime() < deadline, "等待 " + priority + " 排队超时");
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void dispatchesLanesBySmoothWeightedRoundRobin() throws Exception {
+        InferenceScheduler scheduler = scheduler(config());
+        InferenceScheduler.Permit holder = scheduler.admit(Priority.INTERACTIVE);
+
+        List<Priority> order = Collections.synchronizedList(new ArrayList<>());
+        List<Future<?>> futures = new ArrayList<>();
+        for (Priority priority : Priority.values()) {
+            for (int i = 0; i < 10; i++) {
+                futures.add(executor.submit(() -> scheduler.run(priority, () -> order.add(priority))));
+            }
+            awaitQueued(scheduler, priority, 10);
+        }
+        holder.release();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        // 三个通道都有排队时，每 10 个名额按 6:3:1 分配，且高权重通道不会连续占满
+        List<Priority> firstRound = order.subList(0, 10);
+        assertEquals(6, Collections.frequency(firstRound, Priority.REALTIME));
+        assertEquals(3, Collections.frequency(firstRound, Priority.INTERACTIVE));
+        assertEquals(1, Collections.frequency(firstRound, Priority.BULK));
+        assertEquals(List.of(Priority.REALTIME, Priority.INTERACTIVE, Priority.REALTIME, Priority.REALTIME,
+                Priority.INTERACTIVE, Priority.REALTIME, Priority.BULK, Priority.REALTIME, Priority.INTERACTIVE,
+                Priority.REALTIME), firstRound);
+        assertEquals(30, order.size());
+    }
+
+    @Test
+    void dropsRealtimeFrameAfterDeadline() throws Exception {
+        YoloConfig config = config();
+        config.setSchedulerRealtimeDeadlineMs(50);
+        InferenceScheduler scheduler = scheduler(config);
+        InferenceScheduler.Permit holder = scheduler.admit(Priority.BULK);
+
+        Future<Boolean> frame = executor.submit(() -> scheduler.run(Priority.REALTIME, () -> true));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> frame.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(0, queued(scheduler, Priority.REALTIME), "过时的帧应移出队列");
+        holder.release();
+
+        // 名额释放后新的帧立即执行
+        assertTrue(scheduler.run(Priority.REALTIME, () -> true));
+        assertEquals(0, scheduler.getStats().get("running"));
+    }
+
+    @Test
+    void rejectsWhenInteractiveQueueIsFullButBlocksBulk() throws Exception {
+        YoloConfig config = config();
+        config.setSchedulerQueueCapacity(1);
+        InferenceScheduler scheduler = scheduler(config);
+        InferenceScheduler.Permit holder = scheduler.admit(Priority.INTERACTIVE);
+
+        Future<?> queuedInteractive = executor.submit(() -> scheduler.run(Priority.INTERACTIVE, () -> null));
+        awaitQueued(scheduler, Priority.INTERACTIVE, 1);
+        assertThrows(RejectedExecutionException.class, () -> scheduler.run(Priority.INTERACTIVE, () -> null));
+
+        List<Future<?>> bulk = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            bulk.add(executor.submit(() -> scheduler.run(Priority.BULK, () -> null)));
+        }
+        awaitQueued(scheduler, Priority.BULK, 3);
+
+        holder.release();
+        holder.release();
+        queuedInteractive.get(10, TimeUnit.SECONDS);
+        for (Future<?> future : bulk) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(0, scheduler.getStats().get("running"), "重复释放只生效一次");
+    }
+}
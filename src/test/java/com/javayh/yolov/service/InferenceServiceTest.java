@@ -0,0 +1,57 @@
+package com.javayh.yolov.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * InferenceService 中不依赖模型的解码工具
+ * @author haiji
+ */
+class InferenceServiceTest {
+
+    @Test
+    void selectTopKMovesHighestScoresToFront() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            int n = 1 + random.nextInt(300);
+            int k = 1 + random.nextInt(n);
+            float[] scores = new float[n + 5];
+            int[] indices = new int[n + 5];
+            for (int i = 0; i < scores.length; i++) {
+                // 少量取值，覆盖大量重复分数的情况
+                scores[i] = random.nextInt(20) / 20f;
+                indices[i] = i;
+            }
+            float[] original = scores.clone();
+
+            InferenceService.selectTopK(scores, indices, n, k);
+
+            float[] expected = Arrays.copyOf(original, n);
+            Arrays.sort(expected);
+            float[] top = Arrays.copyOf(scores, k);
+            Arrays.sort(top);
+            assertArrayEquals(Arrays.copyOfRange(expected, n - k, n), top, "n=" + n + ", k=" + k);
+            for (int i = 0; i < n; i++) {
+                assertEquals(original[indices[i]], scores[i], "下标与分数应同步移动");
+            }
+            for (int i = n; i < scores.length; i++) {
+                assertEquals(i, indices[i], "n 之后的元素不应被改动");
+            }
+        }
+    }
+
+    @Test
+    void selectTopKWithKEqualToN() {
+        float[] scores = {0.3f, 0.9f, 0.1f};
+        int[] indices = {0, 1, 2};
+        InferenceService.selectTopK(scores, indices, 3, 3);
+        float[] sorted = scores.clone();
+        Arrays.sort(sorted);
+        assertArrayEquals(new float[]{0.1f, 0.3f, 0.9f}, sorted);
+    }
+}
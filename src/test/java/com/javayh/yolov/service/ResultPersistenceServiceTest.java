@@ -0,0 +1,30 @@
+package com.javayh.yolov.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 保留清理只识别本服务写出的文件
+ * @author haiji
+ */
+class ResultPersistenceServiceTest {
+
+    @Test
+    void recognizesOwnResultFiles() {
+        assertTrue(ResultPersistenceService.isResultFile("1760000000000_12_street-cam_01_detection.jpg"));
+        assertTrue(ResultPersistenceService.isResultFile("1760000000000_12_image_detection.json"));
+        assertTrue(ResultPersistenceService.isResultFile("1760000000000_1_a_detection.webp"));
+        assertTrue(ResultPersistenceService.isResultFile("1760000000000_1_a_detection.png"));
+    }
+
+    @Test
+    void ignoresOtherFiles() {
+        assertFalse(ResultPersistenceService.isResultFile("application.properties"));
+        assertFalse(ResultPersistenceService.isResultFile("photo.jpg"));
+        assertFalse(ResultPersistenceService.isResultFile("1760000000000_12_image_detection.jpg.bak"));
+        assertFalse(ResultPersistenceService.isResultFile("1760000000000_image_detection.jpg"));
+        assertFalse(ResultPersistenceService.isResultFile("1760000000000_12_image_detection.txt"));
+    }
+}
@@ -0,0 +1,70 @@
+package com.javayh.yolov.service;
+
+import com.javayh.yolov.model.Detection;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Rect;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 切片划分与跨切片合并
+ * @author haiji
+ */
+class TiledDetectionServiceTest {
+
+    @Test
+    void tilesCoverImageAndLastTileIsFlushWithEdge() {
+        List<Rect> tiles = TiledDetectionService.computeTiles(1500, 700, 640, 0.2f);
+        // 步长 512：x 起点 0, 512, 860；y 起点 0, 60
+        assertEquals(6, tiles.size());
+        for (Rect tile : tiles) {
+            assertEquals(640, tile.width);
+            assertEquals(640, tile.height);
+            assertTrue(tile.x >= 0 && tile.x + tile.width <= 1500);
+            assertTrue(tile.y >= 0 && tile.y + tile.height <= 700);
+        }
+        assertEquals(860, tiles.get(2).x);
+        assertEquals(60, tiles.get(3).y);
+    }
+
+    @Test
+    void smallImageIsSingleTile() {
+        List<Rect> tiles = TiledDetectionService.computeTiles(300, 200, 640, 0.2f);
+        assertEquals(1, tiles.size());
+        Rect tile = tiles.get(0);
+        assertEquals(0, tile.x);
+        assertEquals(300, tile.width);
+        assertEquals(200, tile.height);
+    }
+
+    @Test
+    void mergeSuppressesOverlapsAndTruncatedBoxesPerClass() {
+        Detection whole = new Detection(100, 100, 200, 200, 0.9f, 0, "a");
+        Detection duplicate = new Detection(102, 101, 201, 199, 0.8f, 0, "a");
+        // 切片边缘截断的框：与完整框 IoU 低，但几乎完全落在完整框内
+        Detection truncated = new Detection(100, 100, 130, 200, 0.7f, 0, "a");
+        Detection otherClass = new Detection(100, 100, 200, 200, 0.6f, 1, "b");
+        Detection separate = new Detection(400, 400, 450, 450, 0.5f, 0, "a");
+
+        List<Detection> merged = TiledDetectionService.merge(
+                List.of(truncated, duplicate, whole, otherClass, separate), 0.5f, 0.8f);
+
+        assertEquals(3, merged.size());
+        assertTrue(merged.stream().anyMatch(d -> d == whole));
+        assertTrue(merged.stream().anyMatch(d -> d == otherClass));
+        assertTrue(merged.stream().anyMatch(d -> d == separate));
+    }
+
+    @Test
+    void mergeKeepsHighestScore() {
+        Detection low = new Detection(0, 0, 10, 10, 0.3f, 2, "c");
+        Detection high = new Detection(1, 1, 10, 10, 0.95f, 2, "c");
+        List<Detection> merged = TiledDetectionService.merge(List.of(low, high), 0.5f, 0.8f);
+        assertEquals(1, merged.size());
+        assertSame(high, merged.get(0));
+    }
+}